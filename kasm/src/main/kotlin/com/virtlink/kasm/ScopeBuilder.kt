@@ -155,6 +155,8 @@ class ScopeBuilder(
 
     /** Checked cast. */
     inline fun checkCast(type: JvmType) = methodBuilder.methodVisitor.visitTypeInsn(Opcodes.CHECKCAST, type.internalName)
+    /** Pops an object reference and pushes 1 if it is an instance of the type; otherwise, 0. */
+    inline fun instanceOf(type: JvmType) = methodBuilder.methodVisitor.visitTypeInsn(Opcodes.INSTANCEOF, type.internalName)
     
     //////////////////////////////////
     // OBJECTS, FIELDS, and METHODS //
@@ -164,6 +166,13 @@ class ScopeBuilder(
     ////////////
     // ARRAYS //
     ////////////
+
+    /** Pops a length and pushes a new array of references of the type. */
+    inline fun aNewArray(type: JvmType) = methodBuilder.methodVisitor.visitTypeInsn(Opcodes.ANEWARRAY, type.internalName)
+    /** Pops an index and an array, and pushes the reference at the index in the array. */
+    inline fun aaLoad() = methodBuilder.methodVisitor.visitInsn(Opcodes.AALOAD)
+    /** Pops a reference, an index, and an array, and stores the reference at the index in the array. */
+    inline fun aaStore() = methodBuilder.methodVisitor.visitInsn(Opcodes.AASTORE)
     
     
     
@@ -188,6 +197,9 @@ class ScopeBuilder(
     /** Pops the top stack value and goto label if not null. */
     inline fun ifNonNull(label: Label) = methodBuilder.methodVisitor.visitJumpInsn(Opcodes.IFNONNULL, label)
 
+    /** Pops two references and goto label if they are not the same. */
+    inline fun ifACmpNe(label: Label) = methodBuilder.methodVisitor.visitJumpInsn(Opcodes.IF_ACMPNE, label)
+
     /** Goto label unconditionally. */
     inline fun goto(label: Label) = methodBuilder.methodVisitor.visitJumpInsn(Opcodes.GOTO, label)
 
@@ -270,6 +282,24 @@ class ScopeBuilder(
         methodBuilder.methodVisitor.visitFieldInsn(Opcodes.GETFIELD, ownerType.internalName, memberName, memberSignature.descriptor)
     }
 
+    /**
+     * Pops an object reference and pushes the value of its instance field.
+     *
+     * @param owner the type that contains the field
+     * @param name the name of the field
+     * @param type the type of the field
+     */
+    inline fun getField(owner: JvmType, name: String, type: JvmType) = methodBuilder.methodVisitor.visitFieldInsn(Opcodes.GETFIELD, owner.internalName, name, type.descriptor)
+
+    /**
+     * Pops a value and an object reference, and puts the value in the instance field of the object.
+     *
+     * @param owner the type that contains the field
+     * @param name the name of the field
+     * @param type the type of the field
+     */
+    inline fun putField(owner: JvmType, name: String, type: JvmType) = methodBuilder.methodVisitor.visitFieldInsn(Opcodes.PUTFIELD, owner.internalName, name, type.descriptor)
+
     /**
      * @param ownerIsInterface whether the owner is an interface (such as when calling a `static` method on an interface)
      */
@@ -0,0 +1,39 @@
+package org.spoofax.tego.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.spoofax.tego.aterm.SharingTermFactory
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactoryImpl
+import org.spoofax.tego.aterm.io.ATermReader
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the time to parse ATerm inputs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class ATermReaderBenchmark {
+
+    /** The name of the input. */
+    @Param("small", "deep", "wide", "completion", "large")
+    lateinit var input: String
+
+    /** The ATerm text. */
+    private lateinit var text: String
+
+    @Setup
+    fun setup() {
+        text = BenchmarkInputs.text(input)
+    }
+
+    @Benchmark
+    fun read(): Term? = ATermReader(TermFactoryImpl()).readFromString(text)
+
+    @Benchmark
+    fun readSharing(): Term? = ATermReader(SharingTermFactory()).readFromString(text)
+
+}
@@ -0,0 +1,50 @@
+package org.spoofax.tego.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.spoofax.tego.aterm.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the time to look up and replace term attachments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class AttachmentsBenchmark {
+
+    /** An attachment other than annotations. */
+    class Origin(val offset: Int) : Attachment
+    /** Another attachment other than annotations. */
+    class Type(val name: String) : Attachment
+
+    /** The number of attachments. */
+    @Param("1", "3")
+    @JvmField
+    var count: Int = 0
+
+    private lateinit var attachments: Attachments
+    private lateinit var term: Term
+    private val origin = Origin(0)
+
+    @Setup
+    fun setup() {
+        val factory = TermFactoryImpl()
+        val annotations = Annotations.of(factory.newAppl("TermIndex", factory.newString("m.tego"), factory.newInt(1)))
+        attachments = Attachments.of(listOf(annotations, Origin(42), Type("int")).take(count))
+        term = factory.newAppl("Var", listOf(factory.newString("x")), attachments)
+    }
+
+    @Benchmark
+    fun getAnnotations(): Annotations = term.annotations
+
+    /** Looks up an attachment that is absent for one attachment, and present for three. */
+    @Benchmark
+    fun getType(): Type? = attachments.get(Type::class.java)
+
+    @Benchmark
+    fun set(): Attachments = attachments.set(origin)
+
+}
@@ -0,0 +1,68 @@
+package org.spoofax.tego.benchmarks
+
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactory
+import org.spoofax.tego.aterm.io.ATermReader
+
+/**
+ * The ATerm inputs of the benchmarks.
+ */
+object BenchmarkInputs {
+
+    /** The names of the inputs. */
+    val names = listOf("small", "deep", "wide", "completion", "large")
+
+    /** The desugared Tego program of the compiler tests, about 110 KB with term indices on every node. */
+    val completion: String by lazy {
+        BenchmarkInputs::class.java.getResourceAsStream("/org/spoofax/tego/compiler/completion-min.anf.tego.aterm")!!
+            .bufferedReader().use { it.readText() }
+    }
+
+    /**
+     * Gets the text of the input with the specified name.
+     *
+     * @param name the name of the input
+     * @return the ATerm text
+     */
+    fun text(name: String): String = when (name) {
+        // A few nodes with an annotation
+        "small" -> """Module("m", [Def("f", [Int(1), Var("x")])]){TermIndex("m.tego", 1)}"""
+        // 10,000 nested constructor applications
+        "deep" -> "Neg(".repeat(10_000) + "0" + ")".repeat(10_000)
+        // A list of 100,000 constructor applications
+        "wide" -> (0 until 100_000).joinToString(",", "[", "]") { "Int($it)" }
+        "completion" -> completion
+        // A list of 100 copies of the completion input, about 11 MB
+        "large" -> (0 until 100).joinToString(",", "[", "]") { completion }
+        else -> throw IllegalArgumentException("Unknown input: $name")
+    }
+
+    /**
+     * Reads the input with the specified name.
+     *
+     * @param name the name of the input
+     * @param factory the term factory to use
+     * @return the term
+     */
+    fun read(name: String, factory: TermFactory): Term = ATermReader(factory).readFromString(text(name))!!
+
+    /**
+     * Collects the nodes of the specified term, including its annotations, in pre-order.
+     *
+     * @param term the term
+     * @return the nodes
+     */
+    fun nodes(term: Term): List<Term> {
+        val nodes = ArrayList<Term>()
+        val stack = ArrayList<Term>()
+        stack.add(term)
+        while (stack.isNotEmpty()) {
+            val node = stack.removeAt(stack.size - 1)
+            nodes.add(node)
+            stack.addAll(node.annotations.asReversed())
+            stack.addAll(node.subterms.asReversed())
+        }
+        return nodes
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.spoofax.tego.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactoryImpl
+import org.spoofax.tego.aterm.io.ATermReader
+import org.spoofax.tego.aterm.io.ATermWriter
+import org.spoofax.tego.aterm.io.BinaryTermReader
+import org.spoofax.tego.aterm.io.BinaryTermWriter
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the size and the decoding time of the ATerm text format and the binary term format.
+ *
+ * The input is read once, and encoded in both formats. The sizes of the encodings
+ * are printed at the start of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class BinaryTermBenchmark {
+
+    /** The name of the input. */
+    @Param("small", "deep", "wide", "completion", "large")
+    lateinit var input: String
+
+    /** The term encoded as UTF-8 ATerm text. */
+    private lateinit var text: ByteArray
+    /** The term encoded in the binary format. */
+    private lateinit var binary: ByteArray
+
+    @Setup
+    fun setup() {
+        val term = BenchmarkInputs.read(input, TermFactoryImpl())
+        text = ATermWriter().writeToString(term).toByteArray(Charsets.UTF_8)
+        binary = BinaryTermWriter().writeToBytes(term)
+        println(String.format("%n%-12s text: %,d bytes, binary: %,d bytes (%.1f%%)",
+            input, text.size, binary.size, 100.0 * binary.size / text.size))
+    }
+
+    @Benchmark
+    fun readText(): Term? = ATermReader(TermFactoryImpl()).read(text.inputStream().reader(Charsets.UTF_8))
+
+    @Benchmark
+    fun readBinary(): Term = BinaryTermReader(TermFactoryImpl()).readFromBytes(binary)
+
+}
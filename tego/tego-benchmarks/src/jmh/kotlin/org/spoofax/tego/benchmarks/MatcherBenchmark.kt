@@ -0,0 +1,56 @@
+package org.spoofax.tego.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.spoofax.tego.aterm.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the rate at which terms are matched against alternative matchers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class MatcherBenchmark {
+
+    /** How the alternatives are combined. */
+    @Param("or", "switch", "compiled")
+    lateinit var combination: String
+
+    private lateinit var nodes: Array<Term>
+    private lateinit var matcher: Matcher<String>
+
+    @Setup
+    fun setup() {
+        nodes = BenchmarkInputs.nodes(BenchmarkInputs.read("completion", TermFactoryImpl())).toTypedArray()
+        val alternatives = listOf<Matcher<String>>(
+            Matcher.appl("TermIndex", Matcher.stringValue(), Matcher.intValue()) { _, _, _ -> "index" },
+            Matcher.appl("SORT", Matcher.stringValue()) { _, s -> s },
+            Matcher.appl("CLASS", Matcher.stringValue()) { _, s -> s },
+            Matcher.appl("OfSort", Matcher.any()) { _, _ -> "sort" },
+            Matcher.appl("OfType", Matcher.any()) { _, _ -> "type" },
+            Matcher.appl("LIST", Matcher.any()) { _, _ -> "list" },
+            Matcher.appl("OfRef", Matcher.any()) { _, _ -> "ref" },
+            Matcher.stringValue { _, s -> s },
+        )
+        matcher = when (combination) {
+            "or" -> alternatives.reduce { a, b -> a or b }
+            "switch" -> Matcher.switch(*alternatives.toTypedArray())
+            "compiled" -> MatcherCompiler().compile(Matcher.switch(*alternatives.toTypedArray()))
+            else -> throw IllegalArgumentException("Unknown combination: $combination")
+        }
+    }
+
+    /** Matches all nodes of the completion input, including its annotations. */
+    @Benchmark
+    fun match(): Int {
+        var matched = 0
+        for (node in nodes) {
+            if (matcher.match(node) != null) matched += 1
+        }
+        return matched
+    }
+
+}
@@ -0,0 +1,65 @@
+package org.spoofax.tego.benchmarks
+
+import org.openjdk.jmh.annotations.*
+import org.openjdk.jmh.infra.Blackhole
+import org.spoofax.tego.aterm.*
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the rate at which terms are constructed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class TermFactoryBenchmark {
+
+    /** The term factory. */
+    @Param("plain", "sharing", "arena")
+    lateinit var factoryName: String
+
+    private lateinit var factory: TermFactory
+    private lateinit var elements: List<Term>
+    private var counter = 0
+
+    @Setup(Level.Iteration)
+    fun setup() {
+        factory = when (factoryName) {
+            "plain" -> TermFactoryImpl()
+            "sharing" -> SharingTermFactory()
+            "arena" -> TermArena().factory
+            else -> throw IllegalArgumentException("Unknown factory: $factoryName")
+        }
+        elements = (0 until 16).map { factory.newInt(it) }
+    }
+
+    @Benchmark
+    fun newSmallInt(): Term = factory.newInt(counter++ and 0xFF)
+
+    @Benchmark
+    fun newLargeInt(): Term = factory.newInt(0x10000 + (counter++ and 0xFFFF))
+
+    @Benchmark
+    fun newString(bh: Blackhole) {
+        bh.consume(factory.newString("TermIndex"))
+        bh.consume(factory.newString("completion-min.tego"))
+    }
+
+    @Benchmark
+    fun newAppl(): Term
+        = factory.newAppl("TermIndex", factory.newString("completion-min.tego"), factory.newInt(counter++ and 0xFFFF))
+
+    @Benchmark
+    fun newList(): Term = factory.newList(elements)
+
+    /** Builds a balanced binary tree of 1023 nodes. */
+    @Benchmark
+    fun newTree(): Term = tree(9)
+
+    private fun tree(depth: Int): Term
+        = if (depth == 0) factory.newInt(depth)
+          else factory.newAppl("Node", tree(depth - 1), tree(depth - 1))
+
+}
@@ -0,0 +1,31 @@
+package org.spoofax.tego.benchmarks
+
+import org.openjdk.jol.info.GraphLayout
+import org.spoofax.tego.aterm.SharingTermFactory
+import org.spoofax.tego.aterm.TermArena
+import org.spoofax.tego.aterm.TermFactoryImpl
+
+/**
+ * Prints the retained heap per term node of each term representation, for each input.
+ *
+ * The retained heap is the size of the object graph reachable from the term,
+ * measured with JOL. For terms in a [TermArena], the size of the arena is added.
+ */
+fun main() {
+    println(String.format("%-12s %-10s %10s %14s %10s", "input", "factory", "nodes", "bytes", "bytes/node"))
+    for (input in BenchmarkInputs.names) {
+        for (factoryName in listOf("plain", "sharing", "arena")) {
+            val arena = if (factoryName == "arena") TermArena() else null
+            val factory = when (factoryName) {
+                "plain" -> TermFactoryImpl()
+                "sharing" -> SharingTermFactory()
+                else -> arena!!.factory
+            }
+            val term = BenchmarkInputs.read(input, factory)
+            val nodes = BenchmarkInputs.nodes(term).size
+            val bytes = (if (arena != null) GraphLayout.parseInstance(arena).totalSize() + arena.byteSize
+                         else GraphLayout.parseInstance(term).totalSize())
+            println(String.format("%-12s %-10s %10d %14d %10.1f", input, factoryName, nodes, bytes, bytes.toDouble() / nodes))
+        }
+    }
+}
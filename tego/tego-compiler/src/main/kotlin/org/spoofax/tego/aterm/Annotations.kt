@@ -8,10 +8,13 @@ class Annotations(
 ) : Attachment, AbstractList<Term>() {
 
     companion object {
+        /** The shared empty annotations attachment. */
+        private val EMPTY = Annotations(emptyList())
+
         /**
          * An empty annotations attachment.
          */
-        fun empty(): Annotations = Annotations(emptyList())
+        fun empty(): Annotations = EMPTY
 
         /**
          * Creates a new annotations attachment with the specified annotation terms.
@@ -20,6 +23,7 @@ class Annotations(
          * @return the built annotations
          */
         fun of(vararg annotations: Term): Annotations {
+            if (annotations.isEmpty()) return EMPTY
             return Annotations(annotations.toList())
         }
 
@@ -29,7 +33,7 @@ class Annotations(
          * @return the annotations attachment; or an empty annotations attachment if it's not found
          */
         fun get(term: Term): Annotations {
-            return term.attachments.get(Annotations::class.java) ?: empty()
+            return term.attachments.get(Annotations::class.java) ?: EMPTY
         }
     }
 
@@ -63,7 +67,7 @@ data class Annotations2(
         /**
          * An empty annotations attachment.
          */
-        fun empty(): Annotations = Annotations(emptyList())
+        fun empty(): Annotations = Annotations.empty()
 
         /**
          * Creates a new annotations attachment with the specified annotation terms.
@@ -1,5 +1,6 @@
 package org.spoofax.tego.aterm
 
+import java.util.concurrent.atomic.AtomicInteger
 import kotlin.reflect.KClass
 
 /**
@@ -38,14 +39,25 @@ interface Attachments {
          * @param attachments the attachments to include
          */
         fun of(attachments: List<Attachment>): Attachments {
-            val attachmentsMap = attachments
-                .filter { it !is Annotations || it.isNotEmpty() }
-                .associateBy { it::class.java }
-            return when {
-                attachmentsMap.isEmpty() -> empty()
-                attachmentsMap.size == 1 -> SingletonAttachments(attachmentsMap.values.first())
-                else -> MultiAttachments(attachmentsMap)
+            if (attachments.size == 1) return single(attachments[0])
+            var slots = arrayOfNulls<Attachment>(0)
+            for (attachment in attachments) {
+                if (attachment is Annotations && attachment.isEmpty()) continue
+                val slot = AttachmentSlots.of(attachment::class.java)
+                if (slot >= slots.size) slots = slots.copyOf(slot + 1)
+                slots[slot] = attachment
             }
+            return MultiAttachments.of(slots)
+        }
+
+        /**
+         * Gets an attachments object with a single attachment.
+         *
+         * @param attachment the attachment to include
+         */
+        private fun single(attachment: Attachment): Attachments {
+            if (attachment is Annotations && attachment.isEmpty()) return empty()
+            return SingletonAttachments(attachment)
         }
     }
 
@@ -118,45 +130,124 @@ interface Attachments {
 
 }
 
+/**
+ * Assigns each attachment class a small slot number, used as an index into the array of
+ * [MultiAttachments], so that attachments can be found without hashing.
+ */
+internal object AttachmentSlots {
+
+    /** The next slot number to assign. */
+    private val nextSlot = AtomicInteger()
+
+    /** The slot numbers assigned to the attachment classes. */
+    private val slots = object : ClassValue<Int>() {
+        override fun computeValue(type: Class<*>): Int = nextSlot.getAndIncrement()
+    }
+
+    init {
+        // Annotations are the most common attachment, so they get the first slot
+        of(Annotations::class.java)
+    }
+
+    /**
+     * Gets the slot number of the specified attachment class.
+     *
+     * @param cls the attachment class
+     * @return the slot number
+     */
+    fun of(cls: Class<*>): Int = slots.get(cls)
+
+}
+
 /**
  * Manages term attachments.
+ *
+ * The attachments are stored in an array indexed by the slot number of their class,
+ * as assigned by [AttachmentSlots]. The array is copied when an attachment is set or removed.
+ *
+ * @property slots the attachments by slot number, without trailing `null` elements
+ * @property size the number of attachments, at least two
  */
-data class MultiAttachments(
-    private val map: Map<Class<out Attachment>, Attachment>
+class MultiAttachments private constructor(
+    private val slots: Array<Attachment?>,
+    private val size: Int,
 ) : Attachments {
 
+    companion object {
+        /**
+         * Gets an attachments object with the specified attachments.
+         *
+         * @param slots the attachments by slot number; this array is not copied
+         * @return the attachments object
+         */
+        internal fun of(slots: Array<Attachment?>): Attachments {
+            var size = 0
+            var last: Attachment? = null
+            var length = 0
+            for (i in slots.indices) {
+                val attachment = slots[i] ?: continue
+                size += 1
+                last = attachment
+                length = i + 1
+            }
+            return when (size) {
+                0 -> Attachments.empty()
+                1 -> SingletonAttachments(last!!)
+                else -> MultiAttachments(if (length == slots.size) slots else slots.copyOf(length), size)
+            }
+        }
+    }
+
     override fun isEmpty(): Boolean {
-        return map.isEmpty()
+        return false
     }
 
     override fun <A : Attachment> has(cls: Class<A>): Boolean {
-        return map.containsKey(cls)
+        return get(cls) != null
     }
 
     override fun <A : Attachment> get(cls: Class<A>): A? {
+        val slot = AttachmentSlots.of(cls)
         @Suppress("UNCHECKED_CAST")
-        return map[cls] as A?
+        return if (slot < slots.size) slots[slot] as A? else null
     }
 
     override fun set(newAttachment: Attachment): Attachments {
-        // Let of() sort out which instance to create.
-        return Attachments.of(map.values + newAttachment)
+        if (newAttachment is Annotations && newAttachment.isEmpty()) return remove(Annotations::class.java)
+        val slot = AttachmentSlots.of(newAttachment::class.java)
+        val newSlots = slots.copyOf(maxOf(slots.size, slot + 1))
+        newSlots[slot] = newAttachment
+        return MultiAttachments(newSlots, if (slot < slots.size && slots[slot] != null) size else size + 1)
     }
 
     override fun <A : Attachment> remove(cls: Class<A>): Attachments {
-        return MultiAttachments(map - cls)
+        val slot = AttachmentSlots.of(cls)
+        if (slot >= slots.size || slots[slot] == null) return this
+        val newSlots = slots.copyOf()
+        newSlots[slot] = null
+        return of(newSlots)
     }
 
     override fun removeAll(): Attachments {
         return Attachments.empty()
     }
 
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is MultiAttachments) return false
+        return slots.contentEquals(other.slots)
+    }
+
+    override fun hashCode(): Int {
+        return slots.contentHashCode()
+    }
+
     override fun toString(): String = StringBuilder().apply{
         val annotations = get(Annotations::class.java)
         if (annotations != null) {
             append(annotations.toString())
         }
-        val remainingAttachments = map.values.filterNot { it is Annotations }
+        val remainingAttachments = slots.filter { it != null && it !is Annotations }
         if (remainingAttachments.isNotEmpty()) {
             remainingAttachments.joinTo(this, ", ", "«", "»")
         }
@@ -187,6 +278,7 @@ private data class SingletonAttachments(
 
     override fun set(newAttachment: Attachment): Attachments {
         // Let of() sort out which instance to create.
+        if (newAttachment is Annotations && newAttachment.isEmpty()) return remove(Annotations::class.java)
         return Attachments.of(listOf(attachment, newAttachment))
     }
 
@@ -0,0 +1,123 @@
+package org.spoofax.tego.aterm
+
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A constructor symbol: the name and arity of a constructor application.
+ *
+ * Constructor symbols are interned, so there is exactly one instance for each name and arity,
+ * and symbols can be compared by identity. Each symbol has a unique [id]; the ids are dense,
+ * so they can index arrays (or a `tableswitch`) to dispatch on the constructor of a term.
+ * Terms that share a symbol also share its name, instead of each holding their own copy.
+ *
+ * Interned symbols are never removed: the symbol tables are global, and keep every name and arity
+ * that was ever used for the lifetime of the class loader. This is fine for the constructors of a program,
+ * of which there are few, but reading untrusted input with many distinct constructor names grows the tables
+ * without bound. Symbols of small arities are kept in an array per name, for a fast lookup;
+ * symbols of larger arities (such as large tuples) are kept in a map, so that one large arity
+ * does not allocate an array entry for every smaller arity.
+ *
+ * @property name the name of the constructor; or an empty string for tuples
+ * @property arity the arity of the constructor
+ * @property id the unique id of the symbol
+ */
+class Constructor private constructor(
+    val name: String,
+    val arity: Int,
+    val id: Int,
+) {
+
+    companion object {
+        /** The largest arity of the symbols that are kept in the arrays of [symbols]. */
+        private const val MAX_ARRAY_ARITY = 15
+
+        /** The symbols with an arity of at most [MAX_ARRAY_ARITY] by name, each an array indexed by arity. */
+        private val symbols = ConcurrentHashMap<String, Array<Constructor?>>()
+        /** The symbols with an arity greater than [MAX_ARRAY_ARITY], by name and arity. */
+        private val largeSymbols = ConcurrentHashMap<Key, Constructor>()
+        /** The symbols by id. */
+        @Volatile private var byId = arrayOfNulls<Constructor>(64)
+        /** The number of symbols. */
+        @Volatile private var count = 0
+
+        /**
+         * Gets the constructor symbol with the specified name and arity.
+         *
+         * @param name the name of the constructor; or an empty string for tuples
+         * @param arity the arity of the constructor
+         * @return the interned constructor symbol
+         */
+        fun of(name: String, arity: Int): Constructor {
+            if (arity > MAX_ARRAY_ARITY) return largeSymbols[Key(name, arity)] ?: create(name, arity)
+            val byArity = symbols[name]
+            if (byArity != null && arity < byArity.size) {
+                val symbol = byArity[arity]
+                if (symbol != null) return symbol
+            }
+            return create(name, arity)
+        }
+
+        /**
+         * Gets the constructor symbol with the specified id.
+         *
+         * @param id the id of the symbol
+         * @return the constructor symbol
+         * @throws IndexOutOfBoundsException if there is no symbol with the id
+         */
+        fun byId(id: Int): Constructor {
+            if (id < 0 || id >= count) throw IndexOutOfBoundsException("No constructor symbol with id $id.")
+            return byId[id]!!
+        }
+
+        /**
+         * The number of constructor symbols. The ids of the symbols are less than this number.
+         */
+        val size: Int get() = count
+
+        /**
+         * Creates and interns the constructor symbol with the specified name and arity,
+         * unless another thread did so first.
+         *
+         * @param name the name of the constructor
+         * @param arity the arity of the constructor
+         * @return the interned constructor symbol
+         */
+        @Synchronized
+        private fun create(name: String, arity: Int): Constructor {
+            require(arity >= 0) { "The arity must not be negative, got $arity." }
+            val byArity = symbols[name] ?: arrayOfNulls(0)
+            if (arity > MAX_ARRAY_ARITY) largeSymbols[Key(name, arity)]?.let { return it }
+            else if (arity < byArity.size) byArity[arity]?.let { return it }
+
+            // Share the name with the symbols of other arities
+            val sharedName = byArity.firstOrNull { it != null }?.name ?: name
+            val symbol = Constructor(sharedName, arity, count)
+            if (symbol.id == byId.size) byId = byId.copyOf(byId.size * 2)
+            byId[symbol.id] = symbol
+            count = symbol.id + 1
+
+            if (arity > MAX_ARRAY_ARITY) {
+                largeSymbols[Key(sharedName, arity)] = symbol
+            } else {
+                val newByArity = byArity.copyOf(maxOf(byArity.size, arity + 1))
+                newByArity[arity] = symbol
+                symbols[sharedName] = newByArity
+            }
+            return symbol
+        }
+    }
+
+    /**
+     * The key of a symbol with a large arity.
+     *
+     * @property name the name of the constructor
+     * @property arity the arity of the constructor
+     */
+    private data class Key(
+        val name: String,
+        val arity: Int,
+    )
+
+    override fun toString(): String = "$name/$arity"
+
+}
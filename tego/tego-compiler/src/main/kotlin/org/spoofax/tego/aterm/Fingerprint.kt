@@ -0,0 +1,242 @@
+package org.spoofax.tego.aterm
+
+/**
+ * A 128-bit fingerprint of the content of a term.
+ *
+ * The fingerprint of a term is computed from the kind and value of the term, and the fingerprints
+ * of its subterms and annotations, using the mixing steps of the 128-bit MurmurHash3 function.
+ * It depends only on the content of the term, and not on the JVM run or term implementation,
+ * which makes it suitable as a persistent cache key. Equal terms have equal fingerprints,
+ * and different terms are very unlikely to have equal fingerprints, provided the terms
+ * are not crafted to collide. Attachments other than annotations are not included,
+ * and the fingerprint of a blob term includes only the hash code of its value.
+ *
+ * @property high the high 64 bits
+ * @property low the low 64 bits
+ */
+data class Fingerprint(
+    val high: Long,
+    val low: Long,
+) {
+
+    companion object {
+        private const val APPL = 1L
+        private const val LIST = 2L
+        private const val STRING = 3L
+        private const val INT = 4L
+        private const val REAL = 5L
+        private const val PLACEHOLDER = 6L
+        private const val BLOB = 7L
+        private const val VAR = 8L
+
+        /**
+         * Computes the fingerprint of a term.
+         *
+         * The term and its subterms are traversed iteratively, using an explicit stack,
+         * so that the fingerprints of deeply nested terms can be computed on threads with a small stack.
+         * Subterms that cache their fingerprint (see [FingerprintCache]) are not traversed again,
+         * and the computed fingerprints are stored in their caches.
+         *
+         * @param term the term
+         * @return the fingerprint
+         */
+        fun of(term: Term): Fingerprint {
+            // The terms to visit, or the terms whose children have been visited
+            val stack = ArrayList<Any>()
+            // The fingerprints of the visited children, in order
+            val results = ArrayList<Fingerprint>()
+            stack.add(term)
+            while (stack.isNotEmpty()) {
+                val next = stack.removeAt(stack.size - 1)
+                if (next is Visited) {
+                    var index = results.size - next.childCount
+                    val start = index
+                    val fingerprint = compute(next.term) { results[index++] }
+                    while (results.size > start) results.removeAt(results.size - 1)
+                    results.add(fingerprint)
+                    (next.term as? FingerprintCache)?.cachedFingerprint = fingerprint
+                } else {
+                    val current = next as Term
+                    val cached = (current as? FingerprintCache)?.cachedFingerprint
+                    if (cached != null) {
+                        results.add(cached)
+                        continue
+                    }
+                    val children = children(current)
+                    stack.add(Visited(current, children.size))
+                    for (i in children.size - 1 downTo 0) stack.add(children[i])
+                }
+            }
+            return results.single()
+        }
+
+        /**
+         * Computes the fingerprint of a term from the fingerprints of its children.
+         *
+         * @param term the term
+         * @param childFingerprint gives the fingerprint of each child, in the order of [children]
+         * @return the fingerprint
+         */
+        internal fun compute(term: Term, childFingerprint: (Term) -> Fingerprint): Fingerprint {
+            val hasher = Hasher()
+            when (term) {
+                is ApplTerm -> {
+                    hasher.add(APPL)
+                    hasher.add(term.constructor)
+                    hasher.add(term.arity.toLong())
+                    for (i in 0 until term.arity) hasher.add(childFingerprint(term[i]))
+                }
+                is ListTerm -> {
+                    val elements = term.elements
+                    hasher.add(LIST)
+                    hasher.add(elements.size.toLong())
+                    for (element in elements) hasher.add(childFingerprint(element))
+                }
+                is StringTerm -> {
+                    hasher.add(STRING)
+                    hasher.add(term.value)
+                }
+                is IntTerm -> {
+                    hasher.add(INT)
+                    hasher.add(term.value.toLong())
+                }
+                is RealTerm -> {
+                    hasher.add(REAL)
+                    hasher.add(java.lang.Double.doubleToLongBits(term.value))
+                }
+                is PlaceholderTerm -> {
+                    hasher.add(PLACEHOLDER)
+                    hasher.add(childFingerprint(term.template))
+                }
+                is BlobTerm -> {
+                    hasher.add(BLOB)
+                    hasher.add(term.value.hashCode().toLong())
+                }
+                is TermVar -> {
+                    hasher.add(VAR)
+                    hasher.add(term.name)
+                }
+                else -> throw IllegalArgumentException("Unsupported term: $term")
+            }
+            val annotations = term.annotations
+            hasher.add(annotations.size.toLong())
+            for (annotation in annotations) hasher.add(childFingerprint(annotation))
+            return hasher.finish()
+        }
+
+        /**
+         * Gets the children of a term whose fingerprints are combined into the fingerprint of the term:
+         * its subterms (or the template of a placeholder), followed by its annotations.
+         */
+        private fun children(term: Term): List<Term> {
+            val subterms = if (term is PlaceholderTerm) listOf(term.template) else term.subterms
+            val annotations = term.annotations
+            return if (annotations.isEmpty()) subterms else subterms + annotations
+        }
+    }
+
+    /** Formats the fingerprint as 32 hexadecimal digits. */
+    override fun toString(): String
+        = String.format("%016x%016x", high, low)
+
+    /**
+     * A term whose children have been visited.
+     *
+     * @property term the term
+     * @property childCount the number of children of the term
+     */
+    private class Visited(val term: Term, val childCount: Int)
+
+    /**
+     * Computes a 128-bit hash of a sequence of 64-bit words, which are mixed in pairs
+     * as the blocks of the 128-bit MurmurHash3 function.
+     */
+    internal class Hasher {
+        private companion object {
+            const val C1 = -0x783c846eeebdac2bL // 0x87c37b91114253d5
+            const val C2 = 0x4cf5ad432745937fL
+
+            fun fmix(k: Long): Long {
+                var h = k
+                h = h xor (h ushr 33)
+                h *= -0xae502812aa7333L // 0xff51afd7ed558ccd
+                h = h xor (h ushr 33)
+                h *= -0x3b314601e57a13adL // 0xc4ceb9fe1a85ec53
+                h = h xor (h ushr 33)
+                return h
+            }
+        }
+
+        private var h1 = 0L
+        private var h2 = 0L
+        /** The first word of the current block. */
+        private var k1 = 0L
+        /** The number of words that were added. */
+        private var count = 0L
+
+        /** Adds a word. */
+        fun add(word: Long) {
+            if (count and 1L == 0L) {
+                k1 = word
+            } else {
+                mix(k1, word)
+            }
+            count += 1
+        }
+
+        /** Adds a string, as its length followed by its characters, four per word. */
+        fun add(s: String) {
+            add(s.length.toLong())
+            var word = 0L
+            for (i in s.indices) {
+                word = (word shl 16) or s[i].code.toLong()
+                if (i and 3 == 3) {
+                    add(word)
+                    word = 0L
+                }
+            }
+            if (s.length and 3 != 0) add(word)
+        }
+
+        /** Adds a fingerprint. */
+        fun add(fingerprint: Fingerprint) {
+            add(fingerprint.high)
+            add(fingerprint.low)
+        }
+
+        /** Mixes a block of two words. */
+        private fun mix(k1: Long, k2: Long) {
+            h1 = h1 xor (java.lang.Long.rotateLeft(k1 * C1, 31) * C2)
+            h1 = java.lang.Long.rotateLeft(h1, 27) + h2
+            h1 = h1 * 5 + 0x52dce729
+            h2 = h2 xor (java.lang.Long.rotateLeft(k2 * C2, 33) * C1)
+            h2 = java.lang.Long.rotateLeft(h2, 31) + h1
+            h2 = h2 * 5 + 0x38495ab5
+        }
+
+        /** Computes the fingerprint of the added words. */
+        fun finish(): Fingerprint {
+            if (count and 1L == 1L) mix(k1, 0L)
+            var a = h1 xor count
+            var b = h2 xor count
+            a += b
+            b += a
+            a = fmix(a)
+            b = fmix(b)
+            a += b
+            b += a
+            return Fingerprint(a, b)
+        }
+    }
+
+}
+
+/**
+ * A term that caches its fingerprint once it has been computed.
+ *
+ * As fingerprints are immutable, the cache can be set by any thread without synchronization.
+ */
+internal interface FingerprintCache {
+    /** The fingerprint of the term; or `null` if it has not been computed yet. */
+    var cachedFingerprint: Fingerprint?
+}
@@ -8,9 +8,7 @@ fun interface Matcher<T> {
      * Combines two matchers, first trying to apply the first and if this fails, the second.
      */
     infix fun or(other: Matcher<T>): Matcher<T>
-        = Matcher { term ->
-            this@Matcher.match(term) ?: other.match(term)
-        }
+        = OrMatcher(this, other)
 
     fun <R> map(transform: (T) -> R?): Matcher<R> = Matcher { term ->
         val t = match(term)
@@ -32,10 +30,20 @@ fun interface Matcher<T> {
 //    }
     companion object {
 
+        // SWITCH
+        /**
+         * Combines the specified matchers into a [MatcherSet],
+         * which tries them in order like [or] but dispatches on the term's kind, constructor, and arity.
+         *
+         * @param matchers the matchers to try, in order
+         * @return the matcher set
+         */
+        fun <T> switch(vararg matchers: Matcher<out T>): MatcherSet<T> = MatcherSet.of(matchers.asList())
+
         // TERM
 //        inline fun <reified T> id() = Matcher { term -> term as? T }
 
-        fun any() = Matcher { term -> term }
+        fun any(): Matcher<Term> = AnyMatcher
 
         fun <T> any(
             m: Matcher<T>
@@ -93,32 +101,20 @@ fun interface Matcher<T> {
         fun <R> appl(
             constructor: String,
             transform: (ApplTerm) -> R
-        ): Matcher<R> = Matcher { term ->
-            if (term !is ApplTerm || term.arity != 2 || term.constructor != constructor) return@Matcher null
-            transform(term)
-        }
+        ): Matcher<R> = ApplMatcher0(constructor, transform)
 
         fun <T0, R> appl(
             constructor: String,
             m0: Matcher<T0>,
             transform: (ApplTerm, T0) -> R
-        ): Matcher<R> = Matcher { term ->
-            if (term !is ApplTerm || term.arity != 2 || term.constructor != constructor) return@Matcher null
-            val a0 = m0.match(term[0]) ?: return@Matcher null
-            transform(term, a0)
-        }
+        ): Matcher<R> = ApplMatcher1(constructor, m0, transform)
 
         fun <T0, T1, R> appl(
             constructor: String,
             m0: Matcher<T0>,
             m1: Matcher<T1>,
             transform: (ApplTerm, T0, T1) -> R
-        ): Matcher<R> = Matcher { term ->
-            if (term !is ApplTerm || term.arity != 2 || term.constructor != constructor) return@Matcher null
-            val a0 = m0.match(term[0]) ?: return@Matcher null
-            val a1 = m1.match(term[1]) ?: return@Matcher null
-            transform(term, a0, a1)
-        }
+        ): Matcher<R> = ApplMatcher2(constructor, m0, m1, transform)
 
         fun <T0, T1, T2, R> appl(
             constructor: String,
@@ -126,13 +122,7 @@ fun interface Matcher<T> {
             m1: Matcher<T1>,
             m2: Matcher<T2>,
             transform: (ApplTerm, T0, T1, T2) -> R
-        ): Matcher<R> = Matcher { term ->
-            if (term !is ApplTerm || term.arity != 3 || term.constructor != constructor) return@Matcher null
-            val a0 = m0.match(term[0]) ?: return@Matcher null
-            val a1 = m1.match(term[1]) ?: return@Matcher null
-            val a2 = m2.match(term[2]) ?: return@Matcher null
-            transform(term, a0, a1, a2)
-        }
+        ): Matcher<R> = ApplMatcher3(constructor, m0, m1, m2, transform)
 
         fun <T0, T1, T2, T3, R> appl(
             constructor: String,
@@ -141,14 +131,7 @@ fun interface Matcher<T> {
             m2: Matcher<T2>,
             m3: Matcher<T3>,
             transform: (ApplTerm, T0, T1, T2, T3) -> R
-        ): Matcher<R> = Matcher { term ->
-            if (term !is ApplTerm || term.arity != 4 || term.constructor != constructor) return@Matcher null
-            val a0 = m0.match(term[0]) ?: return@Matcher null
-            val a1 = m1.match(term[1]) ?: return@Matcher null
-            val a2 = m2.match(term[2]) ?: return@Matcher null
-            val a3 = m3.match(term[3]) ?: return@Matcher null
-            transform(term, a0, a1, a2, a3)
-        }
+        ): Matcher<R> = ApplMatcher4(constructor, m0, m1, m2, m3, transform)
 
         fun <T0, T1, T2, T3, T4, R> appl(
             constructor: String,
@@ -158,15 +141,7 @@ fun interface Matcher<T> {
             m3: Matcher<T3>,
             m4: Matcher<T4>,
             transform: (ApplTerm, T0, T1, T2, T3, T4) -> R
-        ): Matcher<R> = Matcher { term ->
-            if (term !is ApplTerm || term.arity != 5 || term.constructor != constructor) return@Matcher null
-            val a0 = m0.match(term[0]) ?: return@Matcher null
-            val a1 = m1.match(term[1]) ?: return@Matcher null
-            val a2 = m2.match(term[2]) ?: return@Matcher null
-            val a3 = m3.match(term[3]) ?: return@Matcher null
-            val a4 = m4.match(term[3]) ?: return@Matcher null
-            transform(term, a0, a1, a2, a3, a4)
-        }
+        ): Matcher<R> = ApplMatcher5(constructor, m0, m1, m2, m3, m4, transform)
 
         // TUPLE
         fun appl() = tuple() { appl -> appl }
@@ -242,8 +217,8 @@ fun interface Matcher<T> {
         ): Matcher<R> = appl("", m0, m1, m2, m3, m4, transform)
 
         // LIST
-        fun list() = Matcher { term ->
-            if (term !is ListTerm) return@Matcher null
+        fun list() = ofKind(TermKind.LIST) { term ->
+            if (term !is ListTerm) return@ofKind null
             term
         }
 
@@ -254,9 +229,9 @@ fun interface Matcher<T> {
         fun <T, R> list(
             m: Matcher<T>,
             transform: (ListTerm, T) -> R
-        ) = Matcher { term ->
-            if (term !is ListTerm) return@Matcher null
-            val a = m.match(term) ?: return@Matcher null
+        ) = ofKind(TermKind.LIST) { term ->
+            if (term !is ListTerm) return@ofKind null
+            val a = m.match(term) ?: return@ofKind null
             transform(term, a)
         }
 
@@ -273,8 +248,8 @@ fun interface Matcher<T> {
         fun <T, R> listElems(
             m: Matcher<T>,
             transform: (ListTerm, List<T>) -> R
-        ) = Matcher { term ->
-            if (term !is ListTerm) return@Matcher null
+        ) = ofKind(TermKind.LIST) { term ->
+            if (term !is ListTerm) return@ofKind null
             val ass = term.elements.mapNotNull { m.match(it) }
 //            if (ass.size != term.elements.size) return@Matcher null
             transform(term, ass)
@@ -290,9 +265,9 @@ fun interface Matcher<T> {
         fun <T, R> string(
             m: Matcher<T>,
             transform: (StringTerm, T) -> R
-        ) = Matcher { term ->
-            if (term !is StringTerm) return@Matcher null
-            val a = m.match(term) ?: return@Matcher null
+        ) = ofKind(TermKind.STRING) { term ->
+            if (term !is StringTerm) return@ofKind null
+            val a = m.match(term) ?: return@ofKind null
             transform(term, a)
         }
 
@@ -300,8 +275,8 @@ fun interface Matcher<T> {
 
         fun <R> stringValue(
             transform: (StringTerm, String) -> R
-        ) = Matcher { term ->
-            if (term !is StringTerm) return@Matcher null
+        ) = ofKind(TermKind.STRING) { term ->
+            if (term !is StringTerm) return@ofKind null
             transform(term, term.value)
         }
 
@@ -315,9 +290,9 @@ fun interface Matcher<T> {
         fun <T, R> int(
             m: Matcher<T>,
             transform: (IntTerm, T) -> R
-        ) = Matcher { term ->
-            if (term !is IntTerm) return@Matcher null
-            val a = m.match(term) ?: return@Matcher null
+        ) = ofKind(TermKind.INT) { term ->
+            if (term !is IntTerm) return@ofKind null
+            val a = m.match(term) ?: return@ofKind null
             transform(term, a)
         }
 
@@ -325,8 +300,8 @@ fun interface Matcher<T> {
 
         fun <R> intValue(
             transform: (IntTerm, Int) -> R
-        ) = Matcher { term ->
-            if (term !is IntTerm) return@Matcher null
+        ) = ofKind(TermKind.INT) { term ->
+            if (term !is IntTerm) return@ofKind null
             transform(term, term.value)
         }
 
@@ -340,9 +315,9 @@ fun interface Matcher<T> {
         fun <T, R> blob(
             m: Matcher<T>,
             transform: (BlobTerm, T) -> R
-        ) = Matcher { term ->
-            if (term !is BlobTerm) return@Matcher null
-            val a = m.match(term) ?: return@Matcher null
+        ) = ofKind(TermKind.BLOB) { term ->
+            if (term !is BlobTerm) return@ofKind null
+            val a = m.match(term) ?: return@ofKind null
             transform(term, a)
         }
 
@@ -350,8 +325,8 @@ fun interface Matcher<T> {
 
         fun <R> blobValue(
             transform: (BlobTerm, Any) -> R
-        ) = Matcher { term ->
-            if (term !is BlobTerm) return@Matcher null
+        ) = ofKind(TermKind.BLOB) { term ->
+            if (term !is BlobTerm) return@ofKind null
             transform(term, term.value)
         }
 
@@ -365,9 +340,9 @@ fun interface Matcher<T> {
         fun <T, R> `var`(
             m: Matcher<T>,
             transform: (TermVar, T) -> R
-        ) = Matcher { term ->
-            if (term !is TermVar) return@Matcher null
-            val a = m.match(term) ?: return@Matcher null
+        ) = ofKind(TermKind.VAR) { term ->
+            if (term !is TermVar) return@ofKind null
+            val a = m.match(term) ?: return@ofKind null
             transform(term, a)
         }
 
@@ -375,9 +350,253 @@ fun interface Matcher<T> {
 
         fun <R> varName(
             transform: (TermVar, String) -> R
-        ) = Matcher { term ->
-            if (term !is TermVar) return@Matcher null
+        ) = ofKind(TermKind.VAR) { term ->
+            if (term !is TermVar) return@ofKind null
             transform(term, term.name)
         }
+
+        /**
+         * Creates a matcher that only matches terms of the specified kind.
+         *
+         * @param kind the kind of term
+         * @param match the function that matches the term
+         * @return the matcher
+         */
+        private fun <R> ofKind(kind: TermKind, match: (Term) -> R?): Matcher<R> = KindMatcher(kind, match)
+    }
+}
+
+/**
+ * The kind of a term, by which a [MatcherSet] dispatches.
+ */
+internal enum class TermKind {
+    APPL,
+    LIST,
+    STRING,
+    INT,
+    REAL,
+    PLACEHOLDER,
+    BLOB,
+    VAR,
+    OTHER;
+
+    companion object {
+        /**
+         * Gets the kind of the specified term.
+         *
+         * @param term the term
+         * @return the kind of term
+         */
+        fun of(term: Term): TermKind = when (term) {
+            is ApplTerm -> APPL
+            is ListTerm -> LIST
+            is StringTerm -> STRING
+            is IntTerm -> INT
+            is RealTerm -> REAL
+            is PlaceholderTerm -> PLACEHOLDER
+            is BlobTerm -> BLOB
+            is TermVar -> VAR
+            else -> OTHER
+        }
+    }
+}
+
+/**
+ * A matcher that matches any term.
+ */
+internal object AnyMatcher : Matcher<Term> {
+    override fun match(term: Term): Term = term
+}
+
+/**
+ * A matcher that tries the first matcher and, if it fails, the second.
+ *
+ * @property first the first matcher
+ * @property second the second matcher
+ */
+internal class OrMatcher<T>(
+    val first: Matcher<T>,
+    val second: Matcher<T>,
+) : Matcher<T> {
+    override fun match(term: Term): T? = first.match(term) ?: second.match(term)
+}
+
+/**
+ * A matcher that only matches terms of a specific kind.
+ *
+ * @property kind the kind of the terms that can match
+ * @property body the function that matches the term
+ */
+internal class KindMatcher<T>(
+    val kind: TermKind,
+    val body: (Term) -> T?,
+) : Matcher<T> {
+    override fun match(term: Term): T? = body(term)
+}
+
+/**
+ * A matcher of constructor applications with a specific constructor and arity,
+ * whose arguments are matched by the argument matchers.
+ *
+ * Each arity has its own subclass, whose [match] calls the argument matchers and the transform
+ * directly, without allocating. The untyped [build], which takes the results of the argument matchers
+ * as an array, is only used by [MatcherSet], which runs the argument matchers itself.
+ * The [MatcherCompiler] calls the typed [function] directly instead.
+ *
+ * @param constructor the constructor name
+ * @property args the matchers of the arguments
+ */
+internal abstract class ApplMatcher<T>(
+    constructor: String,
+    val args: Array<out Matcher<*>>,
+) : Matcher<T> {
+
+    /** The constructor symbol of the matched terms. */
+    val symbol: Constructor = Constructor.of(constructor, args.size)
+
+    /**
+     * The function that builds the result from the term and the results of the argument matchers,
+     * which takes the term and one argument for each argument matcher.
+     */
+    abstract val function: Function<T>
+
+    /**
+     * Builds the result from the term and the matched arguments.
+     *
+     * @param term the matched term
+     * @param results the results of the argument matchers
+     * @return the result; or `null` when the term does not match
+     */
+    abstract fun build(term: ApplTerm, results: Array<Any?>): T?
+
+}
+
+/**
+ * An [ApplMatcher] of constructor applications with no arguments.
+ */
+internal class ApplMatcher0<R>(
+    constructor: String,
+    override val function: (ApplTerm) -> R,
+) : ApplMatcher<R>(constructor, emptyArray()) {
+    override fun match(term: Term): R? {
+        if (term !is ApplTerm || term.symbol !== symbol) return null
+        return function(term)
     }
-}
\ No newline at end of file
+
+    override fun build(term: ApplTerm, results: Array<Any?>): R? = function(term)
+}
+
+/**
+ * An [ApplMatcher] of constructor applications with one argument.
+ */
+internal class ApplMatcher1<T0, R>(
+    constructor: String,
+    private val m0: Matcher<T0>,
+    override val function: (ApplTerm, T0) -> R,
+) : ApplMatcher<R>(constructor, arrayOf(m0)) {
+    override fun match(term: Term): R? {
+        if (term !is ApplTerm || term.symbol !== symbol) return null
+        val a0 = m0.match(term[0]) ?: return null
+        return function(term, a0)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun build(term: ApplTerm, results: Array<Any?>): R?
+        = function(term, results[0] as T0)
+}
+
+/**
+ * An [ApplMatcher] of constructor applications with two arguments.
+ */
+internal class ApplMatcher2<T0, T1, R>(
+    constructor: String,
+    private val m0: Matcher<T0>,
+    private val m1: Matcher<T1>,
+    override val function: (ApplTerm, T0, T1) -> R,
+) : ApplMatcher<R>(constructor, arrayOf(m0, m1)) {
+    override fun match(term: Term): R? {
+        if (term !is ApplTerm || term.symbol !== symbol) return null
+        val a0 = m0.match(term[0]) ?: return null
+        val a1 = m1.match(term[1]) ?: return null
+        return function(term, a0, a1)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun build(term: ApplTerm, results: Array<Any?>): R?
+        = function(term, results[0] as T0, results[1] as T1)
+}
+
+/**
+ * An [ApplMatcher] of constructor applications with three arguments.
+ */
+internal class ApplMatcher3<T0, T1, T2, R>(
+    constructor: String,
+    private val m0: Matcher<T0>,
+    private val m1: Matcher<T1>,
+    private val m2: Matcher<T2>,
+    override val function: (ApplTerm, T0, T1, T2) -> R,
+) : ApplMatcher<R>(constructor, arrayOf(m0, m1, m2)) {
+    override fun match(term: Term): R? {
+        if (term !is ApplTerm || term.symbol !== symbol) return null
+        val a0 = m0.match(term[0]) ?: return null
+        val a1 = m1.match(term[1]) ?: return null
+        val a2 = m2.match(term[2]) ?: return null
+        return function(term, a0, a1, a2)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun build(term: ApplTerm, results: Array<Any?>): R?
+        = function(term, results[0] as T0, results[1] as T1, results[2] as T2)
+}
+
+/**
+ * An [ApplMatcher] of constructor applications with four arguments.
+ */
+internal class ApplMatcher4<T0, T1, T2, T3, R>(
+    constructor: String,
+    private val m0: Matcher<T0>,
+    private val m1: Matcher<T1>,
+    private val m2: Matcher<T2>,
+    private val m3: Matcher<T3>,
+    override val function: (ApplTerm, T0, T1, T2, T3) -> R,
+) : ApplMatcher<R>(constructor, arrayOf(m0, m1, m2, m3)) {
+    override fun match(term: Term): R? {
+        if (term !is ApplTerm || term.symbol !== symbol) return null
+        val a0 = m0.match(term[0]) ?: return null
+        val a1 = m1.match(term[1]) ?: return null
+        val a2 = m2.match(term[2]) ?: return null
+        val a3 = m3.match(term[3]) ?: return null
+        return function(term, a0, a1, a2, a3)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun build(term: ApplTerm, results: Array<Any?>): R?
+        = function(term, results[0] as T0, results[1] as T1, results[2] as T2, results[3] as T3)
+}
+
+/**
+ * An [ApplMatcher] of constructor applications with five arguments.
+ */
+internal class ApplMatcher5<T0, T1, T2, T3, T4, R>(
+    constructor: String,
+    private val m0: Matcher<T0>,
+    private val m1: Matcher<T1>,
+    private val m2: Matcher<T2>,
+    private val m3: Matcher<T3>,
+    private val m4: Matcher<T4>,
+    override val function: (ApplTerm, T0, T1, T2, T3, T4) -> R,
+) : ApplMatcher<R>(constructor, arrayOf(m0, m1, m2, m3, m4)) {
+    override fun match(term: Term): R? {
+        if (term !is ApplTerm || term.symbol !== symbol) return null
+        val a0 = m0.match(term[0]) ?: return null
+        val a1 = m1.match(term[1]) ?: return null
+        val a2 = m2.match(term[2]) ?: return null
+        val a3 = m3.match(term[3]) ?: return null
+        val a4 = m4.match(term[4]) ?: return null
+        return function(term, a0, a1, a2, a3, a4)
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    override fun build(term: ApplTerm, results: Array<Any?>): R?
+        = function(term, results[0] as T0, results[1] as T1, results[2] as T2, results[3] as T3, results[4] as T4)
+}
@@ -0,0 +1,312 @@
+package org.spoofax.tego.aterm
+
+import com.virtlink.kasm.*
+import org.objectweb.asm.Label
+import java.util.*
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Compiles matchers into JVM classes.
+ *
+ * A matcher built from the [Matcher.Companion] primitives is a tree of lambdas that capture lambdas,
+ * whose megamorphic call sites the JIT compiler cannot inline well. This compiler emits a dedicated class
+ * for each matcher, which performs the tests of the whole tree in straight-line code:
+ * `instanceof` checks of the term kinds, identity tests of the constructor symbols of constructor applications,
+ * and direct loads of their arguments. Only the transform functions of the matchers, and any matchers
+ * that are not built from the primitives, are called, through the fields of the class. The transform
+ * of a constructor application matcher is called with the results of its argument matchers as arguments,
+ * so that a successful match allocates nothing but what the transform allocates.
+ *
+ * A [MatcherSet] keeps its decision tree, and its alternatives are compiled.
+ *
+ * @param parentClassLoader the parent class loader of the compiled classes
+ */
+class MatcherCompiler(
+    parentClassLoader: ClassLoader = MatcherCompiler::class.java.classLoader,
+) {
+
+    companion object {
+        /** The number of compiled classes, used to generate unique class names. */
+        private val classCount = AtomicInteger()
+
+        private val termType = JvmType.of(Term::class.java)
+        private val applTermType = JvmType.of(ApplTerm::class.java)
+        private val constructorType = JvmType.of(Constructor::class.java)
+        private val matcherType = JvmType.of(Matcher::class.java)
+        private val function1Type = JvmType.of(Function1::class.java)
+
+        /** The types of the Kotlin functions, by their number of parameters. */
+        private val functionTypes = listOf(
+            Function0::class.java, Function1::class.java, Function2::class.java, Function3::class.java,
+            Function4::class.java, Function5::class.java, Function6::class.java,
+        ).map { JvmType.of(it) }
+        private val objectArrayType = JvmType.arrayOf(JvmTypes.Object)
+
+        /**
+         * Gets the JVM type of the terms of the specified kind.
+         *
+         * @param kind the kind of term
+         * @return the JVM type
+         */
+        private fun jvmTypeOf(kind: TermKind): JvmType = JvmType.of(when (kind) {
+            TermKind.APPL -> ApplTerm::class.java
+            TermKind.LIST -> ListTerm::class.java
+            TermKind.STRING -> StringTerm::class.java
+            TermKind.INT -> IntTerm::class.java
+            TermKind.REAL -> RealTerm::class.java
+            TermKind.PLACEHOLDER -> PlaceholderTerm::class.java
+            TermKind.BLOB -> BlobTerm::class.java
+            TermKind.VAR -> TermVar::class.java
+            TermKind.OTHER -> Term::class.java
+        })
+    }
+
+    /** The class loader of the compiled classes. */
+    private val classLoader = DynamicClassLoader(parentClassLoader)
+
+    /**
+     * Compiles the specified matcher.
+     *
+     * @param matcher the matcher to compile
+     * @return the compiled matcher, which gives the same results
+     */
+    fun <T> compile(matcher: Matcher<T>): Matcher<T> {
+        if (matcher is MatcherSet<T>) return matcher.compile { compile(it) }
+        if (matcher is AnyMatcher) return matcher
+
+        val type = JvmType.of("org.spoofax.tego.aterm.CompiledMatcher\$${classCount.incrementAndGet()}")
+        val constants = ArrayList<Any>()
+        val constantTypes = ArrayList<JvmType>()
+        val classWriter = ClassFileBuilder.`class`(
+            ClassModifier.Public or ClassModifier.Final or ClassModifier.Super,
+            type, null, JvmTypes.Object, listOf(matcherType)
+        ) {
+            // public Object match(Term term) {
+            //     ..
+            //     return result;
+            //   fail:
+            //     return null;
+            // }
+            method(
+                EnumSet.of(MethodModifier.Public), "match",
+                JvmMethodSignature.of(JvmTypes.Object, listOf(termType))
+            ) {
+                val `this` = localVar("this", type)
+                val term = localVar("term", termType)
+                val fail = newLabel()
+                val emitter = Emitter(this, type, `this`, constants, constantTypes)
+                val result = emitter.emitMatch(matcher, term, fail)
+                aLoad(result)
+                aReturn()
+                label(fail)
+                aConst_Null()
+                aReturn()
+            }
+
+            // private final Function3 c0;
+            // ..
+            constantTypes.forEachIndexed { i, constantType ->
+                field(FieldModifier.Private or FieldModifier.Final, "c$i", constantType)
+            }
+
+            // public CompiledMatcher$1(Object[] constants) {
+            //     super();
+            //     this.c0 = (Function3)constants[0];
+            //     ..
+            // }
+            constructor(
+                EnumSet.of(MethodModifier.Public),
+                JvmMethodSignature.of(JvmType.Void, listOf(objectArrayType))
+            ) {
+                val `this` = localVar("this", type)
+                val constantsArg = localVar("constants", objectArrayType)
+                aLoad(`this`)
+                invokeConstructor(JvmTypes.Object, JvmMethodSignature.of(JvmType.Void, emptyList()))
+                constantTypes.forEachIndexed { i, constantType ->
+                    aLoad(`this`)
+                    aLoad(constantsArg)
+                    pushInt(i)
+                    aaLoad()
+                    checkCast(constantType)
+                    putField(type, "c$i", constantType)
+                }
+                `return`()
+            }
+        }
+
+        val cls = synchronized(classLoader) {
+            classLoader.defineClass(type.classPath, classWriter.toByteArray())
+        }
+        @Suppress("UNCHECKED_CAST")
+        return cls.getConstructor(Array<Any>::class.java).newInstance(constants.toTypedArray()) as Matcher<T>
+    }
+
+    /**
+     * Emits the code of a matcher.
+     *
+     * @property scope the scope of the method
+     * @property type the type of the compiled class
+     * @property thisVar the `this` variable
+     * @property constants the values of the fields of the class
+     * @property constantTypes the types of the fields of the class
+     */
+    private class Emitter(
+        private val scope: ScopeBuilder,
+        private val type: JvmType,
+        private val thisVar: LocalVar,
+        private val constants: MutableList<Any>,
+        private val constantTypes: MutableList<JvmType>,
+    ) {
+
+        /**
+         * Emits the code that matches a term.
+         *
+         * @param matcher the matcher
+         * @param term the variable with the term to match
+         * @param fail the label to jump to when the term does not match
+         * @return the variable with the (non-null) result of the match
+         */
+        fun emitMatch(matcher: Matcher<*>, term: LocalVar, fail: Label): LocalVar = when (matcher) {
+            is AnyMatcher -> term
+            is OrMatcher<*> -> emitOr(matcher, term, fail)
+            is ApplMatcher<*> -> emitAppl(matcher, term, fail)
+            is KindMatcher<*> -> emitKind(matcher, term, fail)
+            else -> emitCall(matcher, term, fail)
+        }
+
+        /**
+         * Emits the code of a matcher that tries two matchers.
+         */
+        private fun emitOr(matcher: OrMatcher<*>, term: LocalVar, fail: Label): LocalVar = scope.run {
+            val result = localVar(null, JvmTypes.Object)
+            val trySecond = newLabel()
+            val done = newLabel()
+            aLoad(emitMatch(matcher.first, term, trySecond))
+            aStore(result)
+            goto(done)
+            label(trySecond)
+            aLoad(emitMatch(matcher.second, term, fail))
+            aStore(result)
+            label(done)
+            result
+        }
+
+        /**
+         * Emits the code of a matcher of constructor applications.
+         */
+        private fun emitAppl(matcher: ApplMatcher<*>, term: LocalVar, fail: Label): LocalVar = scope.run {
+            // if (!(term instanceof ApplTerm)) goto fail;
+            aLoad(term)
+            instanceOf(applTermType)
+            ifEq(fail)
+            val appl = localVar(null, applTermType)
+            aLoad(term)
+            checkCast(applTermType)
+            aStore(appl)
+
+            // if (appl.getSymbol() != this.cN) goto fail;
+            val symbol = constant(matcher.symbol, constructorType)
+            aLoad(appl)
+            invokeInterface(applTermType, "getSymbol", JvmMethodSignature.of(constructorType, emptyList()))
+            aLoad(thisVar)
+            getField(type, symbol, constructorType)
+            ifACmpNe(fail)
+
+            // Object ri = <match appl.get(i)>;
+            val results = matcher.args.mapIndexed { i, argMatcher ->
+                val arg = localVar(null, termType)
+                aLoad(appl)
+                pushInt(i)
+                invokeInterface(applTermType, "get", JvmMethodSignature.of(termType, listOf(JvmType.Integer)))
+                aStore(arg)
+                emitMatch(argMatcher, arg, fail)
+            }
+
+            // Object result = this.cN.invoke(appl, r0, ..);
+            val functionType = functionTypes[results.size + 1]
+            val function = constant(matcher.function, functionType)
+            aLoad(thisVar)
+            getField(type, function, functionType)
+            aLoad(appl)
+            results.forEach { aLoad(it) }
+            invokeInterface(functionType, "invoke", JvmMethodSignature.of(JvmTypes.Object, List(results.size + 1) { JvmTypes.Object }))
+            storeResult(fail)
+        }
+
+        /**
+         * Emits the code of a matcher of terms of a specific kind.
+         */
+        private fun emitKind(matcher: KindMatcher<*>, term: LocalVar, fail: Label): LocalVar = scope.run {
+            // if (!(term instanceof Kind)) goto fail;
+            aLoad(term)
+            instanceOf(jvmTypeOf(matcher.kind))
+            ifEq(fail)
+
+            // Object result = this.cN.invoke(term);
+            val body = constant(matcher.body, function1Type)
+            aLoad(thisVar)
+            getField(type, body, function1Type)
+            aLoad(term)
+            invokeInterface(function1Type, "invoke", JvmMethodSignature.of(JvmTypes.Object, listOf(JvmTypes.Object)))
+            storeResult(fail)
+        }
+
+        /**
+         * Emits the code that calls a matcher that cannot be compiled.
+         */
+        private fun emitCall(matcher: Matcher<*>, term: LocalVar, fail: Label): LocalVar = scope.run {
+            // Object result = this.cN.match(term);
+            val field = constant(matcher, matcherType)
+            aLoad(thisVar)
+            getField(type, field, matcherType)
+            aLoad(term)
+            invokeInterface(matcherType, "match", JvmMethodSignature.of(JvmTypes.Object, listOf(termType)))
+            storeResult(fail)
+        }
+
+        /**
+         * Emits the code that stores the result on the stack in a new variable,
+         * and jumps to the specified label if the result is `null`.
+         */
+        private fun storeResult(fail: Label): LocalVar = scope.run {
+            val result = localVar(null, JvmTypes.Object)
+            aStore(result)
+            aLoad(result)
+            ifNull(fail)
+            result
+        }
+
+        /**
+         * Adds a field with the specified value to the class.
+         *
+         * @param value the value of the field
+         * @param type the type of the field
+         * @return the name of the field
+         */
+        private fun constant(value: Any, type: JvmType): String {
+            constants.add(value)
+            constantTypes.add(type)
+            return "c${constants.size - 1}"
+        }
+
+    }
+
+}
+
+/**
+ * Pushes the specified integer constant on the stack.
+ *
+ * @param value the value to push
+ */
+private fun ScopeBuilder.pushInt(value: Int) = when (value) {
+    -1 -> iConst_m1()
+    0 -> iConst_0()
+    1 -> iConst_1()
+    2 -> iConst_2()
+    3 -> iConst_3()
+    4 -> iConst_4()
+    5 -> iConst_5()
+    in Byte.MIN_VALUE..Byte.MAX_VALUE -> biPush(value.toByte())
+    in Short.MIN_VALUE..Short.MAX_VALUE -> siPush(value.toShort())
+    else -> ldc(value)
+}
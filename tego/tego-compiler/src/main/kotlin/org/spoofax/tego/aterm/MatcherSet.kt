@@ -0,0 +1,221 @@
+package org.spoofax.tego.aterm
+
+import java.util.*
+
+/**
+ * A set of alternative matchers, compiled into a decision tree.
+ *
+ * Matching a term gives the same result as combining the matchers with [Matcher.or]:
+ * the result of the first matcher that matches the term. However, instead of trying
+ * each matcher in turn, the set first selects the matchers that can match the term
+ * by the kind of term and, for constructor applications, by the id of the [Constructor] symbol,
+ * which indexes an array. Matchers created with [Matcher.appl] and [Matcher.tuple] are selected
+ * by constructor symbol, and the list, string, integer, blob, and variable matchers
+ * are selected by kind. Any other matchers are tried for every term, at their position in the order.
+ *
+ * Argument matchers that are shared between the alternatives for a constructor symbol
+ * (the same matcher instance at the same argument position) are evaluated at most once per term.
+ *
+ * @property matchers the matchers, in order
+ */
+class MatcherSet<T> private constructor(
+    private val matchers: List<Matcher<out T>>,
+    private val applBranches: Array<Branch<T>?>,
+    private val kindBranches: Array<Branch<T>>,
+) : Matcher<T> {
+
+    companion object {
+        /**
+         * Compiles the specified matchers into a matcher set.
+         *
+         * The matchers of nested matcher sets are included in the new set.
+         *
+         * @param matchers the matchers to try, in order
+         * @return the matcher set
+         */
+        fun <T> of(vararg matchers: Matcher<out T>): MatcherSet<T> = of(matchers.asList())
+
+        /**
+         * Compiles the specified matchers into a matcher set.
+         *
+         * The matchers of nested matcher sets are included in the new set.
+         *
+         * @param matchers the matchers to try, in order
+         * @return the matcher set
+         */
+        fun <T> of(matchers: List<Matcher<out T>>): MatcherSet<T> {
+            val all = ArrayList<Matcher<out T>>()
+            matchers.forEach { addAlternatives(it, all) }
+            return build(all, null)
+        }
+
+        /**
+         * Adds the alternatives of the specified matcher,
+         * flattening nested matcher sets and [Matcher.or] combinations.
+         *
+         * @param matcher the matcher
+         * @param alternatives the list to add the alternatives to
+         */
+        private fun <T> addAlternatives(matcher: Matcher<out T>, alternatives: MutableList<Matcher<out T>>) {
+            @Suppress("UNCHECKED_CAST")
+            when (matcher) {
+                is MatcherSet<*> -> alternatives.addAll((matcher as MatcherSet<out T>).matchers)
+                is OrMatcher<*> -> {
+                    addAlternatives((matcher as OrMatcher<out T>).first, alternatives)
+                    addAlternatives(matcher.second, alternatives)
+                }
+                else -> alternatives.add(matcher)
+            }
+        }
+
+        /**
+         * Builds the decision tree of the specified matchers.
+         *
+         * @param all the matchers, in order
+         * @param compile the function that compiles the matchers in the branches; or `null`
+         * @return the matcher set
+         */
+        private fun <T> build(all: List<Matcher<out T>>, compile: ((Matcher<out T>) -> Matcher<out T>)?): MatcherSet<T> {
+            // Each matcher is compiled at most once
+            val compiled = IdentityHashMap<Matcher<out T>, Matcher<out T>>()
+            val prepare: ((List<Matcher<out T>>) -> List<Matcher<out T>>)? = compile?.let { f ->
+                { matchers -> matchers.map { compiled.getOrPut(it) { f(it) } } }
+            }
+
+            // The branches by constructor symbol id
+            val symbols = all.filterIsInstance<ApplMatcher<*>>().map { it.symbol }.distinct()
+            val applBranches = arrayOfNulls<Branch<T>>((symbols.maxOfOrNull { it.id } ?: -1) + 1)
+            for (symbol in symbols) {
+                applBranches[symbol.id] = Branch.of(all.filter { canMatchAppl(it, symbol) }, symbol.arity, prepare)
+            }
+            val kindBranches = TermKind.values().map { kind ->
+                Branch.of(all.filter { canMatchKind(it, kind) }, -1, prepare)
+            }.toTypedArray()
+            return MatcherSet(all, applBranches, kindBranches)
+        }
+
+        /**
+         * Determines whether the specified matcher can match a constructor application
+         * with the specified constructor symbol.
+         */
+        private fun canMatchAppl(matcher: Matcher<*>, symbol: Constructor): Boolean = when (matcher) {
+            is ApplMatcher<*> -> matcher.symbol === symbol
+            else -> canMatchKind(matcher, TermKind.APPL)
+        }
+
+        /**
+         * Determines whether the specified matcher can match a term of the specified kind
+         * whose constructor (if any) is not known to the set.
+         */
+        private fun canMatchKind(matcher: Matcher<*>, kind: TermKind): Boolean = when (matcher) {
+            is ApplMatcher<*> -> false
+            is KindMatcher<*> -> matcher.kind == kind
+            else -> true
+        }
+    }
+
+    /**
+     * Creates a matcher set with the same decision tree,
+     * whose matchers are compiled with the specified function.
+     *
+     * @param compile the function that compiles a matcher
+     * @return the resulting matcher set
+     */
+    internal fun compile(compile: (Matcher<out T>) -> Matcher<out T>): MatcherSet<T> = build(matchers, compile)
+
+    override fun match(term: Term): T? {
+        val kind = TermKind.of(term)
+        if (kind == TermKind.APPL) {
+            val id = (term as ApplTerm).symbol.id
+            if (id < applBranches.size) {
+                val branch = applBranches[id]
+                if (branch != null) return branch.match(term)
+            }
+        }
+        return kindBranches[kind.ordinal].match(term)
+    }
+
+    /**
+     * A leaf of the decision tree: the matchers to try, in order, for the selected terms.
+     *
+     * @property matchers the matchers to try, in order
+     * @property argSlots for each matcher that is an [ApplMatcher], the slot of the result of each argument matcher;
+     * otherwise, `null`
+     * @property slotCount the number of distinct argument matchers
+     */
+    private class Branch<T>(
+        private val matchers: Array<Matcher<out T>>,
+        private val argSlots: Array<IntArray?>,
+        private val slotCount: Int,
+    ) {
+        companion object {
+            /** Marks the result of an argument matcher that did not match. */
+            private val FAILED = Any()
+
+            /**
+             * Creates a branch with the specified matchers.
+             *
+             * @param matchers the matchers to try, in order
+             * @param arity the arity of the selected constructor applications; or -1
+             * @param prepare the function that compiles the matchers, whose arguments are then not shared; or `null`
+             * @return the branch
+             */
+            fun <T> of(matchers: List<Matcher<out T>>, arity: Int, prepare: ((List<Matcher<out T>>) -> List<Matcher<out T>>)?): Branch<T> {
+                if (prepare != null) {
+                    val prepared = prepare(matchers)
+                    return Branch(prepared.toTypedArray(), arrayOfNulls(prepared.size), 0)
+                }
+                // The slot of each argument matcher instance, by argument position
+                val slotsByPosition = Array(maxOf(arity, 0)) { IdentityHashMap<Matcher<*>, Int>() }
+                var slotCount = 0
+                val argSlots = matchers.map { matcher ->
+                    if (matcher !is ApplMatcher<*>) return@map null
+                    IntArray(matcher.args.size) { i -> slotsByPosition[i].getOrPut(matcher.args[i]) { slotCount++ } }
+                }
+                return Branch(matchers.toTypedArray(), argSlots.toTypedArray(), slotCount)
+            }
+        }
+
+        /**
+         * Matches the specified term.
+         *
+         * @param term the term to match
+         * @return the result of the first matcher that matches; or `null` when none match
+         */
+        fun match(term: Term): T? {
+            // The results of the argument matchers that have been evaluated
+            val results = if (slotCount > 0) arrayOfNulls<Any>(slotCount) else null
+            for (i in matchers.indices) {
+                val matcher = matchers[i]
+                val slots = argSlots[i]
+                val result = if (slots == null) {
+                    matcher.match(term)
+                } else {
+                    matchAppl(matcher as ApplMatcher<out T>, term as ApplTerm, slots, results)
+                }
+                if (result != null) return result
+            }
+            return null
+        }
+
+        /**
+         * Matches the arguments of the specified term, reusing the results of argument matchers
+         * that have already been evaluated.
+         */
+        private fun matchAppl(matcher: ApplMatcher<out T>, term: ApplTerm, slots: IntArray, results: Array<Any?>?): T? {
+            val args = arrayOfNulls<Any>(slots.size)
+            for (j in slots.indices) {
+                val slot = slots[j]
+                var result = results!![slot]
+                if (result == null) {
+                    result = matcher.args[j].match(term[j]) ?: FAILED
+                    results[slot] = result
+                }
+                if (result === FAILED) return null
+                args[j] = result
+            }
+            return matcher.build(term, args)
+        }
+    }
+
+}
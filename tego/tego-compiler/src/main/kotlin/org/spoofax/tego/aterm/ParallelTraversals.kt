@@ -0,0 +1,133 @@
+package org.spoofax.tego.aterm
+
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
+
+/**
+ * Generic deep traversals over terms, which traverse the subterms near the root in parallel.
+ *
+ * The subterms of the terms up to [splitDepth] levels below the root are traversed
+ * as separate fork/join tasks; deeper subterms are traversed sequentially by [Traversals].
+ * Terms with fewer than [minSplit] subterms are not split. The result is the same as that of
+ * the corresponding sequential traversal, provided the rewrite is a function of its input
+ * and can be called concurrently. The term factory must be thread-safe.
+ *
+ * @property factory the term factory used to rebuild terms whose subterms changed
+ * @property pool the fork/join pool that runs the tasks
+ * @property splitDepth the depth up to which the subterms of terms are traversed in parallel
+ * @property minSplit the minimum number of subterms of a term to traverse them in parallel
+ */
+class ParallelTraversals(
+    private val factory: TermFactory,
+    private val pool: ForkJoinPool = ForkJoinPool.commonPool(),
+    private val splitDepth: Int = 4,
+    private val minSplit: Int = 2,
+) {
+
+    private companion object {
+        const val TOPDOWN = 0
+        const val BOTTOMUP = 1
+        const val INNERMOST = 2
+    }
+
+    init {
+        require(splitDepth >= 0) { "The split depth must not be negative, got $splitDepth." }
+        require(minSplit >= 1) { "The minimum number of subterms to split must be positive, got $minSplit." }
+    }
+
+    /** The sequential traversals. */
+    private val sequential = Traversals(factory)
+
+    /**
+     * Applies the rewrite to the term, and then to the subterms of the result, recursively (pre-order).
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the rewritten term; or `null` if the rewrite failed on any term
+     */
+    fun topdown(term: Term, rewrite: Matcher<out Term>): Term? = pool.invoke(TraverseTask(term, rewrite, TOPDOWN, 0))
+
+    /**
+     * Applies the rewrite to the subterms of the term, recursively, and then to the term (post-order).
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the rewritten term; or `null` if the rewrite failed on any term
+     */
+    fun bottomup(term: Term, rewrite: Matcher<out Term>): Term? = pool.invoke(TraverseTask(term, rewrite, BOTTOMUP, 0))
+
+    /**
+     * Applies the rewrite to the term and its subterms until it fails on all of them,
+     * rewriting the innermost terms first.
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the normal form of the term
+     */
+    fun innermost(term: Term, rewrite: Matcher<out Term>): Term = pool.invoke(TraverseTask(term, rewrite, INNERMOST, 0))!!
+
+    /**
+     * Traverses a term.
+     *
+     * @property term the term
+     * @property rewrite the rewrite to apply
+     * @property mode the kind of traversal
+     * @property depth the depth of the term below the root
+     */
+    private inner class TraverseTask(
+        private val term: Term,
+        private val rewrite: Matcher<out Term>,
+        private val mode: Int,
+        private val depth: Int,
+    ) : RecursiveTask<Term?>() {
+
+        override fun compute(): Term? {
+            if (depth >= splitDepth || countSubterms(term) < minSplit) return traverseSequentially(term)
+
+            var current = if (mode == TOPDOWN) rewrite.match(term) ?: return null else term
+            while (true) {
+                val subterms = subtermsOf(current)
+                val results = if (subterms.size >= minSplit) {
+                    val tasks = subterms.map { TraverseTask(it, rewrite, mode, depth + 1) }
+                    invokeAll(tasks)
+                    tasks.map { it.join() ?: return null }
+                } else {
+                    subterms.map { traverseSequentially(it) ?: return null }
+                }
+                val rebuilt = factory.withSubterms(current, results)
+                when (mode) {
+                    TOPDOWN -> return rebuilt
+                    BOTTOMUP -> return rewrite.match(rebuilt)
+                    else -> current = rewrite.match(rebuilt) ?: return rebuilt
+                }
+            }
+        }
+
+        /**
+         * Traverses the term sequentially.
+         */
+        private fun traverseSequentially(term: Term): Term? = when (mode) {
+            TOPDOWN -> sequential.topdown(term, rewrite)
+            BOTTOMUP -> sequential.bottomup(term, rewrite)
+            else -> sequential.innermost(term, rewrite)
+        }
+    }
+
+    /**
+     * Counts the subterms of the term that are traversed.
+     */
+    private fun countSubterms(term: Term): Int = when (term) {
+        is ApplTerm -> term.arity
+        is ListTerm -> term.elements.size
+        else -> 0
+    }
+
+    /**
+     * Gets the subterms of the term that are traversed.
+     */
+    private fun subtermsOf(term: Term): List<Term> = when (term) {
+        is ApplTerm, is ListTerm -> term.subterms.toList()
+        else -> emptyList()
+    }
+
+}
@@ -0,0 +1,85 @@
+package org.spoofax.tego.aterm
+
+/**
+ * A term factory that maximally shares terms (hash-consing).
+ *
+ * Structurally equal terms built by this factory are the same instance,
+ * so identical subterms (such as types, term indices and constructor names)
+ * are only kept in memory once. The terms are interned in a concurrent weak table,
+ * which allows terms that are no longer used to be garbage collected.
+ *
+ * As the subterms of an interned term are themselves interned, equality checks
+ * between terms built by this factory return at the first subterm comparison
+ * (either because the subterms are the same instance, or because their precomputed
+ * hash codes differ). This makes interning a term and using it as a hash key
+ * a constant-time operation, regardless of the size of the term.
+ *
+ * This factory is thread-safe.
+ *
+ * @property termFactory the term factory that builds the terms to intern
+ */
+class SharingTermFactory(
+    private val termFactory: TermFactory = TermFactoryImpl(),
+) : TermFactory {
+
+    /** The interned terms. */
+    private val terms = WeakInterner<Term>(Runtime.getRuntime().availableProcessors() * 4)
+
+    /**
+     * The number of interned terms.
+     *
+     * As unused terms may be garbage collected at any time, this is only an estimate.
+     */
+    val size: Int get() = terms.size
+
+    override fun newAppl(constructor: String, args: List<Term>, attachments: Attachments, replacedTerm: Term?): ApplTerm
+        = intern(termFactory.newAppl(constructor, args, attachments, replacedTerm))
+
+    override fun newAppl(symbol: Constructor, args: List<Term>, attachments: Attachments, replacedTerm: Term?): ApplTerm
+        = intern(termFactory.newAppl(symbol, args, attachments, replacedTerm))
+
+    override fun newList(elements: List<Term>, attachments: Attachments, replacedTerm: Term?): ListTerm
+        = intern(termFactory.newList(elements, attachments, replacedTerm))
+
+    override fun newListCons(head: Term, tail: ListTerm, attachments: Attachments, replacedTerm: Term?): ListTerm
+        = intern(termFactory.newListCons(head, tail, attachments, replacedTerm))
+
+    override fun newString(value: String, attachments: Attachments, replacedTerm: Term?): StringTerm
+        = intern(termFactory.newString(value, attachments, replacedTerm))
+
+    override fun newString(bytes: ByteArray, offset: Int, length: Int, attachments: Attachments, replacedTerm: Term?): StringTerm
+        = intern(termFactory.newString(bytes, offset, length, attachments, replacedTerm))
+
+    override fun newInt(value: Int, attachments: Attachments, replacedTerm: Term?): IntTerm
+        = intern(termFactory.newInt(value, attachments, replacedTerm))
+
+    override fun newReal(value: Double, attachments: Attachments, replacedTerm: Term?): RealTerm
+        = intern(termFactory.newReal(value, attachments, replacedTerm))
+
+    override fun newPlaceholder(template: Term, attachments: Attachments, replacedTerm: Term?): PlaceholderTerm
+        = intern(termFactory.newPlaceholder(template, attachments, replacedTerm))
+
+    override fun newBlob(value: Any, attachments: Attachments, replacedTerm: Term?): BlobTerm
+        = intern(termFactory.newBlob(value, attachments, replacedTerm))
+
+    override fun newVar(name: String, attachments: Attachments, replacedTerm: Term?): TermVar
+        = intern(termFactory.newVar(name, attachments, replacedTerm))
+
+    override fun <T : Term> withSubterms(term: T, subterms: List<Term>): T
+        = intern(termFactory.withSubterms(term, subterms))
+
+    override fun <T : Term> withAttachments(term: T, attachments: Attachments): T
+        = intern(termFactory.withAttachments(term, attachments))
+
+    /**
+     * Interns the specified term.
+     *
+     * @param term the term to intern
+     * @return the canonical instance of the term
+     */
+    private fun <T : Term> intern(term: T): T {
+        @Suppress("UNCHECKED_CAST")
+        return terms.intern(term) as T
+    }
+
+}
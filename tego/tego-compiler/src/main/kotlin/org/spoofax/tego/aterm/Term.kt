@@ -2,6 +2,10 @@ package org.spoofax.tego.aterm
 
 /**
  * A term.
+ *
+ * Terms are compared structurally: two terms are equal when they are of the same kind,
+ * have equal values or subterms, and have equal attachments, regardless of the classes
+ * that implement them.
  */
 interface Term {
     /** The subterms of the term. */
@@ -10,6 +14,8 @@ interface Term {
     val annotations: Annotations get() = Annotations.get(this)
     /** The attachments of the term. */
     val attachments: Attachments
+    /** The 128-bit fingerprint of the content of the term, which is stable across JVM runs. */
+    val fingerprint: Fingerprint get() = Fingerprint.of(this)
 }
 
 /**
@@ -18,6 +24,8 @@ interface Term {
 interface ApplTerm : Term {
     /** The name of the constructor. */
     val constructor: String
+    /** The constructor symbol, with the name and arity of the constructor. */
+    val symbol: Constructor get() = Constructor.of(constructor, arity)
     /** The arity of the constructor. */
     val arity: Int get() = args.size
     /** The arguments of the constructor application. */
@@ -32,17 +40,17 @@ interface ApplTerm : Term {
  * A list term.
  */
 interface ListTerm : Term {
-//    /**
-//     * The head of the list.
-//     * @throws IllegalStateException if the list is empty
-//     */
-//    val head: Term get() = if (!isEmpty) elements[0] else throw IllegalStateException("Cannot return head; list is empty.")
-//
-//    /**
-//     * The tail of the list.
-//     * @throws IllegalStateException if the list is empty
-//     */
-//    val tail: ListTerm get() = if (!isEmpty) sublist(1) else throw IllegalStateException("Cannot return tail; list is empty.")
+    /**
+     * The head of the list.
+     * @throws IllegalStateException if the list is empty
+     */
+    val head: Term get() = if (!isEmpty) elements[0] else throw IllegalStateException("Cannot return head; list is empty.")
+
+    /**
+     * The tail of the list.
+     * @throws IllegalStateException if the list is empty
+     */
+    val tail: ListTerm get() = if (!isEmpty) sublist(1) else throw IllegalStateException("Cannot return tail; list is empty.")
 
     /** Whether the list is empty. */
     val isEmpty: Boolean get() = elements.isEmpty()
@@ -54,14 +62,16 @@ interface ListTerm : Term {
     /** Gets the element with the specified index. */
     operator fun get(index: Int): Term = elements[index]
 
-//    /**
-//     * Returns a tail of this list.
-//     *
-//     * @param offset the zero-based offset of the first element to include in the returned list
-//     * @return the tail of the list
-//     * @throws IndexOutOfBoundsException if the offset is negative or greater than the length of the list
-//     */
-//    fun sublist(offset: Int): ListTerm
+    /**
+     * Returns a tail of this list.
+     *
+     * The returned list has no attachments, unless it is this list (when [offset] is 0).
+     *
+     * @param offset the zero-based offset of the first element to include in the returned list
+     * @return the tail of the list
+     * @throws IndexOutOfBoundsException if the offset is negative or greater than the length of the list
+     */
+    fun sublist(offset: Int): ListTerm
 }
 
 /**
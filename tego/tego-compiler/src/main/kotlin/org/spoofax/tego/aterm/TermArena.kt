@@ -0,0 +1,509 @@
+package org.spoofax.tego.aterm
+
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+
+/**
+ * A store of terms outside the Java heap.
+ *
+ * The terms are stored as nodes in a direct buffer of integers, and are referred to by their handle:
+ * the offset of their node in the buffer. Each node consists of a tag, the hash code of the term,
+ * and the attachments of the term, followed by the data of the term: the constructor symbol id
+ * and the handles of the arguments of constructor applications, the size, the hash code of the elements
+ * and the handles of the elements of lists, and the values of integer and real terms.
+ * String values (which are shared), blob values and attachments other than annotations
+ * are kept on the heap.
+ *
+ * The terms in the arena are accessed through lightweight [Term] views, which are created on demand
+ * and compare equal to the equivalent terms of other implementations. Terms are added to the arena
+ * with [add], or built in the arena with its [factory]; for example, an [org.spoofax.tego.aterm.io.ATermReader]
+ * created with the factory reads a term straight into the arena, and only the views that are still referenced
+ * remain on the heap.
+ *
+ * Terms cannot be removed from an arena; the whole arena is freed when it is no longer referenced.
+ * Terms must be added by one thread at a time.
+ *
+ * @param initialCapacity the initial capacity of the arena, in integers
+ */
+class TermArena(
+    initialCapacity: Int = 1 shl 16,
+) {
+
+    private companion object {
+        // The tags of the nodes
+        const val APPL = 0
+        const val LIST = 1
+        const val STRING = 2
+        const val INT = 3
+        const val REAL = 4
+        const val PLACEHOLDER = 5
+        const val BLOB = 6
+        const val VAR = 7
+
+        // The offsets of the fields in a node
+        const val TAG = 0
+        const val HASH = 1
+        const val ATTACHMENTS = 2
+        const val DATA = 3
+
+        /** The attachments field of a term without attachments. */
+        const val NO_ATTACHMENTS = -1
+
+        /** The maximum capacity of the arena, in integers. */
+        const val MAX_CAPACITY = Int.MAX_VALUE / 4
+
+        /**
+         * Allocates a direct buffer with the specified capacity.
+         */
+        fun allocate(capacity: Int): IntBuffer
+            = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer()
+    }
+
+    init {
+        require(initialCapacity in 1..MAX_CAPACITY) { "The initial capacity must be between 1 and $MAX_CAPACITY, got $initialCapacity." }
+    }
+
+    /** The nodes. */
+    private var ints: IntBuffer = allocate(initialCapacity)
+    /** The number of integers in use. */
+    private var top: Int = 0
+    /** The values and attachments that are kept on the heap. */
+    private val objects = ArrayList<Any>()
+    /** The index in [objects] of each string value. */
+    private val strings = HashMap<String, Int>()
+
+    /** The factory that builds terms in this arena. */
+    val factory: TermFactory = ArenaTermFactory(this)
+
+    /** The number of bytes used by the nodes in the arena. */
+    val byteSize: Long get() = top * 4L
+
+    /**
+     * Gets the term with the specified handle.
+     *
+     * @param handle the handle of the term
+     * @return a view of the term
+     */
+    fun term(handle: Int): Term = when (ints.get(handle + TAG)) {
+        APPL -> ArenaApplTerm(this, handle)
+        LIST -> ArenaListTerm(this, handle, 0, ints.get(handle + DATA + 1))
+        STRING -> ArenaStringTerm(this, handle)
+        INT -> ArenaIntTerm(this, handle)
+        REAL -> ArenaRealTerm(this, handle)
+        PLACEHOLDER -> ArenaPlaceholderTerm(this, handle)
+        BLOB -> ArenaBlobTerm(this, handle)
+        else -> ArenaTermVar(this, handle)
+    }
+
+    /**
+     * Adds the specified term to the arena.
+     *
+     * A term of this arena is not copied.
+     *
+     * @param term the term to add
+     * @return the handle of the term in the arena
+     */
+    fun add(term: Term): Int {
+        val own = handleOf(term)
+        if (own >= 0) return own
+
+        // Post-order, with an explicit stack, so that deeply nested terms can be added
+        val stack = ArrayList<AddFrame>()
+        stack.add(AddFrame(term))
+        while (true) {
+            val frame = stack[stack.size - 1]
+            if (frame.index < frame.parts.size) {
+                val part = frame.parts[frame.index]
+                val handle = handleOf(part)
+                if (handle >= 0) frame.handles[frame.index++] = handle
+                else stack.add(AddFrame(part))
+                continue
+            }
+            stack.removeAt(stack.size - 1)
+            val handle = store(frame)
+            if (stack.isEmpty()) return handle
+            val parent = stack[stack.size - 1]
+            parent.handles[parent.index++] = handle
+        }
+    }
+
+    /**
+     * Gets the handle of the specified term if it is a node of this arena.
+     *
+     * @param term the term
+     * @return the handle of the term; or -1 if it is not a node of this arena
+     */
+    private fun handleOf(term: Term): Int = when {
+        term !is ArenaTerm || term.arena !== this -> -1
+        term is ArenaListTerm && term.offset != 0 -> -1
+        else -> term.handle
+    }
+
+    /**
+     * Stores the term of the specified frame, whose parts have been added.
+     */
+    private fun store(frame: AddFrame): Int {
+        val term = frame.term
+        val handles = frame.handles
+        val count = frame.subtermCount
+        val attachments = if (frame.annotated) storeList(handles, count, handles.size - count, NO_ATTACHMENTS)
+                          else encodeAttachments(term.attachments)
+        return when (term) {
+            is ApplTerm -> storeAppl(term.symbol, handles, count, attachments)
+            is ListTerm -> storeList(handles, 0, count, attachments)
+            is StringTerm -> storeString(term.value, attachments)
+            is IntTerm -> storeInt(term.value, attachments)
+            is RealTerm -> storeReal(term.value, attachments)
+            is PlaceholderTerm -> storePlaceholder(handles[0], attachments)
+            is BlobTerm -> storeObject(BLOB, term.value, attachments)
+            is TermVar -> storeObject(VAR, term.name, attachments)
+            else -> throw IllegalArgumentException("Unsupported term: $term")
+        }
+    }
+
+    /**
+     * Encodes the specified attachments, adding any annotations to the arena.
+     *
+     * @param attachments the attachments
+     * @return the value of the attachments field
+     */
+    private fun encodeAttachments(attachments: Attachments): Int {
+        if (attachments.isEmpty()) return NO_ATTACHMENTS
+        val annotations = attachments.get(Annotations::class.java)
+        if (annotations != null && attachments.set(Annotations.empty()).isEmpty()) {
+            val handles = IntArray(annotations.size) { add(annotations[it]) }
+            return storeList(handles, 0, handles.size, NO_ATTACHMENTS)
+        }
+        objects.add(attachments)
+        return -2 - (objects.size - 1)
+    }
+
+    /**
+     * Decodes the attachments of the node with the specified handle.
+     */
+    private fun attachmentsAt(handle: Int): Attachments {
+        val value = ints.get(handle + ATTACHMENTS)
+        return when {
+            value == NO_ATTACHMENTS -> Attachments.empty()
+            value >= 0 -> Attachments.of(Annotations((term(value) as ListTerm).elements))
+            else -> objects[-2 - value] as Attachments
+        }
+    }
+
+    private fun storeAppl(symbol: Constructor, handles: IntArray, arity: Int, attachments: Int): Int {
+        val handle = allocate(APPL, 1 + arity, attachments)
+        ints.put(handle + DATA, symbol.id)
+        for (i in 0 until arity) ints.put(handle + DATA + 1 + i, handles[i])
+        return finish(handle)
+    }
+
+    private fun storeList(handles: IntArray, offset: Int, size: Int, attachments: Int): Int {
+        val handle = allocate(LIST, 2 + size, attachments)
+        ints.put(handle + DATA, size)
+        for (i in 0 until size) ints.put(handle + DATA + 2 + i, handles[offset + i])
+        ints.put(handle + DATA + 1, TermEquality.elementsHashCode((term(handle) as ListTerm).elements))
+        return finish(handle)
+    }
+
+    private fun storeString(value: String, attachments: Int): Int {
+        val index = strings.getOrPut(value) { objects.add(value); objects.size - 1 }
+        val handle = allocate(STRING, 1, attachments)
+        ints.put(handle + DATA, index)
+        return finish(handle)
+    }
+
+    private fun storeInt(value: Int, attachments: Int): Int {
+        val handle = allocate(INT, 1, attachments)
+        ints.put(handle + DATA, value)
+        return finish(handle)
+    }
+
+    private fun storeReal(value: Double, attachments: Int): Int {
+        val handle = allocate(REAL, 2, attachments)
+        val bits = value.toRawBits()
+        ints.put(handle + DATA, (bits ushr 32).toInt())
+        ints.put(handle + DATA + 1, bits.toInt())
+        return finish(handle)
+    }
+
+    private fun storePlaceholder(template: Int, attachments: Int): Int {
+        val handle = allocate(PLACEHOLDER, 1, attachments)
+        ints.put(handle + DATA, template)
+        return finish(handle)
+    }
+
+    private fun storeObject(tag: Int, value: Any, attachments: Int): Int {
+        objects.add(value)
+        val handle = allocate(tag, 1, attachments)
+        ints.put(handle + DATA, objects.size - 1)
+        return finish(handle)
+    }
+
+    /**
+     * Allocates a node.
+     *
+     * @param tag the tag of the node
+     * @param dataSize the number of integers of data
+     * @param attachments the value of the attachments field
+     * @return the handle of the node
+     */
+    private fun allocate(tag: Int, dataSize: Int, attachments: Int): Int {
+        val handle = top
+        val end = handle.toLong() + DATA + dataSize
+        if (end > ints.capacity()) grow(end)
+        ints.put(handle + TAG, tag)
+        ints.put(handle + ATTACHMENTS, attachments)
+        top = end.toInt()
+        return handle
+    }
+
+    /**
+     * Computes and stores the hash code of the node with the specified handle,
+     * whose data has been stored.
+     *
+     * @return the handle
+     */
+    private fun finish(handle: Int): Int {
+        ints.put(handle + HASH, (term(handle) as ArenaTerm).computeHashCode())
+        return handle
+    }
+
+    /**
+     * Grows the buffer to at least the specified capacity.
+     */
+    private fun grow(minCapacity: Long) {
+        if (minCapacity > MAX_CAPACITY) throw IllegalStateException("The arena is full.")
+        val newInts = allocate(maxOf(minCapacity, minOf(ints.capacity() * 2L, MAX_CAPACITY.toLong())).toInt())
+        val oldInts = ints.duplicate()
+        // Cast to Buffer, for compatibility with Java 8
+        (oldInts as Buffer).position(0)
+        (oldInts as Buffer).limit(top)
+        newInts.put(oldInts)
+        ints = newInts
+    }
+
+    /**
+     * A term to add to the arena.
+     *
+     * @property term the term
+     */
+    private class AddFrame(val term: Term) {
+        /** The annotations of the term, if those are its only attachments; otherwise, `null`. */
+        private val annotations: Annotations? = term.attachments.get(Annotations::class.java)
+            ?.takeIf { term.attachments.set(Annotations.empty()).isEmpty() }
+        /** The subterms of the term. */
+        private val subterms: List<Term> = if (term is PlaceholderTerm) listOf(term.template) else term.subterms
+        /** The number of subterms. */
+        val subtermCount: Int = subterms.size
+        /** Whether the annotations of the term are stored in the arena. */
+        val annotated: Boolean get() = annotations != null
+        /** The subterms, followed by the annotations. */
+        val parts: List<Term> = if (annotations != null) subterms + annotations else subterms
+        /** The handles of the parts that have been added. */
+        val handles: IntArray = IntArray(parts.size)
+        /** The index of the next part to add. */
+        var index: Int = 0
+    }
+
+    /**
+     * Base class for the views of the terms in an arena.
+     *
+     * @property arena the arena
+     * @property handle the handle of the term
+     */
+    private abstract class ArenaTerm(
+        val arena: TermArena,
+        val handle: Int,
+    ) : Term {
+        override val attachments: Attachments get() = arena.attachmentsAt(handle)
+
+        /** Gets an integer of the data of the term. */
+        protected fun data(index: Int): Int = arena.ints.get(handle + DATA + index)
+
+        /** Computes the hash code of the term, from the hash codes of its subterms. */
+        abstract fun computeHashCode(): Int
+
+        override fun equals(other: Any?): Boolean = TermEquality.equals(this, other)
+
+        override fun hashCode(): Int = arena.ints.get(handle + HASH)
+    }
+
+    private class ArenaApplTerm(arena: TermArena, handle: Int) : ArenaTerm(arena, handle), ApplTerm {
+        override val symbol: Constructor get() = Constructor.byId(data(0))
+        override val constructor: String get() = symbol.name
+        override val arity: Int get() = symbol.arity
+        override val subterms: List<Term> get() = args
+        override val args: List<Term> get() = object : AbstractList<Term>(), RandomAccess {
+            override val size: Int get() = arity
+            override fun get(index: Int): Term = this@ArenaApplTerm[index]
+        }
+
+        override fun get(index: Int): Term {
+            if (index < 0 || index >= arity) throw IndexOutOfBoundsException("Index: $index, arity: $arity")
+            return arena.term(data(1 + index))
+        }
+
+        override fun computeHashCode(): Int = TermEquality.applHashCode(this)
+
+        override fun toString(): String = "$constructor(${args.joinToString(", ")})$attachments"
+    }
+
+    /**
+     * A view of a list in an arena, or of a tail of such a list.
+     *
+     * @property offset the number of elements of the list node that are not in this list
+     * @property elementsHash the hash code of the elements of this list
+     */
+    private class ArenaListTerm(
+        arena: TermArena,
+        handle: Int,
+        val offset: Int,
+        private val elementsHash: Int,
+    ) : ArenaTerm(arena, handle), ListTerm {
+        override val isEmpty: Boolean get() = offset == data(0)
+        override val subterms: List<Term> get() = elements
+        override val elements: List<Term> get() = object : AbstractList<Term>(), RandomAccess {
+            override val size: Int get() = data(0) - offset
+            override fun get(index: Int): Term = this@ArenaListTerm[index]
+        }
+        override val attachments: Attachments get() = if (offset == 0) super.attachments else Attachments.empty()
+
+        override fun get(index: Int): Term {
+            if (index < 0 || index >= data(0) - offset) throw IndexOutOfBoundsException("Index: $index, size: ${data(0) - offset}")
+            return arena.term(data(2 + offset + index))
+        }
+
+        override fun sublist(offset: Int): ListTerm {
+            if (offset < 0 || offset > data(0) - this.offset) throw IndexOutOfBoundsException("Offset: $offset, size: ${data(0) - this.offset}")
+            if (offset == 0) return this
+            var tailElementsHash = elementsHash
+            for (i in 0 until offset) tailElementsHash = TermEquality.tailElementsHashCode(this[i], tailElementsHash)
+            return ArenaListTerm(arena, handle, this.offset + offset, tailElementsHash)
+        }
+
+        override fun computeHashCode(): Int = TermEquality.listHashCode(elementsHash, attachments)
+
+        override fun hashCode(): Int = if (offset == 0) super.hashCode() else computeHashCode()
+
+        override fun toString(): String = "[${elements.joinToString()}]$attachments"
+    }
+
+    private class ArenaStringTerm(arena: TermArena, handle: Int) : ArenaTerm(arena, handle), StringTerm {
+        override val value: String get() = arena.objects[data(0)] as String
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String = "\"${value.replace("\\", "\\\\").replace("\"", "\\\"")}\"$attachments"
+    }
+
+    private class ArenaIntTerm(arena: TermArena, handle: Int) : ArenaTerm(arena, handle), IntTerm {
+        override val value: Int get() = data(0)
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String = "$value$attachments"
+    }
+
+    private class ArenaRealTerm(arena: TermArena, handle: Int) : ArenaTerm(arena, handle), RealTerm {
+        override val value: Double get() = Double.fromBits((data(0).toLong() shl 32) or (data(1).toLong() and 0xFFFFFFFFL))
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String = "$value$attachments"
+    }
+
+    private class ArenaPlaceholderTerm(arena: TermArena, handle: Int) : ArenaTerm(arena, handle), PlaceholderTerm {
+        override val template: Term get() = arena.term(data(0))
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(template, attachments)
+
+        override fun toString(): String = "<$template>$attachments"
+    }
+
+    private class ArenaBlobTerm(arena: TermArena, handle: Int) : ArenaTerm(arena, handle), BlobTerm {
+        override val value: Any get() = arena.objects[data(0)]
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String = "$value$attachments"
+    }
+
+    private class ArenaTermVar(arena: TermArena, handle: Int) : ArenaTerm(arena, handle), TermVar {
+        override val name: String get() = arena.objects[data(0)] as String
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(name, attachments)
+
+        override fun toString(): String = "$name$attachments"
+    }
+
+    /**
+     * A factory that builds terms in an arena.
+     *
+     * Terms that are not in the arena are added to the arena when they are used as subterms.
+     *
+     * @property arena the arena
+     */
+    private class ArenaTermFactory(private val arena: TermArena) : TermFactory {
+        override fun newAppl(constructor: String, args: List<Term>, attachments: Attachments, replacedTerm: Term?): ApplTerm
+            = newAppl(Constructor.of(constructor, args.size), args, attachments, replacedTerm)
+
+        override fun newAppl(symbol: Constructor, args: List<Term>, attachments: Attachments, replacedTerm: Term?): ApplTerm {
+            require(args.size == symbol.arity) { "Expected ${symbol.arity} arguments for $symbol, got ${args.size}." }
+            val handles = IntArray(args.size) { arena.add(args[it]) }
+            return arena.term(arena.storeAppl(symbol, handles, handles.size, arena.encodeAttachments(attachments))) as ApplTerm
+        }
+
+        override fun newList(elements: List<Term>, attachments: Attachments, replacedTerm: Term?): ListTerm {
+            val handles = IntArray(elements.size)
+            elements.forEachIndexed { i, element -> handles[i] = arena.add(element) }
+            return arena.term(arena.storeList(handles, 0, handles.size, arena.encodeAttachments(attachments))) as ListTerm
+        }
+
+        override fun newString(value: String, attachments: Attachments, replacedTerm: Term?): StringTerm
+            = arena.term(arena.storeString(value, arena.encodeAttachments(attachments))) as StringTerm
+
+        override fun newInt(value: Int, attachments: Attachments, replacedTerm: Term?): IntTerm
+            = arena.term(arena.storeInt(value, arena.encodeAttachments(attachments))) as IntTerm
+
+        override fun newReal(value: Double, attachments: Attachments, replacedTerm: Term?): RealTerm
+            = arena.term(arena.storeReal(value, arena.encodeAttachments(attachments))) as RealTerm
+
+        override fun newPlaceholder(template: Term, attachments: Attachments, replacedTerm: Term?): PlaceholderTerm {
+            val handle = arena.add(template)
+            return arena.term(arena.storePlaceholder(handle, arena.encodeAttachments(attachments))) as PlaceholderTerm
+        }
+
+        override fun newBlob(value: Any, attachments: Attachments, replacedTerm: Term?): BlobTerm
+            = arena.term(arena.storeObject(BLOB, value, arena.encodeAttachments(attachments))) as BlobTerm
+
+        override fun newVar(name: String, attachments: Attachments, replacedTerm: Term?): TermVar
+            = arena.term(arena.storeObject(VAR, name, arena.encodeAttachments(attachments))) as TermVar
+
+        override fun <T : Term> withSubterms(term: T, subterms: List<Term>): T {
+            @Suppress("UNCHECKED_CAST")
+            return when (term) {
+                is ApplTerm -> newAppl(term.constructor, subterms, term.attachments, term) as T
+                is ListTerm -> newList(subterms, term.attachments, term) as T
+                else -> { require(subterms.isEmpty()) { "The term doesn't accept subterms." }; term }
+            }
+        }
+
+        override fun <T : Term> withAttachments(term: T, attachments: Attachments): T {
+            @Suppress("UNCHECKED_CAST")
+            return when (term) {
+                is ApplTerm -> newAppl(term.symbol, term.args, attachments, term)
+                is ListTerm -> newList(term.elements, attachments, term)
+                is StringTerm -> newString(term.value, attachments, term)
+                is IntTerm -> newInt(term.value, attachments, term)
+                is RealTerm -> newReal(term.value, attachments, term)
+                is PlaceholderTerm -> newPlaceholder(term.template, attachments, term)
+                is BlobTerm -> newBlob(term.value, attachments, term)
+                is TermVar -> newVar(term.name, attachments, term)
+                else -> throw IllegalArgumentException("Unsupported term: $term")
+            } as T
+        }
+    }
+
+}
@@ -0,0 +1,237 @@
+package org.spoofax.tego.aterm
+
+/**
+ * Computes the structural differences between two terms.
+ *
+ * The terms are compared top-down. Equal subtrees are skipped: when two subterms are the same instance,
+ * or their precomputed hash codes differ, this is decided in constant time; only subterms with
+ * equal hash codes are compared for equality. Two constructor applications with the same constructor,
+ * or two lists, are compared subterm by subterm; if their attachments differ, this is reported as
+ * an attachments change of the term itself, before any changes of its subterms. Two terms that differ
+ * only in their attachments are reported as an attachments change; any other pair of different terms
+ * is reported as a single change. The elements of lists of different lengths are aligned by their
+ * longest common prefix and suffix; the remaining elements are compared pairwise, and any surplus elements
+ * are reported as added or removed. The paths of the compared subterms are linked to the paths of
+ * their parents, so that descending into a subterm takes constant time; a path is only built
+ * as a list when a change is reported.
+ */
+object TermDiff {
+
+    /**
+     * Computes the differences between the specified terms.
+     *
+     * @param oldTerm the old term
+     * @param newTerm the new term
+     * @return the changes, in pre-order of their paths; or an empty list when the terms are equal
+     */
+    fun compute(oldTerm: Term, newTerm: Term): List<TermChange> {
+        val changes = ArrayList<TermChange>()
+        // The pairs of subterms to compare and the changes to report, the next one last
+        val stack = ArrayList<Any>()
+        stack.add(Comparison(oldTerm, newTerm, null, null))
+        while (stack.isNotEmpty()) {
+            val next = stack.removeAt(stack.size - 1)
+            if (next is TermChange) {
+                changes.add(next)
+                continue
+            }
+            val pair = next as Comparison
+            val old = pair.oldTerm
+            val new = pair.newTerm
+            when {
+                same(old, new) -> {}
+                old is ApplTerm && new is ApplTerm && old.symbol === new.symbol -> {
+                    if (old.attachments != new.attachments) changes.add(pair.changed(TermChange.Kind.ATTACHMENTS))
+                    for (i in old.arity - 1 downTo 0) {
+                        stack.add(Comparison(old[i], new[i], PathNode.of(pair.oldPath, i), PathNode.of(pair.newPath, i)))
+                    }
+                }
+                old is ListTerm && new is ListTerm -> {
+                    if (old.attachments != new.attachments) changes.add(pair.changed(TermChange.Kind.ATTACHMENTS))
+                    compareElements(old.elements, new.elements, pair, stack)
+                }
+                sameValue(old, new) -> changes.add(pair.changed(TermChange.Kind.ATTACHMENTS))
+                else -> changes.add(pair.changed(TermChange.Kind.CHANGED))
+            }
+        }
+        return changes
+    }
+
+    /**
+     * Determines whether two terms are equal, deciding in constant time when they are the same instance
+     * or have different hash codes.
+     */
+    private fun same(old: Term, new: Term): Boolean
+        = old === new || (old.hashCode() == new.hashCode() && old == new)
+
+    /**
+     * Determines whether two terms without subterms to compare have equal values, regardless of their attachments.
+     */
+    private fun sameValue(old: Term, new: Term): Boolean = when (old) {
+        is StringTerm -> new is StringTerm && old.value == new.value
+        is IntTerm -> new is IntTerm && old.value == new.value
+        is RealTerm -> new is RealTerm && java.lang.Double.compare(old.value, new.value) == 0
+        is PlaceholderTerm -> new is PlaceholderTerm && old.template == new.template
+        is BlobTerm -> new is BlobTerm && old.value == new.value
+        is TermVar -> new is TermVar && old.name == new.name
+        else -> false
+    }
+
+    /**
+     * Compares the elements of two lists.
+     *
+     * The elements of the common prefix and suffix are skipped, and the remaining elements are compared
+     * pairwise. The surplus elements are reported as added or removed, after the changes in the pairs.
+     */
+    private fun compareElements(old: List<Term>, new: List<Term>, list: Comparison, stack: MutableList<Any>) {
+        val oldElements = old.toTypedArray()
+        val newElements = new.toTypedArray()
+        val minSize = minOf(oldElements.size, newElements.size)
+        var prefix = 0
+        while (prefix < minSize && same(oldElements[prefix], newElements[prefix])) prefix += 1
+        var suffix = 0
+        while (suffix < minSize - prefix
+            && same(oldElements[oldElements.size - 1 - suffix], newElements[newElements.size - 1 - suffix])) suffix += 1
+        val oldEnd = oldElements.size - suffix
+        val newEnd = newElements.size - suffix
+        val pairedEnd = minOf(oldEnd, newEnd)
+
+        for (i in newEnd - 1 downTo pairedEnd) {
+            stack.add(TermChange(TermChange.Kind.ADDED, null, PathNode.of(list.newPath, i).toList(), null, newElements[i]))
+        }
+        for (i in oldEnd - 1 downTo pairedEnd) {
+            stack.add(TermChange(TermChange.Kind.REMOVED, PathNode.of(list.oldPath, i).toList(), null, oldElements[i], null))
+        }
+        for (i in pairedEnd - 1 downTo prefix) {
+            stack.add(Comparison(oldElements[i], newElements[i], PathNode.of(list.oldPath, i), PathNode.of(list.newPath, i)))
+        }
+    }
+
+    /**
+     * A pair of subterms to compare.
+     *
+     * @property oldTerm the old subterm
+     * @property newTerm the new subterm
+     * @property oldPath the path of the old subterm in the old term; or `null` for the root
+     * @property newPath the path of the new subterm in the new term; or `null` for the root
+     */
+    private class Comparison(
+        val oldTerm: Term,
+        val newTerm: Term,
+        val oldPath: PathNode?,
+        val newPath: PathNode?,
+    ) {
+        /**
+         * Creates the change from the old subterm to the new subterm.
+         *
+         * @param kind the kind of change, either [TermChange.Kind.CHANGED] or [TermChange.Kind.ATTACHMENTS]
+         * @return the change
+         */
+        fun changed(kind: TermChange.Kind): TermChange = TermChange(kind, oldPath.toList(), newPath.toList(), oldTerm, newTerm)
+    }
+
+    /**
+     * The last index of a path, linked to the path of the parent.
+     *
+     * @property parent the path of the parent; or `null` when the parent is the root
+     * @property index the index of the subterm in its parent
+     * @property length the number of indices in the path
+     */
+    private class PathNode private constructor(
+        val parent: PathNode?,
+        val index: Int,
+        val length: Int,
+    ) {
+        companion object {
+            /**
+             * Creates the path of a subterm.
+             *
+             * @param parent the path of the parent; or `null` when the parent is the root
+             * @param index the index of the subterm in its parent
+             * @return the path of the subterm
+             */
+            fun of(parent: PathNode?, index: Int): PathNode
+                = PathNode(parent, index, (parent?.length ?: 0) + 1)
+        }
+    }
+
+    /** Builds the list of the indices of a path; or an empty list for the root. */
+    private fun PathNode?.toList(): List<Int> {
+        if (this == null) return emptyList()
+        val indices = IntArray(length)
+        var node: PathNode? = this
+        while (node != null) {
+            indices[node.length - 1] = node.index
+            node = node.parent
+        }
+        return indices.asList()
+    }
+
+}
+
+/**
+ * A change between two terms.
+ *
+ * A path is the list of indices of the subterms from the root of a term to a subterm.
+ *
+ * @property kind the kind of change
+ * @property oldPath the path of the changed subterm in the old term; or `null` when it was added
+ * @property newPath the path of the changed subterm in the new term; or `null` when it was removed
+ * @property oldTerm the old subterm; or `null` when it was added
+ * @property newTerm the new subterm; or `null` when it was removed
+ */
+data class TermChange(
+    val kind: Kind,
+    val oldPath: List<Int>?,
+    val newPath: List<Int>?,
+    val oldTerm: Term?,
+    val newTerm: Term?,
+) {
+
+    /** The kind of change. */
+    enum class Kind {
+        /** The subterm was changed. */
+        CHANGED,
+        /** Only the attachments of the subterm were changed; any changes of its subterms are reported separately. */
+        ATTACHMENTS,
+        /** The list element was added. */
+        ADDED,
+        /** The list element was removed. */
+        REMOVED,
+    }
+
+    /**
+     * Gets the range of the `TermIndex` annotations in the old subterm.
+     *
+     * @return the range of the indices; or `null` when the subterm was added or has no term indices
+     */
+    fun oldTermIndices(): IntRange? = oldTerm?.let { termIndices(it) }
+
+    /**
+     * Gets the range of the `TermIndex` annotations in the new subterm.
+     *
+     * @return the range of the indices; or `null` when the subterm was removed or has no term indices
+     */
+    fun newTermIndices(): IntRange? = newTerm?.let { termIndices(it) }
+
+    /**
+     * Gets the range of the indices of the `TermIndex(resource, index)` annotations of a term and its subterms.
+     */
+    private fun termIndices(term: Term): IntRange? {
+        var min = Int.MAX_VALUE
+        var max = Int.MIN_VALUE
+        val stack = ArrayList<Term>()
+        stack.add(term)
+        while (stack.isNotEmpty()) {
+            val current = stack.removeAt(stack.size - 1)
+            val index = current.annotations["TermIndex", 2]?.get(1)
+            if (index is IntTerm) {
+                min = minOf(min, index.value)
+                max = maxOf(max, index.value)
+            }
+            stack.addAll(current.subterms)
+        }
+        return if (min <= max) min..max else null
+    }
+
+}
@@ -0,0 +1,181 @@
+package org.spoofax.tego.aterm
+
+/**
+ * Structural equality and hash codes of terms.
+ *
+ * All term implementations use these functions, such that terms are equal
+ * regardless of the classes that implement them. The hash code of a term
+ * depends only on the hash codes of its subterms, which allows implementations
+ * to compute it once from the precomputed hash codes of their subterms.
+ */
+internal object TermEquality {
+
+    /**
+     * Computes the hash code of a constructor application term.
+     *
+     * @param term the constructor application term
+     * @return the hash code
+     */
+    fun applHashCode(term: ApplTerm): Int {
+        var hash = term.constructor.hashCode()
+        for (i in 0 until term.arity) {
+            hash = 31 * hash + term[i].hashCode()
+        }
+        return 31 * hash + term.attachments.hashCode()
+    }
+
+    /**
+     * Computes the hash code of a list term.
+     *
+     * @param elements the elements of the list
+     * @param attachments the term attachments
+     * @return the hash code
+     */
+    fun listHashCode(elements: List<Term>, attachments: Attachments): Int {
+        return listHashCode(elementsHashCode(elements), attachments)
+    }
+
+    /**
+     * Computes the hash code of a list term.
+     *
+     * @param elementsHash the hash code of the elements of the list, computed by [elementsHashCode]
+     * @param attachments the term attachments
+     * @return the hash code
+     */
+    fun listHashCode(elementsHash: Int, attachments: Attachments): Int {
+        return 31 * elementsHash + attachments.hashCode()
+    }
+
+    /**
+     * Computes the hash code of the elements of a list.
+     *
+     * The elements are combined from last to first, such that the hash code
+     * of a list with an element prepended can be computed from the hash code
+     * of the original list (see [consElementsHashCode]), and vice versa (see [tailElementsHashCode]).
+     *
+     * @param elements the elements of the list
+     * @return the hash code of the elements
+     */
+    fun elementsHashCode(elements: List<Term>): Int {
+        var hash = 1
+        val iterator = elements.listIterator(elements.size)
+        while (iterator.hasPrevious()) {
+            hash = consElementsHashCode(iterator.previous(), hash)
+        }
+        return hash
+    }
+
+    /**
+     * Computes the hash code of the elements of a list with the specified head and tail.
+     *
+     * @param head the head of the list
+     * @param tailElementsHash the hash code of the elements of the tail of the list
+     * @return the hash code of the elements
+     */
+    fun consElementsHashCode(head: Term, tailElementsHash: Int): Int {
+        return 31 * tailElementsHash + head.hashCode()
+    }
+
+    /**
+     * Computes the hash code of the elements of the tail of a list with the specified head.
+     *
+     * This is the inverse of [consElementsHashCode].
+     *
+     * @param head the head of the list
+     * @param elementsHash the hash code of the elements of the list
+     * @return the hash code of the elements of the tail of the list
+     */
+    fun tailElementsHashCode(head: Term, elementsHash: Int): Int {
+        // Multiplying by the modular inverse of 31 (modulo 2^32) undoes the multiplication by 31.
+        return (elementsHash - head.hashCode()) * INVERSE_OF_31
+    }
+
+    /** The modular multiplicative inverse of 31, modulo 2^32. */
+    private const val INVERSE_OF_31: Int = -0x42108421
+
+    /**
+     * Computes the hash code of a term with a single value.
+     *
+     * @param value the value of the term
+     * @param attachments the term attachments
+     * @return the hash code
+     */
+    fun valueHashCode(value: Any, attachments: Attachments): Int {
+        return 31 * value.hashCode() + attachments.hashCode()
+    }
+
+    /**
+     * Computes the hash code of a term with a single integer value.
+     *
+     * @param value the value of the term
+     * @param attachments the term attachments
+     * @return the hash code
+     */
+    fun valueHashCode(value: Int, attachments: Attachments): Int {
+        return 31 * value + attachments.hashCode()
+    }
+
+    /**
+     * Determines whether two terms are structurally equal.
+     *
+     * @param term the term
+     * @param other the other object
+     * @return `true` when the term and the other object are equal;
+     * otherwise, `false`
+     */
+    fun equals(term: Term, other: Any?): Boolean {
+        if (term === other) return true
+        if (other !is Term) return false
+        if (term.hashCode() != other.hashCode()) return false
+        return when (term) {
+            is ApplTerm -> other is ApplTerm
+                    && term.constructor == other.constructor
+                    && argsEqual(term, other)
+            is ListTerm -> other is ListTerm
+                    && elementsEqual(term.elements, other.elements)
+            is StringTerm -> other is StringTerm && term.value == other.value
+            is IntTerm -> other is IntTerm && term.value == other.value
+            is RealTerm -> other is RealTerm && java.lang.Double.compare(term.value, other.value) == 0
+            is PlaceholderTerm -> other is PlaceholderTerm && term.template == other.template
+            is BlobTerm -> other is BlobTerm && term.value == other.value
+            is TermVar -> other is TermVar && term.name == other.name
+            else -> false
+        } && term.attachments == other.attachments
+    }
+
+    /**
+     * Determines whether the arguments of two constructor application terms are equal.
+     *
+     * @param term the constructor application term
+     * @param other the other constructor application term
+     * @return `true` when the arguments are equal; otherwise, `false`
+     */
+    private fun argsEqual(term: ApplTerm, other: ApplTerm): Boolean {
+        val arity = term.arity
+        if (arity != other.arity) return false
+        for (i in 0 until arity) {
+            if (term[i] != other[i]) return false
+        }
+        return true
+    }
+
+    /**
+     * Determines whether the elements of two list terms are equal.
+     *
+     * @param elements the elements of the list term
+     * @param otherElements the elements of the other list term
+     * @return `true` when the elements are equal; otherwise, `false`
+     */
+    private fun elementsEqual(elements: List<Term>, otherElements: List<Term>): Boolean {
+        if (elements === otherElements) return true
+        if (elements.size != otherElements.size) return false
+        // Not all lists support efficient random access, so we use iterators
+        val iterator = elements.iterator()
+        val otherIterator = otherElements.iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next() != otherIterator.next()) return false
+        }
+        return true
+    }
+
+}
@@ -22,6 +22,25 @@ interface TermFactory {
         replacedTerm: Term? = null
     ): ApplTerm
 
+    /**
+     * Builds a constructor application term with the specified constructor symbol.
+     *
+     * @param symbol the constructor symbol
+     * @param args the constructor arguments, as many as the arity of the symbol
+     * @param attachments the term attachments; or [Attachments.empty]
+     * @param replacedTerm the term replaced by the built term; or `null`
+     * @return the built constructor application term
+     */
+    fun newAppl(
+        symbol: Constructor,
+        args: List<Term>,
+        attachments: Attachments = Attachments.empty(),
+        replacedTerm: Term? = null
+    ): ApplTerm {
+        require(args.size == symbol.arity) { "Expected ${symbol.arity} arguments for $symbol, got ${args.size}." }
+        return newAppl(symbol.name, args, attachments, replacedTerm)
+    }
+
     /**
      * Builds a list with the specified elements.
      *
@@ -36,6 +55,24 @@ interface TermFactory {
         replacedTerm: Term? = null)
     : ListTerm
 
+    /**
+     * Builds a list by prepending an element to a list.
+     *
+     * The attachments of the tail list are not included in the built list.
+     *
+     * @param head the element to prepend
+     * @param tail the list to prepend to
+     * @param attachments the term attachments; or [Attachments.empty]
+     * @param replacedTerm the term replaced by the built term; or `null`
+     * @return the built term
+     */
+    fun newListCons(
+        head: Term,
+        tail: ListTerm,
+        attachments: Attachments = Attachments.empty(),
+        replacedTerm: Term? = null
+    ): ListTerm = newList(listOf(head) + tail.elements, attachments, replacedTerm)
+
     /**
      * Builds a string term.
      *
@@ -50,6 +87,27 @@ interface TermFactory {
         replacedTerm: Term? = null
     ): StringTerm
 
+    /**
+     * Builds a string term from its UTF-8 encoded bytes.
+     *
+     * The factory may keep a reference to the array instead of decoding the bytes,
+     * so the bytes must not be modified afterwards.
+     *
+     * @param bytes the array with the UTF-8 encoded value
+     * @param offset the offset of the value in the array
+     * @param length the number of bytes of the value
+     * @param attachments the term attachments; or [Attachments.empty]
+     * @param replacedTerm the term replaced by the built term; or `null`
+     * @return the built string term
+     */
+    fun newString(
+        bytes: ByteArray,
+        offset: Int,
+        length: Int,
+        attachments: Attachments = Attachments.empty(),
+        replacedTerm: Term? = null
+    ): StringTerm = newString(String(bytes, offset, length, Charsets.UTF_8), attachments, replacedTerm)
+
     /**
      * Builds an integer term.
      *
@@ -340,6 +398,8 @@ interface TermFactory {
      *
      * An exception is thrown when the number or types of subterms
      * doesn't match the expected number and types of subterms.
+     * When the subterms are the same instances as those of the term,
+     * implementations may return the term itself.
      *
      * @param term the term
      * @param subterms the subterms
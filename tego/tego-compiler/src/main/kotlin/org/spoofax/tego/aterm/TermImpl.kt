@@ -2,22 +2,48 @@ package org.spoofax.tego.aterm
 
 /**
  * Default term factory implementation.
+ *
+ * This factory is thread-safe.
  */
 class TermFactoryImpl : TermFactory {
     override fun newAppl(constructor: String, args: List<Term>, attachments: Attachments, replacedTerm: Term?): ApplTerm
-        = ApplTermImpl(constructor, args, attachments)
+        = newAppl(Constructor.of(constructor, args.size), args, attachments, replacedTerm)
+
+    override fun newAppl(symbol: Constructor, args: List<Term>, attachments: Attachments, replacedTerm: Term?): ApplTerm {
+        require(args.size == symbol.arity) { "Expected ${symbol.arity} arguments for $symbol, got ${args.size}." }
+        return when (args.size) {
+            0 -> ApplTerm0(symbol, attachments)
+            1 -> ApplTerm1(symbol, args[0], attachments)
+            2 -> ApplTerm2(symbol, args[0], args[1], attachments)
+            3 -> ApplTerm3(symbol, args[0], args[1], args[2], attachments)
+            4 -> ApplTerm4(symbol, args[0], args[1], args[2], args[3], attachments)
+            5 -> ApplTerm5(symbol, args[0], args[1], args[2], args[3], args[4], attachments)
+            else -> ApplTermN(symbol, args.toTypedArray(), attachments)
+        }
+    }
 
     override fun newList(elements: List<Term>, attachments: Attachments, replacedTerm: Term?): ListTerm
-        = ListTermImpl(elements, attachments)
+        = if (elements.isEmpty()) ArrayListTerm.empty(attachments)
+          else ArrayListTerm(elements.toTypedArray(), 0, attachments)
+
+    override fun newListCons(head: Term, tail: ListTerm, attachments: Attachments, replacedTerm: Term?): ListTerm
+        = when {
+            tail !is ListTermImpl -> super.newListCons(head, tail, attachments, replacedTerm)
+            tail.attachments.isEmpty() -> ConsListTerm(head, tail, attachments)
+            else -> ConsListTerm(head, tail.withAttachments(Attachments.empty()), attachments)
+        }
 
     override fun newString(value: String, attachments: Attachments, replacedTerm: Term?): StringTerm
-        = StringTermImpl(value, attachments)
+        = StringTermImpl.of(value, attachments)
+
+    override fun newString(bytes: ByteArray, offset: Int, length: Int, attachments: Attachments, replacedTerm: Term?): StringTerm
+        = StringTermImpl.of(bytes, offset, length, attachments) as StringTerm
 
     override fun newInt(value: Int, attachments: Attachments, replacedTerm: Term?): IntTerm
-        = IntTermImpl(value, attachments)
+        = IntTermImpl.of(value, attachments)
 
     override fun newReal(value: Double, attachments: Attachments, replacedTerm: Term?): RealTerm
-        = RealTermImpl(value, attachments)
+        = RealTermImpl.of(value, attachments)
 
     override fun newPlaceholder(template: Term, attachments: Attachments, replacedTerm: Term?): PlaceholderTerm
         = PlaceholderTermImpl(template, attachments)
@@ -29,23 +55,74 @@ class TermFactoryImpl : TermFactory {
         = TermVarImpl(name, attachments)
 
     override fun <T : Term> withSubterms(term: T, subterms: List<Term>): T {
+        if (hasSubterms(term, subterms)) return term
         @Suppress("UNCHECKED_CAST")
         return when (term) {
-            is ApplTerm -> newAppl(term.constructor, subterms, term.attachments, term) as T
+            is ApplTerm -> (if (subterms.size == term.arity) newAppl(term.symbol, subterms, term.attachments, term)
+                            else newAppl(term.constructor, subterms, term.attachments, term)) as T
             is ListTerm -> newList(subterms, term.attachments, term) as T
             else -> { require(subterms.isEmpty()) { "The term doesn't accept subterms." }; term }
         }
     }
 
-    override fun <T : Term> withAttachments(term: T, attachments: Attachments): T {
-        require(term is TermImpl) { "The term was not created by this term factory." }
+    /**
+     * Determines whether the term has exactly the specified subterms (the same instances),
+     * in which case the term does not have to be rebuilt.
+     */
+    private fun hasSubterms(term: Term, subterms: List<Term>): Boolean {
+        when (term) {
+            is ApplTerm -> {
+                if (term.arity != subterms.size) return false
+                for (i in subterms.indices) {
+                    if (term[i] !== subterms[i]) return false
+                }
+                return true
+            }
+            is ListTerm -> {
+                val elements = term.elements
+                if (elements.size != subterms.size) return false
+                val iterator = subterms.iterator()
+                for (element in elements) {
+                    if (element !== iterator.next()) return false
+                }
+                return true
+            }
+            else -> return false
+        }
+    }
 
+    override fun <T : Term> withAttachments(term: T, attachments: Attachments): T {
         @Suppress("UNCHECKED_CAST")
-        return term.withAttachments(attachments) as T
+        return when (term) {
+            is TermImpl -> term.withAttachments(attachments)
+            // Terms created elsewhere (such as lazily read terms) are rebuilt by this factory
+            is ApplTerm -> newAppl(term.symbol, term.args, attachments, term)
+            is ListTerm -> newList(term.elements, attachments, term)
+            is StringTerm -> newString(term.value, attachments, term)
+            is IntTerm -> newInt(term.value, attachments, term)
+            is RealTerm -> newReal(term.value, attachments, term)
+            is PlaceholderTerm -> newPlaceholder(term.template, attachments, term)
+            is BlobTerm -> newBlob(term.value, attachments, term)
+            is TermVar -> newVar(term.name, attachments, term)
+            else -> throw IllegalArgumentException("Unsupported term: $term")
+        } as T
     }
 }
 
-private abstract class TermImpl : Term {
+/**
+ * Base class for the default term implementations.
+ *
+ * The hash code of a term is computed once, when the term is constructed,
+ * from the precomputed hash codes of its subterms. Terms are compared structurally,
+ * but equality checks return early when both terms are the same instance
+ * or when their hash codes differ. The fingerprint of a term is computed on its first access,
+ * and then cached.
+ */
+private abstract class TermImpl : Term, FingerprintCache {
+    override var cachedFingerprint: Fingerprint? = null
+
+    override val fingerprint: Fingerprint get() = cachedFingerprint ?: Fingerprint.of(this)
+
     /**
      * Returns a copy of this term with the specified attachments.
      *
@@ -54,100 +131,690 @@ private abstract class TermImpl : Term {
      */
     abstract fun withAttachments(attachments: Attachments): TermImpl
 
+    override fun equals(other: Any?): Boolean = TermEquality.equals(this, other)
+
+    abstract override fun hashCode(): Int
+
     abstract override fun toString(): String
 }
 
-private data class ApplTermImpl(
-    override val constructor: String,
-    override val subterms: List<Term>,
+/**
+ * Base class for constructor application terms.
+ *
+ * The arguments are stored in fields of the subclasses, which are specialized by arity,
+ * instead of in a separate list. The [subterms] are exposed through a lightweight view.
+ */
+private abstract class ApplTermImpl(
+    override val symbol: Constructor,
     override val attachments: Attachments,
 ) : TermImpl(), ApplTerm {
-    override fun withAttachments(attachments: Attachments): ApplTermImpl
-        = ApplTermImpl(this.constructor, this.subterms, attachments)
+    override val constructor: String get() = symbol.name
+
+    /** The precomputed hash code; set by the subclasses once their arguments have been initialized. */
+    protected var hash: Int = 0
+
+    abstract override val arity: Int
+
+    abstract override fun get(index: Int): Term
+
+    override val subterms: List<Term> get() = ApplTermArgs(this)
+
+    abstract override fun withAttachments(attachments: Attachments): ApplTermImpl
+
+    override fun hashCode(): Int = hash
 
     override fun toString(): String
         = "$constructor(${subterms.joinToString(", ")})$attachments"
 }
 
-private data class ListTermImpl(
-    override val subterms: List<Term>,
+/**
+ * A view of the arguments of a constructor application term.
+ */
+private class ApplTermArgs(
+    private val term: ApplTerm,
+) : AbstractList<Term>(), RandomAccess {
+    override val size: Int get() = term.arity
+
+    override fun get(index: Int): Term = term[index]
+}
+
+private class ApplTerm0(
+    symbol: Constructor,
+    attachments: Attachments,
+) : ApplTermImpl(symbol, attachments) {
+    init { hash = TermEquality.applHashCode(this) }
+
+    override val arity: Int get() = 0
+
+    override val subterms: List<Term> get() = emptyList()
+
+    override fun get(index: Int): Term
+        = throw IndexOutOfBoundsException("Index: $index, arity: 0")
+
+    override fun withAttachments(attachments: Attachments): ApplTerm0
+        = ApplTerm0(this.symbol, attachments)
+}
+
+private class ApplTerm1(
+    symbol: Constructor,
+    private val arg0: Term,
+    attachments: Attachments,
+) : ApplTermImpl(symbol, attachments) {
+    init { hash = TermEquality.applHashCode(this) }
+
+    override val arity: Int get() = 1
+
+    override fun get(index: Int): Term = when (index) {
+        0 -> arg0
+        else -> throw IndexOutOfBoundsException("Index: $index, arity: 1")
+    }
+
+    override fun withAttachments(attachments: Attachments): ApplTerm1
+        = ApplTerm1(this.symbol, arg0, attachments)
+}
+
+private class ApplTerm2(
+    symbol: Constructor,
+    private val arg0: Term,
+    private val arg1: Term,
+    attachments: Attachments,
+) : ApplTermImpl(symbol, attachments) {
+    init { hash = TermEquality.applHashCode(this) }
+
+    override val arity: Int get() = 2
+
+    override fun get(index: Int): Term = when (index) {
+        0 -> arg0
+        1 -> arg1
+        else -> throw IndexOutOfBoundsException("Index: $index, arity: 2")
+    }
+
+    override fun withAttachments(attachments: Attachments): ApplTerm2
+        = ApplTerm2(this.symbol, arg0, arg1, attachments)
+}
+
+private class ApplTerm3(
+    symbol: Constructor,
+    private val arg0: Term,
+    private val arg1: Term,
+    private val arg2: Term,
+    attachments: Attachments,
+) : ApplTermImpl(symbol, attachments) {
+    init { hash = TermEquality.applHashCode(this) }
+
+    override val arity: Int get() = 3
+
+    override fun get(index: Int): Term = when (index) {
+        0 -> arg0
+        1 -> arg1
+        2 -> arg2
+        else -> throw IndexOutOfBoundsException("Index: $index, arity: 3")
+    }
+
+    override fun withAttachments(attachments: Attachments): ApplTerm3
+        = ApplTerm3(this.symbol, arg0, arg1, arg2, attachments)
+}
+
+private class ApplTerm4(
+    symbol: Constructor,
+    private val arg0: Term,
+    private val arg1: Term,
+    private val arg2: Term,
+    private val arg3: Term,
+    attachments: Attachments,
+) : ApplTermImpl(symbol, attachments) {
+    init { hash = TermEquality.applHashCode(this) }
+
+    override val arity: Int get() = 4
+
+    override fun get(index: Int): Term = when (index) {
+        0 -> arg0
+        1 -> arg1
+        2 -> arg2
+        3 -> arg3
+        else -> throw IndexOutOfBoundsException("Index: $index, arity: 4")
+    }
+
+    override fun withAttachments(attachments: Attachments): ApplTerm4
+        = ApplTerm4(this.symbol, arg0, arg1, arg2, arg3, attachments)
+}
+
+private class ApplTerm5(
+    symbol: Constructor,
+    private val arg0: Term,
+    private val arg1: Term,
+    private val arg2: Term,
+    private val arg3: Term,
+    private val arg4: Term,
+    attachments: Attachments,
+) : ApplTermImpl(symbol, attachments) {
+    init { hash = TermEquality.applHashCode(this) }
+
+    override val arity: Int get() = 5
+
+    override fun get(index: Int): Term = when (index) {
+        0 -> arg0
+        1 -> arg1
+        2 -> arg2
+        3 -> arg3
+        4 -> arg4
+        else -> throw IndexOutOfBoundsException("Index: $index, arity: 5")
+    }
+
+    override fun withAttachments(attachments: Attachments): ApplTerm5
+        = ApplTerm5(this.symbol, arg0, arg1, arg2, arg3, arg4, attachments)
+}
+
+/**
+ * A constructor application term with more than five arguments,
+ * which are stored in an array.
+ */
+private class ApplTermN(
+    symbol: Constructor,
+    private val argArray: Array<Term>,
+    attachments: Attachments,
+) : ApplTermImpl(symbol, attachments) {
+    init { hash = TermEquality.applHashCode(this) }
+
+    override val arity: Int get() = argArray.size
+
+    override fun get(index: Int): Term = argArray[index]
+
+    override fun withAttachments(attachments: Attachments): ApplTermN
+        = ApplTermN(this.symbol, argArray, attachments)
+}
+
+/**
+ * Base class for persistent list terms.
+ *
+ * A list is either a slice of an array ([ArrayListTerm]), or an element
+ * prepended to another list ([ConsListTerm]). Taking the tail of a list
+ * and prepending an element to a list both take constant time,
+ * and the resulting lists share their elements with the original list.
+ */
+private abstract class ListTermImpl(
     override val attachments: Attachments,
 ) : TermImpl(), ListTerm {
-    override fun withAttachments(attachments: Attachments): ListTermImpl
-            = ListTermImpl(this.subterms, attachments)
+    /** The number of elements in the list. */
+    abstract val size: Int
+
+    /** The precomputed hash code of the elements; set by the subclasses. */
+    var elementsHash: Int = 0
+        protected set
+
+    /** The precomputed hash code; set by the subclasses. */
+    protected var hash: Int = 0
+
+    override val isEmpty: Boolean get() = size == 0
+
+    override val subterms: List<Term> get() = ListTermElements(this)
+
+    abstract override fun sublist(offset: Int): ListTermImpl
+
+    abstract override fun withAttachments(attachments: Attachments): ListTermImpl
+
+    override fun hashCode(): Int = hash
 
     override fun toString(): String
         = "[${subterms.joinToString()}]$attachments"
 }
 
-private data class StringTermImpl(
+/**
+ * A view of the elements of a list term.
+ *
+ * The iterator walks the cons cells of the list, and then iterates the array slice of its tail by index.
+ */
+private class ListTermElements(
+    private val list: ListTermImpl,
+) : AbstractList<Term>() {
+    override val size: Int get() = list.size
+
+    override fun get(index: Int): Term = list[index]
+
+    override fun iterator(): Iterator<Term> = object : Iterator<Term> {
+        /** The rest of the list, while it starts with a cons cell. */
+        private var current: ListTermImpl = list
+        /** The iterator of the array slice at the end of the list; or `null` when not yet reached. */
+        private var arrayIterator: Iterator<Term>? = null
+
+        override fun hasNext(): Boolean = arrayIterator?.hasNext() ?: !current.isEmpty
+
+        override fun next(): Term {
+            arrayIterator?.let { return it.next() }
+            val current = current
+            if (current is ConsListTerm) {
+                this.current = current.tail
+                return current.head
+            }
+            val iterator = (current as ArrayListTerm).subterms.iterator()
+            arrayIterator = iterator
+            return iterator.next()
+        }
+    }
+}
+
+/**
+ * A list term whose elements are a slice of an array.
+ *
+ * The array is shared with the tails of the list, and must not be modified.
+ */
+private class ArrayListTerm private constructor(
+    private val array: Array<Term>,
+    private val offset: Int,
+    elementsHash: Int,
+    attachments: Attachments,
+) : ListTermImpl(attachments) {
+    companion object {
+        /** The empty array. */
+        private val emptyArray: Array<Term> = emptyArray()
+        /** The empty list without attachments. */
+        private val emptyList: ArrayListTerm = ArrayListTerm(emptyArray, 0, Attachments.empty())
+
+        /**
+         * Gets an empty list.
+         *
+         * @param attachments the term attachments
+         * @return the empty list
+         */
+        fun empty(attachments: Attachments): ArrayListTerm
+            = if (attachments.isEmpty()) emptyList else emptyList.withAttachments(attachments)
+
+        /**
+         * Computes the hash code of the elements of an array slice.
+         */
+        private fun elementsHashCode(array: Array<Term>, offset: Int): Int {
+            var hash = 1
+            for (i in array.size - 1 downTo offset) {
+                hash = TermEquality.consElementsHashCode(array[i], hash)
+            }
+            return hash
+        }
+    }
+
+    /**
+     * Initializes a new instance of the [ArrayListTerm] class.
+     *
+     * @param array the array with the elements, which is not copied
+     * @param offset the offset of the first element in the array
+     * @param attachments the term attachments
+     */
+    constructor(array: Array<Term>, offset: Int, attachments: Attachments)
+        : this(array, offset, elementsHashCode(array, offset), attachments)
+
+    init {
+        this.elementsHash = elementsHash
+        this.hash = TermEquality.listHashCode(elementsHash, attachments)
+    }
+
+    override val size: Int get() = array.size - offset
+
+    override val head: Term get() = if (!isEmpty) array[offset] else throw IllegalStateException("Cannot return head; list is empty.")
+
+    override val tail: ListTermImpl get() = if (!isEmpty) sublist(1) else throw IllegalStateException("Cannot return tail; list is empty.")
+
+    override val subterms: List<Term> get() = ArrayElements(array, offset)
+
+    override fun get(index: Int): Term {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index: $index, size: $size")
+        return array[offset + index]
+    }
+
+    override fun sublist(offset: Int): ArrayListTerm {
+        if (offset < 0 || offset > size) throw IndexOutOfBoundsException("Offset: $offset, size: $size")
+        if (offset == 0) return this
+        var tailElementsHash = elementsHash
+        for (i in this.offset until this.offset + offset) {
+            tailElementsHash = TermEquality.tailElementsHashCode(array[i], tailElementsHash)
+        }
+        return ArrayListTerm(array, this.offset + offset, tailElementsHash, Attachments.empty())
+    }
+
+    override fun withAttachments(attachments: Attachments): ArrayListTerm
+        = ArrayListTerm(array, offset, elementsHash, attachments)
+}
+
+/**
+ * A view of the elements of an array slice.
+ */
+private class ArrayElements(
+    private val array: Array<Term>,
+    private val offset: Int,
+) : AbstractList<Term>(), RandomAccess {
+    override val size: Int get() = array.size - offset
+
+    override fun get(index: Int): Term {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index: $index, size: $size")
+        return array[offset + index]
+    }
+}
+
+/**
+ * A list term that consists of an element prepended to another list term.
+ *
+ * @property head the first element of the list
+ * @property tail the rest of the list, which has no attachments
+ */
+private class ConsListTerm(
+    override val head: Term,
+    override val tail: ListTermImpl,
+    attachments: Attachments,
+) : ListTermImpl(attachments) {
+    override val size: Int = 1 + tail.size
+
+    init {
+        this.elementsHash = TermEquality.consElementsHashCode(head, tail.elementsHash)
+        this.hash = TermEquality.listHashCode(elementsHash, attachments)
+    }
+
+    override val isEmpty: Boolean get() = false
+
+    override fun get(index: Int): Term {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index: $index, size: $size")
+        return sublist(index).head
+    }
+
+    override fun sublist(offset: Int): ListTermImpl {
+        if (offset < 0 || offset > size) throw IndexOutOfBoundsException("Offset: $offset, size: $size")
+        var list: ListTermImpl = this
+        var remaining = offset
+        // Walk the cons cells until we reach the offset or an array slice
+        while (remaining > 0 && list is ConsListTerm) {
+            list = list.tail
+            remaining -= 1
+        }
+        return if (remaining > 0) list.sublist(remaining) else list
+    }
+
+    override fun withAttachments(attachments: Attachments): ConsListTerm
+        = ConsListTerm(head, tail, attachments)
+}
+
+private class StringTermImpl(
     override val value: String,
     override val attachments: Attachments,
 ) : TermImpl(), StringTerm {
     companion object {
-        private fun encode(s: String): String = s
+        /** The maximum length of the strings that are cached. */
+        private const val MAX_CACHED_LENGTH = 32
+        /** The number of entries in the cache; a power of two. */
+        private const val CACHE_SIZE = 4096
+
+        /**
+         * The cache of string terms without attachments, indexed by the hash code of the string.
+         * An entry is replaced when another string with the same index is created,
+         * so the cache is bounded. The entries are immutable, so races only cause cache misses.
+         */
+        private val cache = arrayOfNulls<StringTermImpl>(CACHE_SIZE)
+
+        /**
+         * Gets a string term, which is shared when it is short and has no attachments.
+         *
+         * @param value the value of the term
+         * @param attachments the term attachments
+         * @return the string term
+         */
+        fun of(value: String, attachments: Attachments): StringTermImpl {
+            if (!attachments.isEmpty() || value.length > MAX_CACHED_LENGTH) return StringTermImpl(value, attachments)
+            val index = cacheIndex(value.hashCode())
+            val cached = cache[index]
+            if (cached != null && cached.value == value) return cached
+            val term = StringTermImpl(value, attachments)
+            cache[index] = term
+            return term
+        }
+
+        /**
+         * Gets a string term from its UTF-8 encoded bytes.
+         *
+         * Short strings without attachments are shared, as by [of]. Other strings that consist
+         * only of ASCII characters keep a reference to the bytes until their value is first accessed,
+         * when it is decoded and the reference to the bytes is dropped. Any other strings are decoded.
+         *
+         * @param bytes the array with the UTF-8 encoded value
+         * @param offset the offset of the value in the array
+         * @param length the number of bytes of the value
+         * @param attachments the term attachments
+         * @return the string term, which is a [StringTerm]
+         */
+        fun of(bytes: ByteArray, offset: Int, length: Int, attachments: Attachments): TermImpl {
+            val hash = AsciiStringTermImpl.hashCode(bytes, offset, length)
+                ?: return of(String(bytes, offset, length, Charsets.UTF_8), attachments)
+            if (!attachments.isEmpty() || length > MAX_CACHED_LENGTH) return AsciiStringTermImpl(bytes, offset, length, hash, attachments)
+            val index = cacheIndex(hash)
+            val cached = cache[index]
+            if (cached != null && AsciiStringTermImpl.equals(bytes, offset, length, cached.value)) return cached
+            val term = StringTermImpl(String(bytes, offset, length, Charsets.US_ASCII), attachments)
+            cache[index] = term
+            return term
+        }
+
+        /** Gets the index in the cache of a string with the specified hash code. */
+        private fun cacheIndex(h: Int): Int = (h xor (h ushr 16)) and (CACHE_SIZE - 1)
+
+        /** Escapes a string value. */
+        fun encode(s: String): String = s
             .replace("\\", "\\\\")
             .replace("\"", "\\\"")
     }
 
+    private val hash = TermEquality.valueHashCode(value, attachments)
+
     override fun withAttachments(attachments: Attachments): StringTermImpl
-            = StringTermImpl(this.value, attachments)
+            = of(this.value, attachments)
+
+    override fun hashCode(): Int = hash
 
     override fun toString(): String
         = "\"${encode(value)}\"$attachments"
 }
 
-private data class IntTermImpl(
+/**
+ * A string term of ASCII characters, which keeps a reference to the bytes of its value.
+ *
+ * The bytes may be a range of a larger array, such as the input from which the term was read,
+ * which the term keeps in memory until its value is first accessed. The value is then decoded and kept,
+ * and the reference to the bytes is dropped. Two terms of this class whose values are not yet decoded
+ * are compared byte by byte.
+ */
+private class AsciiStringTermImpl(
+    bytes: ByteArray,
+    private val offset: Int,
+    private val length: Int,
+    valueHash: Int,
+    override val attachments: Attachments,
+) : TermImpl(), StringTerm {
+    companion object {
+        /**
+         * Computes the hash code of the ASCII string with the specified bytes,
+         * which is equal to the hash code of the [String].
+         *
+         * @param bytes the array with the bytes
+         * @param offset the offset of the string in the array
+         * @param length the number of bytes of the string
+         * @return the hash code; or `null` if the bytes are not all ASCII characters
+         */
+        fun hashCode(bytes: ByteArray, offset: Int, length: Int): Int? {
+            var hash = 0
+            for (i in offset until offset + length) {
+                val b = bytes[i].toInt()
+                if (b < 0) return null
+                hash = 31 * hash + b
+            }
+            return hash
+        }
+
+        /**
+         * Determines whether the ASCII string with the specified bytes is equal to the specified string.
+         *
+         * @param bytes the array with the bytes
+         * @param offset the offset of the string in the array
+         * @param length the number of bytes of the string
+         * @param value the string to compare to
+         * @return `true` when the strings are equal; otherwise, `false`
+         */
+        fun equals(bytes: ByteArray, offset: Int, length: Int, value: String): Boolean {
+            if (value.length != length) return false
+            for (i in 0 until length) {
+                if (bytes[offset + i].toInt() != value[i].code) return false
+            }
+            return true
+        }
+    }
+
+    private val hash = TermEquality.valueHashCode(valueHash, attachments)
+
+    /** The bytes of the value, as a [ByteArray]; or the decoded value, as a [String]. */
+    @Volatile private var data: Any = bytes
+
+    override val value: String
+        get() {
+            val data = this.data
+            if (data is String) return data
+            // Racing threads at worst decode equal strings
+            val value = String(data as ByteArray, offset, length, Charsets.US_ASCII)
+            this.data = value
+            return value
+        }
+
+    override fun withAttachments(attachments: Attachments): TermImpl {
+        val data = this.data
+        return if (data is ByteArray) StringTermImpl.of(data, offset, length, attachments)
+               else StringTermImpl.of(data as String, attachments)
+    }
+
+    override fun equals(other: Any?): Boolean {
+        if (other !is AsciiStringTermImpl) return TermEquality.equals(this, other)
+        if (this === other) return true
+        if (hash != other.hash || length != other.length) return false
+        val bytes = this.data
+        val otherBytes = other.data
+        if (bytes !is ByteArray || otherBytes !is ByteArray) return value == other.value && attachments == other.attachments
+        for (i in 0 until length) {
+            if (bytes[offset + i] != otherBytes[other.offset + i]) return false
+        }
+        return attachments == other.attachments
+    }
+
+    override fun hashCode(): Int = hash
+
+    override fun toString(): String
+        = "\"${StringTermImpl.encode(value)}\"$attachments"
+}
+
+private class IntTermImpl(
     override val value: Int,
     override val attachments: Attachments,
 ) : TermImpl(), IntTerm {
+    companion object {
+        /** The smallest cached value. */
+        private const val MIN_CACHED = -128
+        /** The largest cached value. */
+        private const val MAX_CACHED = 1023
+
+        /** The preallocated integer terms without attachments, from [MIN_CACHED] to [MAX_CACHED]. */
+        private val cache = Array(MAX_CACHED - MIN_CACHED + 1) { IntTermImpl(MIN_CACHED + it, Attachments.empty()) }
+
+        /**
+         * Gets an integer term, which is shared when it is small and has no attachments.
+         *
+         * @param value the value of the term
+         * @param attachments the term attachments
+         * @return the integer term
+         */
+        fun of(value: Int, attachments: Attachments): IntTermImpl
+            = if (value in MIN_CACHED..MAX_CACHED && attachments.isEmpty()) cache[value - MIN_CACHED]
+              else IntTermImpl(value, attachments)
+    }
+
+    private val hash = TermEquality.valueHashCode(value, attachments)
+
     override fun withAttachments(attachments: Attachments): IntTermImpl
-            = IntTermImpl(this.value, attachments)
+            = of(this.value, attachments)
+
+    override fun hashCode(): Int = hash
 
     override fun toString(): String
             = "$value$attachments"
 }
 
-private data class RealTermImpl(
+private class RealTermImpl(
     override val value: Double,
     override val attachments: Attachments,
 ) : TermImpl(), RealTerm {
+    companion object {
+        /** The largest cached whole number. */
+        private const val MAX_CACHED = 16
+
+        /** The preallocated real terms without attachments, for the whole numbers from 0 to [MAX_CACHED]. */
+        private val cache = Array(MAX_CACHED + 1) { RealTermImpl(it.toDouble(), Attachments.empty()) }
+
+        /**
+         * Gets a real term, which is shared when it is a small whole number and has no attachments.
+         *
+         * @param value the value of the term
+         * @param attachments the term attachments
+         * @return the real term
+         */
+        fun of(value: Double, attachments: Attachments): RealTermImpl {
+            val i = value.toInt()
+            // Compares the bits, so -0.0 is not cached as 0.0
+            return if (i in 0..MAX_CACHED && i.toDouble().toRawBits() == value.toRawBits() && attachments.isEmpty()) cache[i]
+                   else RealTermImpl(value, attachments)
+        }
+    }
+
+    private val hash = TermEquality.valueHashCode(value, attachments)
+
     override fun withAttachments(attachments: Attachments): RealTermImpl
-            = RealTermImpl(this.value, attachments)
+            = of(this.value, attachments)
+
+    override fun hashCode(): Int = hash
 
     override fun toString(): String
             = "$value$attachments"
 }
 
-private data class PlaceholderTermImpl(
+private class PlaceholderTermImpl(
     override val template: Term,
     override val attachments: Attachments,
 ) : TermImpl(), PlaceholderTerm {
+    private val hash = TermEquality.valueHashCode(template, attachments)
+
     override fun withAttachments(attachments: Attachments): PlaceholderTermImpl
             = PlaceholderTermImpl(this.template, attachments)
 
+    override fun hashCode(): Int = hash
+
     override fun toString(): String
             = "<$template>$attachments"
 }
 
-private data class BlobTermImpl(
+private class BlobTermImpl(
     override val value: Any,
     override val attachments: Attachments,
 ) : TermImpl(), BlobTerm {
+    private val hash = TermEquality.valueHashCode(value, attachments)
+
     override fun withAttachments(attachments: Attachments): BlobTermImpl
             = BlobTermImpl(this.value, attachments)
 
+    override fun hashCode(): Int = hash
+
     override fun toString(): String
             = "$value$attachments"
 }
 
-private data class TermVarImpl(
+private class TermVarImpl(
     override val name: String,
     override val attachments: Attachments,
 ) : TermImpl(), TermVar {
+    private val hash = TermEquality.valueHashCode(name, attachments)
+
     override fun withAttachments(attachments: Attachments): TermVarImpl
             = TermVarImpl(this.name, attachments)
 
+    override fun hashCode(): Int = hash
+
     override fun toString(): String
             = "$name$attachments"
 }
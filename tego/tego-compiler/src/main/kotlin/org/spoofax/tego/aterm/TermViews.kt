@@ -0,0 +1,364 @@
+package org.spoofax.tego.aterm
+
+/**
+ * Views of terms whose annotations are hidden or replaced, without copying the terms.
+ *
+ * A view presents the viewed term with different annotations, and is equal to the term
+ * that would have been built with those annotations. The subterms of a view of a term
+ * without annotations are themselves views, which are created when they are accessed;
+ * the subterms of a view with replaced annotations are the subterms of the viewed term.
+ * The views of the subterms are kept by the view once accessed, and the hash code of a view
+ * is computed iteratively on its first use and kept as well, so that hashing and comparing
+ * a view takes time linear in its size. To build the presented term,
+ * for example to keep it or to use it repeatedly, use [materialize].
+ */
+object TermViews {
+
+    /**
+     * Gets a view of the term and its subterms without their annotations.
+     *
+     * Other attachments are kept.
+     *
+     * @param term the term
+     * @return the term without annotations
+     */
+    fun withoutAnnotations(term: Term): Term {
+        if (term is TermView && term.deep && !term.attachments.has(Annotations::class.java)) return term
+        val viewed = if (term is TermView) term.term else term
+        return view(viewed, viewed.attachments.remove(Annotations::class.java), true)
+    }
+
+    /**
+     * Gets a view of the term with the specified annotations instead of its own.
+     *
+     * The subterms and the other attachments of the term are kept.
+     *
+     * @param term the term
+     * @param annotations the annotations of the view
+     * @return the term with the specified annotations
+     */
+    fun withAnnotations(term: Term, annotations: Annotations): Term {
+        val attachments = term.attachments.set(annotations)
+        return if (term is TermView) view(term.term, attachments, term.deep) else view(term, attachments, false)
+    }
+
+    /**
+     * Builds the term presented by a view.
+     *
+     * The term is built iteratively, using an explicit stack. Subterms that are not views
+     * are kept, as are the viewed terms whose subterms and attachments turn out to be unchanged.
+     *
+     * @param term the term, which may be a view
+     * @param factory the term factory used to build the terms
+     * @return the built term; or the term itself when it is not a view
+     */
+    fun materialize(term: Term, factory: TermFactory): Term {
+        if (term !is TermView) return term
+        // The terms to visit, or the views whose children have been visited
+        val stack = ArrayList<Any>()
+        // The built children of the visited views, in order
+        val results = ArrayList<Term>()
+        stack.add(term)
+        while (stack.isNotEmpty()) {
+            val next = stack.removeAt(stack.size - 1)
+            if (next is Visited) {
+                val start = results.size - next.childCount
+                val children = ArrayList(results.subList(start, results.size))
+                while (results.size > start) results.removeAt(results.size - 1)
+                results.add(build(next.view, children, factory))
+            } else if (next is TermView) {
+                val children = children(next)
+                stack.add(Visited(next, children.size))
+                for (i in children.size - 1 downTo 0) stack.add(children[i])
+            } else {
+                results.add(next as Term)
+            }
+        }
+        return results.single()
+    }
+
+    /**
+     * Gets the children of a view that are built by [materialize]:
+     * its subterms, or the template of a placeholder.
+     */
+    private fun children(view: TermView): List<Term>
+        = if (view is PlaceholderTerm) listOf(view.template) else view.subterms
+
+    /**
+     * Builds the term presented by a view from its built children.
+     *
+     * @param view the view
+     * @param children the built children of the view
+     * @param factory the term factory used to build the term
+     * @return the built term
+     */
+    private fun build(view: TermView, children: List<Term>, factory: TermFactory): Term {
+        val original = view.term
+        val rebuilt = when (original) {
+            is PlaceholderTerm -> if (children[0] === original.template) original
+                                  else factory.newPlaceholder(children[0], original.attachments, original)
+            else -> factory.withSubterms(original, children)
+        }
+        return if (rebuilt.attachments == view.attachments) rebuilt else factory.withAttachments(rebuilt, view.attachments)
+    }
+
+    /**
+     * Creates a view of a term.
+     *
+     * @param term the viewed term, which is not a view
+     * @param attachments the attachments of the view
+     * @param deep whether the subterms of the view are views without annotations
+     * @return the view
+     */
+    private fun view(term: Term, attachments: Attachments, deep: Boolean): TermView = when (term) {
+        is ApplTerm -> ApplView(term, attachments, deep)
+        is ListTerm -> ListView(term, attachments, deep)
+        is StringTerm -> StringView(term, attachments, deep)
+        is IntTerm -> IntView(term, attachments, deep)
+        is RealTerm -> RealView(term, attachments, deep)
+        is PlaceholderTerm -> PlaceholderView(term, attachments, deep)
+        is BlobTerm -> BlobView(term, attachments, deep)
+        is TermVar -> VarView(term, attachments, deep)
+        else -> throw IllegalArgumentException("Unsupported term: $term")
+    }
+
+    /**
+     * Computes the hash codes of a view and of the views of its subterms that have not been computed yet.
+     *
+     * The views are visited iteratively, using an explicit stack,
+     * so that the hash codes of deeply nested views can be computed on threads with a small stack.
+     *
+     * @param view the view
+     */
+    private fun computeHashCodes(view: TermView) {
+        // The views to visit, or the views whose children have been visited
+        val stack = ArrayList<Any>()
+        stack.add(view)
+        while (stack.isNotEmpty()) {
+            val next = stack.removeAt(stack.size - 1)
+            if (next is Visited) {
+                next.view.setHashCode()
+            } else {
+                val current = next as TermView
+                if (current.isHashed) continue
+                val children = if (current.deep) children(current) else emptyList()
+                stack.add(Visited(current, children.size))
+                for (child in children) {
+                    if (child is TermView && !child.isHashed) stack.add(child)
+                }
+            }
+        }
+    }
+
+    /**
+     * A view whose children have been visited.
+     *
+     * @property view the view
+     * @property childCount the number of children of the view
+     */
+    private class Visited(val view: TermView, val childCount: Int)
+
+    /**
+     * Base class for views of terms.
+     *
+     * @property deep whether the subterms of the view are views without annotations
+     */
+    private abstract class TermView(
+        override val attachments: Attachments,
+        val deep: Boolean,
+    ) : Term {
+        /** The viewed term, which is not a view. */
+        abstract val term: Term
+
+        /** The hash code, once it has been computed. */
+        private var hash: Int = 0
+
+        /** Whether the hash code has been computed. */
+        @Volatile
+        var isHashed: Boolean = false
+            private set
+
+        /** The views of the subterms that have been accessed; or `null` when none have. */
+        private var childViews: Array<Term?>? = null
+
+        /** The number of subterms of the viewed term, or 1 for a placeholder. */
+        protected open val childCount: Int get() = 0
+
+        /** Computes the hash code of the view. */
+        protected abstract fun computeHashCode(): Int
+
+        /**
+         * Gets the view of a subterm.
+         *
+         * The view is created when it is first accessed, and kept afterwards.
+         * As views are immutable, racing threads at worst create equal views.
+         *
+         * @param index the index of the subterm
+         * @param subterm the subterm of the viewed term
+         * @return the view of the subterm; or the subterm itself if the view is not deep
+         */
+        protected fun child(index: Int, subterm: Term): Term {
+            if (!deep) return subterm
+            val views = childViews ?: arrayOfNulls<Term>(childCount).also { childViews = it }
+            return views[index] ?: withoutAnnotations(subterm).also { views[index] = it }
+        }
+
+        override fun equals(other: Any?): Boolean = TermEquality.equals(this, other)
+
+        /**
+         * Computes and sets the hash code of the view,
+         * once the hash codes of the views of its subterms have been set.
+         */
+        fun setHashCode() {
+            hash = computeHashCode()
+            isHashed = true
+        }
+
+        override fun hashCode(): Int {
+            if (!isHashed) computeHashCodes(this)
+            return hash
+        }
+    }
+
+    private class ApplView(
+        override val term: ApplTerm,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), ApplTerm {
+        override val constructor: String get() = term.constructor
+        override val symbol: Constructor get() = term.symbol
+        override val arity: Int get() = term.arity
+        override val subterms: List<Term> get() = if (deep) Args(this) else term.subterms
+        override val childCount: Int get() = term.arity
+
+        override fun get(index: Int): Term = child(index, term[index])
+
+        override fun computeHashCode(): Int = TermEquality.applHashCode(this)
+
+        override fun toString(): String
+            = "$constructor(${subterms.joinToString(", ")})$attachments"
+
+        /** The views of the arguments of a view. */
+        private class Args(private val view: ApplView) : AbstractList<Term>(), RandomAccess {
+            override val size: Int get() = view.arity
+
+            override fun get(index: Int): Term = view[index]
+        }
+    }
+
+    private class ListView(
+        override val term: ListTerm,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), ListTerm {
+        override val elements: List<Term> get() = if (deep) Elements(this) else term.elements
+        override val subterms: List<Term> get() = elements
+        override val isEmpty: Boolean get() = term.isEmpty
+        override val head: Term get() = child(0, term.head)
+        override val childCount: Int get() = term.elements.size
+
+        override fun get(index: Int): Term = child(index, term[index])
+
+        override fun sublist(offset: Int): ListTerm = when {
+            offset == 0 -> this
+            deep -> withoutAnnotations(term.sublist(offset)) as ListTerm
+            else -> term.sublist(offset)
+        }
+
+        override fun computeHashCode(): Int = TermEquality.listHashCode(elements, attachments)
+
+        override fun toString(): String
+            = "[${subterms.joinToString()}]$attachments"
+
+        /** The views of the elements of a view. */
+        private class Elements(private val view: ListView) : AbstractList<Term>() {
+            override val size: Int get() = view.term.elements.size
+
+            override fun get(index: Int): Term = view[index]
+
+            override fun iterator(): Iterator<Term> = object : Iterator<Term> {
+                private val elements = view.term.elements.iterator()
+                private var index = 0
+
+                override fun hasNext(): Boolean = elements.hasNext()
+
+                override fun next(): Term = view.child(index++, elements.next())
+            }
+        }
+    }
+
+    private class StringView(
+        override val term: StringTerm,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), StringTerm {
+        override val value: String get() = term.value
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String
+            = "\"${value.replace("\\", "\\\\").replace("\"", "\\\"")}\"$attachments"
+    }
+
+    private class IntView(
+        override val term: IntTerm,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), IntTerm {
+        override val value: Int get() = term.value
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String = "$value$attachments"
+    }
+
+    private class RealView(
+        override val term: RealTerm,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), RealTerm {
+        override val value: Double get() = term.value
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String = "$value$attachments"
+    }
+
+    private class PlaceholderView(
+        override val term: PlaceholderTerm,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), PlaceholderTerm {
+        override val template: Term get() = child(0, term.template)
+        override val childCount: Int get() = 1
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(template, attachments)
+
+        override fun toString(): String = "<$template>$attachments"
+    }
+
+    private class BlobView(
+        override val term: BlobTerm,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), BlobTerm {
+        override val value: Any get() = term.value
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(value, attachments)
+
+        override fun toString(): String = "$value$attachments"
+    }
+
+    private class VarView(
+        override val term: TermVar,
+        attachments: Attachments,
+        deep: Boolean,
+    ) : TermView(attachments, deep), TermVar {
+        override val name: String get() = term.name
+
+        override fun computeHashCode(): Int = TermEquality.valueHashCode(name, attachments)
+
+        override fun toString(): String = "$name$attachments"
+    }
+
+}
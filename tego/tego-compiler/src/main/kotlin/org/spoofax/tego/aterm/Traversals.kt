@@ -0,0 +1,285 @@
+package org.spoofax.tego.aterm
+
+/**
+ * Generic traversals over terms.
+ *
+ * A traversal applies a rewrite to the subterms of a term. A rewrite is a [Matcher] that returns
+ * the rewritten term, or `null` when it fails; [Matcher] combinators and [MatcherSet] can be used
+ * to build rewrites. A traversal returns `null` when it fails.
+ *
+ * Only constructor applications and lists have subterms. A term whose subterms are all returned
+ * unchanged (the same instances) is not rebuilt: the traversal returns the original instance,
+ * so a pass that changes only a few nodes shares the rest of the tree with its input.
+ * The deep traversals use an explicit stack instead of recursion, so they can traverse terms
+ * of any depth, and they do not allocate intermediate lists.
+ *
+ * @property factory the term factory used to rebuild terms whose subterms changed
+ */
+class Traversals(
+    private val factory: TermFactory,
+) {
+
+    private companion object {
+        const val TOPDOWN = 0
+        const val BOTTOMUP = 1
+        const val INNERMOST = 2
+    }
+
+    /**
+     * Applies the rewrite to each subterm of the term.
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the term with the rewritten subterms; or `null` if the rewrite failed on any subterm
+     */
+    fun all(term: Term, rewrite: Matcher<out Term>): Term? {
+        val frame = Frame().reset(term)
+        while (true) {
+            val child = frame.next() ?: break
+            frame.set(rewrite.match(child) ?: return null)
+        }
+        return frame.build(factory)
+    }
+
+    /**
+     * Applies the rewrite to the first subterm of the term for which it succeeds.
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the term with the rewritten subterm; or `null` if the rewrite failed on all subterms
+     */
+    fun one(term: Term, rewrite: Matcher<out Term>): Term? {
+        val frame = Frame().reset(term)
+        while (true) {
+            val child = frame.next() ?: return null
+            val result = rewrite.match(child) ?: continue
+            frame.set(result)
+            return frame.build(factory)
+        }
+    }
+
+    /**
+     * Applies the rewrite to each subterm of the term, keeping the subterms for which it fails.
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the term with the rewritten subterms; or `null` if the rewrite failed on all subterms
+     */
+    fun some(term: Term, rewrite: Matcher<out Term>): Term? {
+        val frame = Frame().reset(term)
+        var succeeded = false
+        while (true) {
+            val child = frame.next() ?: break
+            val result = rewrite.match(child)
+            if (result != null) succeeded = true
+            frame.set(result ?: child)
+        }
+        return if (succeeded) frame.build(factory) else null
+    }
+
+    /**
+     * Applies the rewrite to the term, and then to the subterms of the result, recursively (pre-order).
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the rewritten term; or `null` if the rewrite failed on any term
+     */
+    fun topdown(term: Term, rewrite: Matcher<out Term>): Term? = traverse(term, rewrite, TOPDOWN)
+
+    /**
+     * Applies the rewrite to the subterms of the term, recursively, and then to the term (post-order).
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the rewritten term; or `null` if the rewrite failed on any term
+     */
+    fun bottomup(term: Term, rewrite: Matcher<out Term>): Term? = traverse(term, rewrite, BOTTOMUP)
+
+    /**
+     * Applies the rewrite to the term and its subterms until it fails on all of them,
+     * rewriting the innermost terms first.
+     *
+     * Each result of the rewrite is normalized again, so the traversal does not terminate
+     * if the rewrite can be applied indefinitely.
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @return the normal form of the term
+     */
+    fun innermost(term: Term, rewrite: Matcher<out Term>): Term = traverse(term, rewrite, INNERMOST)!!
+
+    /**
+     * Traverses the term.
+     *
+     * @param term the term
+     * @param rewrite the rewrite to apply
+     * @param mode the kind of traversal
+     * @return the rewritten term; or `null` if the rewrite failed
+     */
+    private fun traverse(term: Term, rewrite: Matcher<out Term>, mode: Int): Term? {
+        val stack = TraversalStack()
+        var frame = stack.push(if (mode == TOPDOWN) rewrite.match(term) ?: return null else term)
+        while (true) {
+            val child = frame.next()
+            if (child != null) {
+                frame = stack.push(if (mode == TOPDOWN) rewrite.match(child) ?: return null else child)
+                continue
+            }
+
+            // All subterms have been traversed
+            var result = frame.build(factory)
+            stack.pop()
+            when (mode) {
+                BOTTOMUP -> result = rewrite.match(result) ?: return null
+                INNERMOST -> {
+                    val rewritten = rewrite.match(result)
+                    if (rewritten != null) {
+                        // Normalize the result in place of the term
+                        frame = stack.push(rewritten)
+                        continue
+                    }
+                }
+            }
+            frame = stack.top ?: return result
+            frame.set(result)
+        }
+    }
+
+    /**
+     * A stack of the terms whose subterms are being traversed.
+     */
+    private class TraversalStack {
+        /** The frames, of which the first [depth] are in use. */
+        private val frames = ArrayList<Frame>()
+        /** The number of frames in use. */
+        private var depth = 0
+
+        /** The frame at the top of the stack; or `null` if the stack is empty. */
+        val top: Frame? get() = if (depth > 0) frames[depth - 1] else null
+
+        /**
+         * Pushes a frame on the stack.
+         *
+         * @param term the term whose subterms to traverse
+         * @return the pushed frame
+         */
+        fun push(term: Term): Frame {
+            if (depth == frames.size) frames.add(Frame())
+            return frames[depth++].reset(term)
+        }
+
+        /**
+         * Pops the frame at the top of the stack.
+         */
+        fun pop() {
+            depth -= 1
+        }
+    }
+
+    /**
+     * A term whose subterms are being traversed.
+     *
+     * The new subterms are only collected once a subterm has changed.
+     */
+    private class Frame {
+        /** The term. */
+        private var term: Term? = null
+        /** The number of subterms of the term. */
+        private var size: Int = 0
+        /** The index of the next subterm. */
+        private var index: Int = 0
+        /** The iterator over the elements of a list; or `null` for constructor applications. */
+        private var elements: Iterator<Term>? = null
+        /** The current subterm. */
+        private var current: Term? = null
+        /** The new subterms; or `null` when no subterm has changed. */
+        private var subterms: Array<Term?>? = null
+
+        /**
+         * Resets the frame for a new term.
+         *
+         * @param term the term
+         * @return this frame
+         */
+        fun reset(term: Term): Frame {
+            this.term = term
+            this.index = 0
+            this.current = null
+            this.subterms = null
+            when (term) {
+                is ApplTerm -> {
+                    this.size = term.arity
+                    this.elements = null
+                }
+                is ListTerm -> {
+                    val elements = term.elements
+                    this.size = elements.size
+                    this.elements = if (elements.isEmpty()) null else elements.iterator()
+                }
+                else -> {
+                    this.size = 0
+                    this.elements = null
+                }
+            }
+            return this
+        }
+
+        /**
+         * Moves to the next subterm.
+         *
+         * @return the next subterm; or `null` when there are no more subterms
+         */
+        fun next(): Term? {
+            if (index == size) return null
+            val elements = this.elements
+            val subterm = if (elements != null) elements.next() else (term as ApplTerm)[index]
+            index += 1
+            current = subterm
+            return subterm
+        }
+
+        /**
+         * Sets the result of the current subterm.
+         *
+         * @param result the new subterm
+         */
+        fun set(result: Term) {
+            val subterms = this.subterms ?: if (result === current) return else startSubterms()
+            subterms[index - 1] = result
+        }
+
+        /**
+         * Builds the term with the new subterms, including the subterms that have not been visited.
+         *
+         * @param factory the term factory
+         * @return the new term; or the original term if no subterm has changed
+         */
+        fun build(factory: TermFactory): Term {
+            val term = this.term!!
+            val subterms = this.subterms ?: return term
+            while (true) {
+                val subterm = next() ?: break
+                subterms[index - 1] = subterm
+            }
+            @Suppress("UNCHECKED_CAST")
+            return factory.withSubterms(term, subterms.asList() as List<Term>)
+        }
+
+        /**
+         * Creates the array of new subterms, with the subterms before the current subterm.
+         */
+        private fun startSubterms(): Array<Term?> {
+            val subterms = arrayOfNulls<Term>(size)
+            val term = this.term
+            if (term is ApplTerm) {
+                for (i in 0 until index - 1) subterms[i] = term[i]
+            } else {
+                val elements = term!!.subterms.iterator()
+                for (i in 0 until index - 1) subterms[i] = elements.next()
+            }
+            this.subterms = subterms
+            return subterms
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.spoofax.tego.aterm
+
+import java.lang.ref.WeakReference
+import java.util.*
+
+/**
+ * A thread-safe table of canonical instances, which are only weakly referenced.
+ *
+ * The table is split into segments, each guarded by its own lock,
+ * such that threads interning values with different hash codes rarely contend.
+ * Instances that are no longer referenced from outside the table
+ * are removed from the table by the garbage collector.
+ *
+ * @param concurrencyLevel the estimated number of concurrently interning threads
+ */
+internal class WeakInterner<T : Any>(
+    concurrencyLevel: Int = 16,
+) {
+
+    /** The segments of the table. The number of segments is a power of two. */
+    private val segments: Array<WeakHashMap<T, WeakReference<T>>>
+    /** The mask that selects a segment from a hash code. */
+    private val segmentMask: Int
+
+    init {
+        require(concurrencyLevel > 0) { "The concurrency level must be positive, got $concurrencyLevel." }
+        val segmentCount = Integer.highestOneBit(concurrencyLevel - 1).coerceAtLeast(1) shl 1
+        segments = Array(segmentCount) { WeakHashMap<T, WeakReference<T>>() }
+        segmentMask = segmentCount - 1
+    }
+
+    /**
+     * Returns the canonical instance that is equal to the specified value.
+     *
+     * If there is no such instance, the value itself becomes the canonical instance.
+     *
+     * @param value the value to intern
+     * @return the canonical instance
+     */
+    fun intern(value: T): T {
+        val segment = segmentFor(value)
+        synchronized(segment) {
+            val existing = segment[value]?.get()
+            if (existing != null) return existing
+            segment[value] = WeakReference(value)
+            return value
+        }
+    }
+
+    /**
+     * The number of canonical instances in the table.
+     *
+     * As instances may be garbage collected at any time, this is only an estimate.
+     */
+    val size: Int get() = segments.sumOf { segment -> synchronized(segment) { segment.size } }
+
+    /**
+     * Gets the segment responsible for the specified value.
+     *
+     * @param value the value
+     * @return the segment
+     */
+    private fun segmentFor(value: T): WeakHashMap<T, WeakReference<T>> {
+        // Spread the higher bits of the hash downwards, as WeakHashMap uses the lower bits.
+        val hash = value.hashCode()
+        return segments[(hash xor (hash ushr 16) xor (hash ushr 24)) and segmentMask]
+    }
+
+}
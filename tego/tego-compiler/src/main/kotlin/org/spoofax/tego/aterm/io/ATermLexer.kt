@@ -0,0 +1,204 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.Attachments
+import org.spoofax.tego.aterm.StringTerm
+import org.spoofax.tego.aterm.TermFactory
+
+/**
+ * Scans the tokens of an ATerm.
+ */
+internal interface ATermLexer {
+
+    companion object {
+        /** Returned when the end of the input has been reached. */
+        const val EOF = -1
+
+        /**
+         * Determines whether the code point is whitespace.
+         */
+        fun isWhitespace(cp: Int): Boolean
+            = cp == ' '.code || cp == '\n'.code || cp == '\r'.code || cp == '\t'.code || (cp > 0x7F && Character.isWhitespace(cp))
+
+        /**
+         * Determines whether the code point is a decimal digit.
+         */
+        fun isDigit(cp: Int): Boolean
+            = cp >= '0'.code && cp <= '9'.code
+
+        /**
+         * Determines whether the code point is valid
+         * as the first character of an identifier.
+         */
+        fun isValidIdentifierFirstChar(cp: Int): Boolean
+            = (cp >= 'a'.code && cp <= 'z'.code) || (cp >= 'A'.code && cp <= 'Z'.code)
+                || cp == '_'.code || cp == '-'.code || cp == '+'.code || cp == '*'.code || cp == '$'.code
+                || (cp > 0x7F && Character.isLetter(cp))
+
+        /**
+         * Determines whether the code point is valid
+         * as a character of an identifier.
+         */
+        fun isValidIdentifierChar(cp: Int): Boolean
+            = isValidIdentifierFirstChar(cp) || isDigit(cp) || (cp > 0x7F && Character.isLetterOrDigit(cp))
+    }
+
+    /** The offset in the input of the next character. */
+    val offset: Long
+
+    /** The value of the last integer read by [readNumber]. */
+    val intValue: Int
+    /** The value of the last real read by [readNumber]. */
+    val realValue: Double
+
+    /**
+     * Skips any whitespace.
+     *
+     * @return the next non-whitespace character; or [EOF] when the end of the input has been reached
+     */
+    fun skipWhitespace(): Int
+
+    /**
+     * Peeks the next character.
+     *
+     * @return the next character; or [EOF] when the end of the input has been reached
+     */
+    fun peek(): Int
+
+    /**
+     * Peeks a character ahead of the next character.
+     *
+     * @param lookahead the number of characters to look ahead of the next character
+     * @return the character; or [EOF] when the end of the input is reached before it
+     */
+    fun peek(lookahead: Int): Int
+
+    /**
+     * Reads the next character.
+     *
+     * @return the read character
+     * @throws FormatException if the end of the input has been reached
+     */
+    fun read(): Char
+
+    /**
+     * Reads the next character, which must be the expected character.
+     *
+     * @param expected the expected character
+     * @param expectedName the name of the expected character; or `null`
+     * @throws FormatException if the end of the input has been reached,
+     * or when the read character is not the expected character
+     */
+    fun readExpected(expected: Char, expectedName: String? = null) {
+        val ch = read()
+        if (ch != expected) {
+            val message = if (expectedName != null)
+                "Expected $expectedName, got '$ch' character at offset ${offset - 1}."
+            else
+                "Did not expect '$ch' character at offset ${offset - 1}."
+            throw FormatException(message)
+        }
+    }
+
+    /**
+     * Tries to read the expected character.
+     *
+     * @param expected the expected character
+     * @return `true` when the character was read;
+     * otherwise, `false` when the next character is different or the end of the input has been reached
+     */
+    fun tryRead(expected: Char): Boolean
+
+    /**
+     * Reads an identifier.
+     *
+     * The lexer will be positioned at the first non-identifier character following the identifier.
+     *
+     * @return the read identifier, which may be an empty string
+     */
+    fun readIdentifier(): String
+
+    /**
+     * Reads the contents of a string.
+     *
+     * The lexer must be positioned at the opening `"` character of the string,
+     * and will be positioned at the character following the closing `"` character.
+     *
+     * @return the read string
+     */
+    fun readString(): String
+
+    /**
+     * Reads a string term.
+     *
+     * The lexer must be positioned at the opening `"` character of the string,
+     * and will be positioned at the character following the closing `"` character.
+     *
+     * @param termFactory the term factory used to build the term
+     * @param attachments the term attachments
+     * @return the read string term
+     */
+    fun readString(termFactory: TermFactory, attachments: Attachments): StringTerm
+        = termFactory.newString(readString(), attachments)
+
+    /**
+     * Reads a number (integer or real).
+     *
+     * The lexer must be positioned at the minus sign, first digit, or the decimal point of the number,
+     * and will be positioned at the character following the number.
+     * The value of the number is stored in [intValue] or [realValue].
+     *
+     * @return `true` when the number is a real; otherwise, `false` when it is an integer
+     */
+    fun readNumber(): Boolean
+
+    /**
+     * Reads an escape sequence in a string, and appends the character it represents.
+     *
+     * The lexer must be positioned at the character following the backslash,
+     * and will be positioned at the character following the escape sequence.
+     *
+     * @param sb the string builder to append to
+     */
+    fun readEscapeSequence(sb: StringBuilder) {
+        when (val ch = read()) {
+            'n' -> sb.append('\n')
+            'r' -> sb.append('\r')
+            'f' -> sb.append('\u000C')
+            't' -> sb.append('\t')
+            '\\' -> sb.append('\\')
+            '\'' -> sb.append('\'')
+            '"' -> sb.append('"')
+            'u' -> sb.appendCodePoint(readEscapedHexUnicode(4, 4))
+            'U' -> sb.appendCodePoint(readEscapedHexUnicode(8, 8))
+            'x' -> sb.appendCodePoint(readEscapedHexUnicode(1, 4))
+            else -> throw FormatException("Unrecognized escape sequence: '\\$ch'")
+        }
+    }
+
+    /**
+     * Reads a sequence of hexadecimal digits into a Unicode code point.
+     *
+     * @param minLength the minimum number of digits to read
+     * @param maxLength the maximum number of digits to read
+     * @return the code point
+     * @throws FormatException if there are too few digits, or the digits do not form a valid code point
+     */
+    private fun readEscapedHexUnicode(minLength: Int, maxLength: Int): Int {
+        var value = 0
+        var length = 0
+        while (length < maxLength) {
+            val digit = Character.digit(peek(), 16)
+            if (digit < 0) break
+            read()
+            // The value is checked after each digit, so it cannot overflow
+            value = value * 16 + digit
+            length += 1
+            if (!Character.isValidCodePoint(value))
+                throw FormatException("Invalid Unicode code point in character escape sequence at offset ${offset - length}.")
+        }
+        if (length < minLength)
+            throw FormatException("Expected at least $minLength digits to form a Unicode character escape sequence, found $length.")
+        return value
+    }
+
+}
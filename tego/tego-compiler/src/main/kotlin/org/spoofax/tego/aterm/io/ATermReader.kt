@@ -10,489 +10,288 @@ class ATermReader(
     private val termFactory: TermFactory
 ): TermReader {
 
-    override fun read(reader: Reader): Term? {
-        return readTerm(PushbackReader(reader, 1))
+    override fun readFromString(s: String): Term? {
+        return read(CharATermLexer(s))
     }
 
-    /**
-     * Reads a term from a reader.
-     *
-     * @param reader the reader to read from
-     * @return the read term; or `null` if there was no term to be read
-     */
-    private fun readTerm(reader: PushbackReader): Term? {
-        if (!readWhitespace(reader)) return null
-
-        val ch: Char = reader.peekOrThrow()
-
-        return when {
-            ch == '[' -> readList(reader)
-            ch == '(' -> readTuple(reader)
-            ch == '"' -> readString(reader)
-            ch == '<' -> readPlaceholder(reader)
-            ch == '.' -> readNumber(reader)
-            ch.isDigit() -> readNumber(reader)
-            ch.isLetter() -> readAppl(reader)
-            else -> throw FormatException("Invalid term starting with $ch.")
-        }
-    }
-
-    /**
-     * Reads a list term.
-     *
-     * The reader must be positioned at the opening `[` character
-     * of the list, and will be positioned at the character following the closing `]`
-     * character of the list or the closing `}` bracket of its annotations (if any).
-     *
-     * @param reader the reader to read from
-     * @return the read term
-     */
-    private fun readList(reader: PushbackReader): ListTerm = reader.run {
-        readExpected("list", '[')
-
-        val terms = readTermSequence(reader, ',', ']')
-        val annotations = readAnnotations(reader)
-
-        return termFactory.newList(terms, annotations)
-    }
-
-    /**
-     * Reads a tuple.
-     *
-     * The reader must be positioned at the opening `(` character
-     * of the tuple, and will be positioned at the character following the closing `)`
-     * character of the tuple or the closing `}` bracket of its annotations (if any).
-     *
-     * @param reader the reader to read from
-     * @return the read term
-     */
-    private fun readTuple(reader: PushbackReader): ApplTerm {
-        return readAppl(reader)
+    override fun read(reader: Reader): Term? {
+        return read(CharATermLexer(reader))
     }
 
     /**
-     * Reads a string.
+     * Reads a term from a lexer.
      *
-     * The reader must be positioned at the opening `"` character
-     * of the string, and will be positioned at the character following the closing `"`
-     * character of the string or the closing `}` bracket of its annotations (if any).
+     * The term is read iteratively, using an explicit stack of the terms being read
+     * instead of the call stack, so that deeply nested terms can be read on threads
+     * with a small stack. The frames of the stack are reused for the terms at the same depth.
      *
-     * @param reader the reader to read from
-     * @return the read term
+     * @param lexer the lexer to read from
+     * @return the read term; or `null` if there was no term to be read
      */
-    private fun readString(reader: PushbackReader): StringTerm = reader.run {
-        readExpected("string", '"')
-
-        val sb = StringBuilder()
-        var ch = readOrThrow()
-
-        while (ch != '"') {
-            if (ch == '\\')
-            {
-                ch = readOrThrow()
-                when (ch) {
-                    'n' -> sb.append('\n')
-                    'r' -> sb.append('\r')
-                    'f' -> sb.append('\u000C')
-                    't' -> sb.append('\t')
-                    '\\' -> sb.append('\\')
-                    '\'' -> sb.append('\'')
-                    '"' -> sb.append('"')
-                    'u' -> sb.append(readEscapedHexUnicode(reader, 4, 4))
-                    'U' -> sb.append(readEscapedHexUnicode(reader, 8, 8))
-                    'x' -> sb.append(readEscapedHexUnicode(reader, 1, 4))
-                    else -> throw FormatException("Unrecognized escape sequence: '\\$ch'")
+    internal fun read(lexer: ATermLexer): Term? {
+        var ch = lexer.skipWhitespace()
+        if (ch == ATermLexer.EOF) return null
+
+        val stack = ParseStack()
+        while (true) {
+            // The lexer is positioned at the first character of a term
+            var term = startTerm(lexer, ch.toChar(), stack)
+            while (true) {
+                val frame = stack.top
+                if (term == null) {
+                    // A term sequence was opened
+                    val open = frame!!
+                    ch = lexer.skipWhitespace()
+                    if (ch == open.end.code && (open.kind != Frame.PLACEHOLDER || open.inAnnotations)) {
+                        lexer.read()
+                        term = endTermSequence(lexer, open, stack)
+                        continue
+                    }
+                    if (ch == ATermLexer.EOF) throw FormatException("Unexpected end of stream.")
+                    break
                 }
-            } else {
-                sb.append(ch)
+                if (frame == null) return term
+
+                // A term was completed
+                frame.add(term)
+                lexer.skipWhitespace()
+                val separator = lexer.read()
+                if (separator == frame.end) {
+                    term = endTermSequence(lexer, frame, stack)
+                    continue
+                }
+                if (separator != ',' || (frame.kind == Frame.PLACEHOLDER && !frame.inAnnotations)) throw FormatException("Term sequence didn't end with ${frame.end}: $separator")
+                ch = lexer.skipWhitespace()
+                if (ch == ATermLexer.EOF) throw FormatException("Unexpected end of stream.")
+                break
             }
-
-            ch = readOrThrow()
         }
-
-        val annotations = readAnnotations(reader)
-        return termFactory.newString(sb.toString(), annotations)
     }
 
     /**
-     * Reads a sequence of decimal digits into a Unicode character.
+     * Starts reading a term.
      *
-     * @param reader the reader to read from
-     * @param minLength the minimum length of the digits to read
-     * @param maxLength the maximum length of the digits to read
-     */
-    private fun readEscapedDecUnicode(reader: PushbackReader, minLength: Int, maxLength: Int): Char {
-        return readEscapedUnicode(reader, { it.isDecDigit() }, 10, minLength, maxLength)
-    }
-
-    /**
-     * Reads a sequence of hexadecimal digits into a Unicode character.
+     * Terms without subterms and annotations are read completely. Otherwise,
+     * a frame is pushed for the term and the lexer is positioned after the opening character
+     * of the subterms or annotations of the term.
      *
-     * @param reader the reader to read from
-     * @param minLength the minimum length of the digits to read
-     * @param maxLength the maximum length of the digits to read
+     * @param lexer the lexer to read from, positioned at the first character of the term
+     * @param ch the first character of the term
+     * @param stack the parse stack
+     * @return the read term; or `null` if a frame was pushed
      */
-    private fun readEscapedHexUnicode(reader: PushbackReader, minLength: Int, maxLength: Int): Char {
-        return readEscapedUnicode(reader, { it.isHexDigit() }, 16, minLength, maxLength)
-    }
-
-    /**
-     * Reads a sequence of digits into a Unicode character.
-     *
-     * @param reader the reader to read from
-     * @param validator the character validator function
-     * @param radix the radix of the number to read
-     * @param minLength the minimum length of the digits to read
-     * @param maxLength the maximum length of the digits to read
-     */
-    private fun readEscapedUnicode(reader: PushbackReader, validator: (Char) -> Boolean, radix: Int, minLength: Int, maxLength: Int): Char {
-        val sb = StringBuilder()
-        for (i in 0 until maxLength) {
-            val ch = reader.peekOrThrow()
-            if (!validator(ch)) break
-            sb.append(ch)
+    private fun startTerm(lexer: ATermLexer, ch: Char, stack: ParseStack): Term? {
+        return when {
+            ch == '[' -> {
+                lexer.readExpected('[', "list")
+                stack.push(Frame.LIST, ']', null)
+                null
+            }
+            ch == '(' -> {
+                lexer.readExpected('(', "tuple")
+                stack.push(Frame.APPL, ')', "")
+                null
+            }
+            ch == '<' -> {
+                lexer.readExpected('<', "placeholder start")
+                stack.push(Frame.PLACEHOLDER, '>', null)
+                null
+            }
+            ch == '"' -> startValue(lexer, Frame.STRING, lexer.readString(termFactory, Attachments.empty()), stack)
+            ch == '.' || ch in '0'..'9' || (ch == '-' && isNumberStart(lexer.peek(1))) -> {
+                val isReal = lexer.readNumber()
+                if (isReal) startValue(lexer, Frame.REAL, lexer.realValue, stack)
+                else startValue(lexer, Frame.INT, lexer.intValue, stack)
+            }
+            ch.isLetter() -> {
+                val constructor = lexer.readIdentifier()
+                if (lexer.skipWhitespace() == '('.code) {
+                    lexer.readExpected('(')
+                    stack.push(Frame.APPL, ')', constructor)
+                    null
+                } else {
+                    startValue(lexer, Frame.APPL, constructor, stack)
+                }
+            }
+            else -> throw FormatException("Invalid term starting with $ch.")
         }
-
-        if (sb.length < minLength)
-            throw FormatException("Expected at least $minLength digits to form a Unicode character escape sequence, found ${sb.length}.")
-        val result = sb.toString().toInt(radix)
-        return result.toChar()
     }
 
     /**
-     * Reads a placeholder.
-     *
-     * The reader must be positioned at the opening `<` character
-     * of the placeholder, and will be positioned at the character following the closing `>`
-     * character of the placeholder or the closing `}` bracket of its annotations (if any).
+     * Determines whether the character following a minus sign starts a number,
+     * instead of an identifier.
      *
-     * @param reader the reader to read from
-     * @return the read term
+     * @param next the character following the minus sign; or [ATermLexer.EOF]
      */
-    private fun readPlaceholder(reader: PushbackReader): Term = reader.run {
-        readExpected("placeholder start", '<')
-        val template = readTerm(reader) ?: throw FormatException("Unexpected end of stream.")
-        readWhitespace(reader)
-        readExpected("placeholder end", '>')
-        val annotations = readAnnotations(reader)
-        return termFactory.newPlaceholder(template, annotations)
-    }
+    private fun isNumberStart(next: Int): Boolean
+        = ATermLexer.isDigit(next) || next == '.'.code
 
     /**
-     * Reads a number (integer or real).
-     *
-     * The reader must be positioned at the opening digit
-     * of the number, and will be positioned at the character following the number
-     * or the closing `}` bracket of its annotations (if any).
-     *
-     * @param reader the reader to read from
-     * @return the read term
+     * Completes a term without subterms, or starts reading its annotations.
+     *
+     * @param lexer the lexer to read from, positioned after the term
+     * @param kind the kind of term
+     * @param value the value of the term, the constructor name for constructor applications,
+     * or the term without attachments for strings
+     * @param stack the parse stack
+     * @return the read term; or `null` if a frame was pushed for its annotations
      */
-    private fun readNumber(reader: PushbackReader): Term = reader.run {
-        val ints: String = readDigits(reader)
-        var frac = ""
-        var exp = ""
-
-        if (tryPeek('.') != null) {
-            readExpected('.')
-            frac = readDigits(reader)
-        }
-        if (tryPeek('e', 'E') != null) {
-            readExpected('e', 'E')
-            exp = readDigits(reader)
-        }
-
-        if (ints.isEmpty() && frac.isEmpty())
-            throw FormatException("Expected a number, got something else.")
-
-        val annotations = readAnnotations(reader)
-
-        return if (frac.isNotEmpty() || exp.isNotEmpty()) {
-            val value = (
-                    (ints.ifBlank { "0" }) + "." +
-                    (frac.ifBlank { "0" }) + "e" +
-                    (exp.ifBlank { "0" })
-            ).toDouble()
-            termFactory.newReal(value, annotations)
-        } else {
-            val value = ints.toInt()
-            termFactory.newInt(value, annotations)
-        }
+    private fun startValue(lexer: ATermLexer, kind: Int, value: Any?, stack: ParseStack): Term? {
+        if (!lexer.tryRead('{')) return build(kind, value, emptyList(), emptyList())
+        stack.push(kind, '}', value).startAnnotations()
+        return null
     }
 
     /**
-     * Reads a constructor application.
+     * Ends the current term sequence of a frame. If the sequence contains the subterms of the term,
+     * reading continues with the annotations of the term, if any.
      *
-     * The reader must be positioned at the opening character
-     * of the constructor name, and will be positioned at the character following the closing `)`
-     * character of the constructor application or the closing `}` bracket of its annotations (if any).
+     * The closing character of the sequence must have been consumed.
      *
-     * @param reader the reader to read from
-     * @return the read term
+     * @param lexer the lexer to read from
+     * @param frame the frame at the top of the stack
+     * @param stack the parse stack
+     * @return the read term; or `null` if reading continues with the annotations of the term
      */
-    private fun readAppl(reader: PushbackReader): ApplTerm = reader.run {
-        val constructor = readIdentifier(reader)
-        readWhitespace(reader)
-        val ch = peekOrThrow()
-        val terms: List<Term> = if (ch == '(') {
-            readExpected('(')
-            readTermSequence(reader, ',', ')')
-        } else {
-            emptyList()
+    private fun endTermSequence(lexer: ATermLexer, frame: Frame, stack: ParseStack): Term? {
+        if (!frame.inAnnotations && lexer.tryRead('{')) {
+            frame.startAnnotations()
+            return null
         }
-
-        val annotations = readAnnotations(reader)
-        return termFactory.newAppl(constructor, terms, annotations)
-    }
-
-    /**
-     * Reads annotations.
-     *
-     * @param reader the reader to read from
-     * @return a list of annotations
-     */
-    private fun readAnnotations(reader: PushbackReader): List<Term> = reader.run {
-        if (tryPeek('{') == null) return emptyList()
-        readExpected('{')
-        return readTermSequence(reader, ',', '}')
+        stack.pop()
+        return build(frame.kind, frame.value, frame.subterms(), frame.annotations())
     }
 
     /**
-     * Reads an identifier.
-     *
-     * The reader must be positioned at the first character of the identifier,
-     * and will be positioned at the first non-identifier character following the identifier.
-     *
-     * @param reader the reader to read from
-     * @return the read identifier, which may be an empty string
+     * Builds a term.
+     *
+     * @param kind the kind of term
+     * @param value the value of the term, the constructor name for constructor applications,
+     * or the term without attachments for strings
+     * @param subterms the subterms of the term
+     * @param annotations the annotations of the term
+     * @return the built term
      */
-    private fun readIdentifier(reader: PushbackReader): String = reader.run {
-        val sb = StringBuilder()
-
-        var ch = peekOrThrow()
-        if (isValidIdentifierFirstChar(ch)) {
-            ch = reader.readOrThrow()
-            sb.append(ch)
-
-            while (tryPeek { isValidIdentifierChar(it) } != null) {
-                ch = readOrThrow()
-                sb.append(ch)
-            }
+    private fun build(kind: Int, value: Any?, subterms: List<Term>, annotations: List<Term>): Term {
+        return when (kind) {
+            Frame.APPL -> termFactory.newAppl(value as String, subterms, annotations)
+            Frame.LIST -> termFactory.newList(subterms, annotations)
+            Frame.PLACEHOLDER -> termFactory.newPlaceholder(subterms.single(), annotations)
+            Frame.STRING -> if (annotations.isEmpty()) value as StringTerm
+                            else termFactory.withAttachments(value as StringTerm, Attachments.of(Annotations(annotations)))
+            Frame.INT -> termFactory.newInt(value as Int, annotations)
+            Frame.REAL -> termFactory.newReal(value as Double, annotations)
+            else -> throw IllegalStateException("Unexpected kind: $kind")
         }
-
-        return sb.toString()
     }
 
     /**
-     * Reads a sequence of digits.
-     *
-     * The reader must be positioned at the first digit,
-     * and will be positioned at the first non-digit character following the digits.
-     *
-     * @param reader the reader to read from
-     * @return the read numbers, which may be an empty string
+     * A stack of the terms whose subterms or annotations are being read.
      */
-    private fun readDigits(reader: PushbackReader): String = reader.run {
-        val sb = StringBuilder()
-
-        var ch = peekOrThrow()
-        while (ch.isDigit()) {
-            ch = reader.readOrThrow()
-            sb.append(ch)
-
-            ch = reader.peek() ?: break
+    private class ParseStack {
+        /** The frames, of which the first [depth] are in use. */
+        private val frames = ArrayList<Frame>()
+        /** The number of frames in use. */
+        private var depth = 0
+
+        /** The frame at the top of the stack; or `null` if the stack is empty. */
+        val top: Frame? get() = if (depth > 0) frames[depth - 1] else null
+
+        /**
+         * Pushes a frame on the stack.
+         *
+         * @param kind the kind of term
+         * @param end the closing character of the subterms
+         * @param value the value of the term, or the constructor name for constructor applications
+         * @return the pushed frame
+         */
+        fun push(kind: Int, end: Char, value: Any?): Frame {
+            if (depth == frames.size) frames.add(Frame())
+            val frame = frames[depth++]
+            frame.reset(kind, end, value)
+            return frame
         }
 
-        return sb.toString()
-    }
-
-    /**
-     * Reads a sequence of terms.
-     *
-     * The [end] character is also consumed.
-     *
-     * @param reader the reader to read from
-     * @param separator the separator character
-     * @param end the end character
-     * @return the read terms
-     */
-    private fun readTermSequence(reader: PushbackReader, separator: Char, end: Char): List<Term> = reader.run {
-        readWhitespace(reader)
-
-        var ch = peekOrThrow()
-        if (ch == end) {
-            readExpected(end)
-            return emptyList()
+        /**
+         * Pops the frame at the top of the stack.
+         */
+        fun pop() {
+            depth -= 1
         }
-
-        val terms = mutableListOf<Term>()
-        do {
-            val term = readTerm(reader) ?: throw FormatException("Unexpected end of stream.")
-            terms.add(term)
-
-            readWhitespace(reader)
-            ch = readOrThrow()
-        } while (ch == separator)
-
-        if (ch != end)
-            throw FormatException("Tern sequence didn't end with $end: $ch")
-
-        return terms
     }
 
     /**
-     * Reads whitespace.
-     *
-     * Reads any whitespace until there is no more whitespace to read.
-     * The reader will be positioned at a non-whitespace character
-     * or the end of the stream.
-     *
-     * @param reader the reader to read from
-     * @return `true` when there is more to read;
-     * otherwise, `false` when the end of the stream has been reached
+     * A term whose subterms or annotations are being read.
      */
-    private fun readWhitespace(reader: PushbackReader): Boolean {
-        var ch: Char = reader.peek() ?: return false
-
-        while (ch.isWhitespace()) {
-            // Consume the character
-            reader.read()
-
-            // Peek the next character
-            ch = reader.peek() ?: return false
+    private class Frame {
+        companion object {
+            const val APPL = 0
+            const val LIST = 1
+            const val PLACEHOLDER = 2
+            const val STRING = 3
+            const val INT = 4
+            const val REAL = 5
         }
-        return true
-    }
-
-    /**
-     * Determines whether the character is valid
-     * as the first character of an identifier.
-     */
-    private fun isValidIdentifierFirstChar(ch: Char): Boolean {
-        return ch.isLetter() || ch in arrayOf('_', '-', '+', '*', '$')
-    }
-
-    /**
-     * Determines whether the character is valid
-     * as a character of an identifier.
-     */
-    private fun isValidIdentifierChar(ch: Char): Boolean {
-        return ch.isLetterOrDigit() || ch in arrayOf('_', '-', '+', '*', '$')
-    }
-
-    /**
-     * Peeks a single character.
-     *
-     * @return the read character;
-     * or `null` when the end of the stream has been reached
-     */
-    private fun PushbackReader.peek(): Char? {
-        val ch = this.read()
-        if (ch == -1) return null
-        this.unread(ch)
-        return ch.toChar()
-    }
-
-    /**
-     * Peeks a single character,
-     * or throws when the end of the stream has been reached.
-     *
-     * @return the read character
-     */
-    private fun PushbackReader.peekOrThrow(): Char {
-        return this.peek() ?: throw FormatException("Unexpected end of file.")
-    }
 
-    /**
-     * Reads a single character,
-     * or throws when the end of the stream has been reached.
-     *
-     * @return the read character
-     */
-    private fun PushbackReader.readOrThrow(): Char {
-        val ch = this.read()
-        if (ch == -1) throw FormatException("Unexpected end of file.")
-        return ch.toChar()
-    }
-
-    /**
-     * Expects to read a specific character from the reader;
-     * or throws an exception when the read character was different,
-     * or when the end of the stream has been reached.
-     *
-     * @param expected the expected character
-     * @return the read character
-     */
-    private fun PushbackReader.readExpected(vararg expected: Char): Char {
-        return readExpected(null) { ch -> ch in expected }
-    }
+        /** The kind of term. */
+        var kind: Int = APPL
+            private set
+        /** The closing character of the current term sequence. */
+        var end: Char = ')'
+            private set
+        /** The value of the term, the constructor name for constructor applications, or the term for strings. */
+        var value: Any? = null
+            private set
+        /** Whether the current term sequence contains the annotations of the term. */
+        var inAnnotations: Boolean = false
+            private set
+        /** The subterms that have been read; or `null` when there are none. */
+        private var subterms: ArrayList<Term>? = null
+        /** The annotations that have been read; or `null` when there are none. */
+        private var annotations: ArrayList<Term>? = null
+
+        /**
+         * Resets the frame for a new term.
+         *
+         * @param kind the kind of term
+         * @param end the closing character of the subterms
+         * @param value the value of the term, or the constructor name for constructor applications
+         */
+        fun reset(kind: Int, end: Char, value: Any?) {
+            this.kind = kind
+            this.end = end
+            this.value = value
+            this.inAnnotations = false
+            this.subterms = null
+            this.annotations = null
+        }
 
-    /**
-     * Expects to read a specific character from the reader;
-     * or throws an exception when the read character was different,
-     * or when the end of the stream has been reached.
-     *
-     * @param expectedName the name of the expected character; or `null`
-     * @param expected the expected character
-     * @return the read character
-     */
-    private fun PushbackReader.readExpected(expectedName: String? = null, vararg expected: Char): Char {
-        return readExpected(expectedName) { ch -> ch in expected }
-    }
+        /**
+         * Starts the term sequence of the annotations of the term.
+         */
+        fun startAnnotations() {
+            end = '}'
+            inAnnotations = true
+        }
 
-    /**
-     * Expects to read a character from the reader that matches the given predicate;
-     * or throws an exception when the read character was different,
-     * or when the end of the stream has been reached.
-     *
-     * @param expectedName the name of the expected character; or `null`
-     * @param predicate the predicate that tests the character
-     * @return the read character
-     */
-    private fun PushbackReader.readExpected(expectedName: String? = null, predicate: (Char) -> Boolean): Char {
-        val ch = readOrThrow()
-        if (!predicate.invoke(ch)) {
-            val message = if (expectedName != null)
-                "Expected $expectedName, got '$ch' character."
-            else
-                "Did not expect '$ch' character."
-            throw FormatException(message)
+        /**
+         * Adds a term to the current term sequence.
+         *
+         * @param term the term to add
+         */
+        fun add(term: Term) {
+            if (inAnnotations) {
+                (annotations ?: ArrayList<Term>().also { annotations = it }).add(term)
+            } else {
+                (subterms ?: ArrayList<Term>().also { subterms = it }).add(term)
+            }
         }
-        return ch
-    }
 
-    /**
-     * Tries to peek to see if the given character matches the next character.
-     *
-     * @param expected the expected character
-     * @return the next character; or `null` when the character was different
-     */
-    private fun PushbackReader.tryPeek(vararg expected: Char): Char? {
-        return tryPeek { ch -> ch in expected }
-    }
+        /** Gets the subterms that have been read. */
+        fun subterms(): List<Term> = subterms ?: emptyList()
 
-    /**
-     * Tries to peek to see if the predicate is true for the next character.
-     *
-     * @param predicate the predicate
-     * @return the next character; or `null` when the predicate failed
-     */
-    private fun PushbackReader.tryPeek(predicate: (Char) -> Boolean): Char? {
-        val ch = peek() ?: return null
-        return if (predicate(ch)) ch else null
+        /** Gets the annotations that have been read. */
+        fun annotations(): List<Term> = annotations ?: emptyList()
     }
 
-    /**
-     * Determines whether the digit is a decimal digit.
-     */
-    private fun Char.isDecDigit()
-        = this in arrayOf('0', '1', '2', '3', '4', '5', '6', '7', '8', '9')
-
-    /**
-     * Determines whether the digit is a hexadecimal digit.
-     */
-    private fun Char.isHexDigit()
-        = this in arrayOf('0', '1', '2', '3', '4', '5', '6', '7', '8', '9',
-        'a', 'b', 'c', 'd', 'e', 'f', 'A', 'B', 'C', 'D', 'E', 'F')
 }
-
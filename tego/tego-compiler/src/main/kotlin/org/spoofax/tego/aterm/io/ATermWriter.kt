@@ -0,0 +1,202 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.*
+import java.io.Writer
+
+/**
+ * An ATerm writer.
+ *
+ * Terms are written iteratively, so deeply nested terms do not overflow the call stack.
+ * The output is written in blocks to the writer, without building the whole term as a string.
+ *
+ * Only the annotations of the terms are written, as other attachments cannot be read back.
+ * Blobs cannot be written, nor can reals that are not finite.
+ */
+class ATermWriter : TermWriter {
+
+    companion object {
+        /** The size of the output buffer, in characters. */
+        private const val BUFFER_SIZE = 8 * 1024
+    }
+
+    override fun write(term: Term, writer: Writer): Term {
+        val output = Output(writer)
+        val stack = ArrayList<Frame>()
+
+        enter(term, output, stack)
+        while (stack.isNotEmpty()) {
+            val frame = stack[stack.size - 1]
+            if (frame.iterator.hasNext()) {
+                if (frame.hasElements) output.write(", ")
+                frame.hasElements = true
+                enter(frame.iterator.next(), output, stack)
+            } else {
+                stack.removeAt(stack.size - 1)
+                output.write(frame.close)
+                // The annotations of the term follow its closing character
+                if (frame.term != null) exit(frame.term, output, stack)
+            }
+        }
+
+        output.flush()
+        return term
+    }
+
+    /**
+     * Starts writing a term.
+     *
+     * Terms with subterms push a frame onto the stack, to write their subterms.
+     * Otherwise, the whole term is written, and a frame may be pushed to write its annotations.
+     *
+     * @param term the term to write
+     * @param output the output to write to
+     * @param stack the stack of terms being written
+     */
+    private fun enter(term: Term, output: Output, stack: MutableList<Frame>) {
+        when (term) {
+            is ApplTerm -> {
+                output.write(term.constructor)
+                output.write('(')
+                stack.add(Frame(term, term.args.iterator(), ')'))
+            }
+            is ListTerm -> {
+                output.write('[')
+                stack.add(Frame(term, term.elements.iterator(), ']'))
+            }
+            is PlaceholderTerm -> {
+                output.write('<')
+                stack.add(Frame(term, listOf(term.template).iterator(), '>'))
+            }
+            is StringTerm -> {
+                writeString(term.value, output)
+                exit(term, output, stack)
+            }
+            is IntTerm -> {
+                output.write(term.value.toString())
+                exit(term, output, stack)
+            }
+            is RealTerm -> {
+                require(term.value.isFinite()) { "Cannot write a real that is not finite: ${term.value}" }
+                output.write(term.value.toString())
+                exit(term, output, stack)
+            }
+            is TermVar -> {
+                output.write(term.name)
+                exit(term, output, stack)
+            }
+            is BlobTerm -> throw IllegalArgumentException("Cannot write a blob: $term")
+            else -> throw IllegalArgumentException("Unsupported term: $term")
+        }
+    }
+
+    /**
+     * Finishes writing a term, by starting to write its annotations (if any).
+     *
+     * @param term the term that was written
+     * @param output the output to write to
+     * @param stack the stack of terms being written
+     */
+    private fun exit(term: Term, output: Output, stack: MutableList<Frame>) {
+        val annotations = term.attachments.get(Annotations::class.java)
+        if (annotations == null || annotations.isEmpty()) return
+        output.write('{')
+        stack.add(Frame(null, annotations.iterator(), '}'))
+    }
+
+    /**
+     * Writes a string literal, escaping the characters that cannot occur in it literally.
+     *
+     * @param value the value of the string
+     * @param output the output to write to
+     */
+    private fun writeString(value: String, output: Output) {
+        output.write('"')
+        var start = 0
+        for (i in value.indices) {
+            val escaped = when (value[i]) {
+                '"' -> "\\\""
+                '\\' -> "\\\\"
+                '\n' -> "\\n"
+                '\r' -> "\\r"
+                '\t' -> "\\t"
+                '\u000C' -> "\\f"
+                else -> continue
+            }
+            output.write(value, start, i - start)
+            output.write(escaped)
+            start = i + 1
+        }
+        output.write(value, start, value.length - start)
+        output.write('"')
+    }
+
+    /**
+     * A term whose subterms or annotations are being written.
+     *
+     * @property term the term whose subterms are being written; or `null` for annotations
+     * @property iterator the iterator over the subterms or annotations that remain to be written
+     * @property close the character that closes the subterms or annotations
+     */
+    private class Frame(
+        val term: Term?,
+        val iterator: Iterator<Term>,
+        val close: Char,
+    ) {
+        /** Whether any subterms or annotations have been written. */
+        var hasElements: Boolean = false
+    }
+
+    /**
+     * Buffers the output, so that the (often synchronized) writer
+     * is only called for each block of characters.
+     *
+     * @property writer the writer to write to
+     */
+    private class Output(
+        private val writer: Writer,
+    ) {
+        /** The buffer. */
+        private val buffer = CharArray(BUFFER_SIZE)
+        /** The number of characters in the buffer. */
+        private var length = 0
+
+        /**
+         * Writes a character.
+         */
+        fun write(ch: Char) {
+            if (length == buffer.size) flush()
+            buffer[length++] = ch
+        }
+
+        /**
+         * Writes a string.
+         */
+        fun write(s: String) {
+            write(s, 0, s.length)
+        }
+
+        /**
+         * Writes part of a string.
+         */
+        fun write(s: String, offset: Int, count: Int) {
+            if (count > buffer.size - length) {
+                flush()
+                if (count > buffer.size) {
+                    writer.write(s, offset, count)
+                    return
+                }
+            }
+            s.toCharArray(buffer, length, offset, offset + count)
+            length += count
+        }
+
+        /**
+         * Writes the buffered characters to the writer.
+         */
+        fun flush() {
+            writer.write(buffer, 0, length)
+            length = 0
+        }
+    }
+
+}
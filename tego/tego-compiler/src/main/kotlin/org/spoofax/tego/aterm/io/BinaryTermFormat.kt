@@ -0,0 +1,56 @@
+package org.spoofax.tego.aterm.io
+
+/**
+ * Constants of the binary term format.
+ *
+ * A binary term file starts with the [MAGIC] bytes and the format [VERSION],
+ * followed by a single term node. Each node starts with a varint tag,
+ * whose lower four bits are the kind of node ([APPL], [LIST], etc.)
+ * and whose upper bits are flags ([ANNOTATED], [NEW_SYMBOL]).
+ *
+ * - [REF] is followed by the varint index of an earlier node with subterms, in post-order.
+ * - [APPL] is followed by a symbol, the varint arity, and the argument nodes.
+ * - [LIST] is followed by the varint size and the element nodes.
+ * - [STRING] and [VAR] are followed by a symbol.
+ * - [INT] is followed by the zigzag varint value.
+ * - [REAL] is followed by the eight bytes of the IEEE 754 value, big-endian.
+ * - [PLACEHOLDER] is followed by the template node.
+ *
+ * A symbol is either a varint index into the symbol table; or, when the tag has the [NEW_SYMBOL] flag,
+ * the varint length and UTF-8 bytes of a new symbol that is added to the symbol table.
+ * When the tag has the [ANNOTATED] flag, the node is followed by the varint number of annotations
+ * and the annotation nodes.
+ *
+ * Nodes with subterms ([APPL], [LIST], [PLACEHOLDER]) are numbered in the order in which they end,
+ * and a term that is equal to an earlier such node is written as a [REF] to it.
+ */
+internal object BinaryTermFormat {
+    /** The magic bytes that start a binary term file. */
+    val MAGIC = byteArrayOf('T'.code.toByte(), 'G'.code.toByte(), 'B'.code.toByte(), 'T'.code.toByte())
+    /** The version of the format. */
+    const val VERSION = 1
+
+    /** A back-reference to an earlier node. */
+    const val REF = 0
+    /** A constructor application. */
+    const val APPL = 1
+    /** A list. */
+    const val LIST = 2
+    /** A string. */
+    const val STRING = 3
+    /** An integer. */
+    const val INT = 4
+    /** A real. */
+    const val REAL = 5
+    /** A placeholder. */
+    const val PLACEHOLDER = 6
+    /** A term variable. */
+    const val VAR = 7
+
+    /** The mask of the kind of node in a tag. */
+    const val KIND_MASK = 0x0F
+    /** The flag of a tag indicating that the node has annotations. */
+    const val ANNOTATED = 0x10
+    /** The flag of a tag indicating that the symbol of the node is new. */
+    const val NEW_SYMBOL = 0x20
+}
@@ -0,0 +1,347 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.*
+import org.spoofax.tego.aterm.io.BinaryTermFormat.ANNOTATED
+import org.spoofax.tego.aterm.io.BinaryTermFormat.APPL
+import org.spoofax.tego.aterm.io.BinaryTermFormat.INT
+import org.spoofax.tego.aterm.io.BinaryTermFormat.KIND_MASK
+import org.spoofax.tego.aterm.io.BinaryTermFormat.LIST
+import org.spoofax.tego.aterm.io.BinaryTermFormat.NEW_SYMBOL
+import org.spoofax.tego.aterm.io.BinaryTermFormat.PLACEHOLDER
+import org.spoofax.tego.aterm.io.BinaryTermFormat.REAL
+import org.spoofax.tego.aterm.io.BinaryTermFormat.REF
+import org.spoofax.tego.aterm.io.BinaryTermFormat.STRING
+import org.spoofax.tego.aterm.io.BinaryTermFormat.VAR
+import java.io.ByteArrayInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.jvm.Throws
+
+/**
+ * Reads terms in the binary term format, described in [BinaryTermFormat].
+ *
+ * Repeated subterms are read once, and shared between their occurrences.
+ *
+ * @property termFactory the term factory to use
+ */
+class BinaryTermReader(
+    private val termFactory: TermFactory,
+) {
+
+    /**
+     * Reads a term from a byte array.
+     *
+     * @param bytes the byte array to read from
+     * @return the read term
+     */
+    @Throws(IOException::class)
+    fun readFromBytes(bytes: ByteArray): Term
+        = read(ByteArrayInputStream(bytes))
+
+    /**
+     * Reads a term from a path.
+     *
+     * @param path the path to read from
+     * @return the read term
+     */
+    @Throws(IOException::class)
+    fun read(path: Path): Term
+        = Files.newInputStream(path).use { read(it) }
+
+    /**
+     * Reads a term from the specified input stream.
+     *
+     * @param stream the input stream to read from
+     * @return the read term
+     */
+    @Throws(IOException::class)
+    fun read(stream: InputStream): Term {
+        val input = Input(stream)
+        for (b in BinaryTermFormat.MAGIC) {
+            if (input.readByte() != b) throw FormatException("Not a binary term.")
+        }
+        val version = input.readVarint()
+        if (version != BinaryTermFormat.VERSION) throw FormatException("Unsupported binary term format version: $version")
+        return input.readTerm()
+    }
+
+    /**
+     * The input of a single term.
+     *
+     * @property stream the input stream to read from
+     */
+    private inner class Input(
+        private val stream: InputStream,
+    ) {
+        /** The buffer. */
+        private var buffer = ByteArray(8 * 1024)
+        /** The index of the next byte in the buffer. */
+        private var position = 0
+        /** The number of bytes in the buffer. */
+        private var limit = 0
+        /** The symbols that have been read. */
+        private val symbols = ArrayList<String>()
+        /** The terms with subterms that have been read. */
+        private val terms = ArrayList<Term>()
+
+        /**
+         * Reads a term node.
+         *
+         * The term is read iteratively, using an explicit stack,
+         * so that deeply nested terms do not overflow the call stack.
+         *
+         * @return the read term
+         */
+        fun readTerm(): Term {
+            val stack = ArrayList<Frame>()
+            while (true) {
+                var term = startTerm(stack)
+                while (term != null) {
+                    if (stack.isEmpty()) return term
+                    val frame = stack[stack.size - 1]
+                    frame.add(term)
+                    term = endTerm(frame, stack)
+                }
+            }
+        }
+
+        /**
+         * Starts reading a term node.
+         *
+         * Back-references and nodes without subterms and annotations are read completely.
+         * Otherwise, a frame is pushed for the node, to read its subterms and annotations.
+         *
+         * @param stack the stack of nodes being read
+         * @return the read term; or `null` if a frame was pushed
+         */
+        private fun startTerm(stack: MutableList<Frame>): Term? {
+            val tag = readVarint()
+            val frame = when (tag and KIND_MASK) {
+                REF -> {
+                    val index = readVarint()
+                    if (index >= terms.size) throw FormatException("Invalid back-reference: $index")
+                    return terms[index]
+                }
+                APPL -> {
+                    val constructor = readSymbol(tag)
+                    Frame(tag, constructor, readVarint())
+                }
+                LIST -> Frame(tag, null, readVarint())
+                PLACEHOLDER -> Frame(tag, null, 1)
+                STRING -> Frame(tag, readSymbol(tag), 0)
+                VAR -> Frame(tag, readSymbol(tag), 0)
+                INT -> {
+                    val encoded = readVarint()
+                    Frame(tag, (encoded ushr 1) xor -(encoded and 1), 0)
+                }
+                REAL -> Frame(tag, java.lang.Double.longBitsToDouble(readLong()), 0)
+                else -> throw FormatException("Unknown node kind: ${tag and KIND_MASK}")
+            }
+            stack.add(frame)
+            return endTerm(frame, stack)
+        }
+
+        /**
+         * Ends reading the term node of a frame, if all its subterms and annotations have been read.
+         * Otherwise, reading continues with its next subterm or annotation.
+         *
+         * @param frame the frame at the top of the stack
+         * @param stack the stack of nodes being read
+         * @return the read term; or `null` if the node has more subterms or annotations
+         */
+        private fun endTerm(frame: Frame, stack: MutableList<Frame>): Term? {
+            if (frame.remaining > 0) return null
+            if (!frame.inAnnotations && frame.tag and ANNOTATED != 0) {
+                frame.startAnnotations(readVarint())
+                if (frame.remaining > 0) return null
+            }
+            stack.removeAt(stack.size - 1)
+            return build(frame)
+        }
+
+        /**
+         * Builds the term of a frame whose subterms and annotations have been read.
+         *
+         * @param frame the frame
+         * @return the built term
+         */
+        private fun build(frame: Frame): Term {
+            val annotated = frame.tag and ANNOTATED != 0
+            val annotations = frame.annotations()
+            val term = when (frame.tag and KIND_MASK) {
+                APPL -> {
+                    val constructor = frame.value as String
+                    if (annotated) termFactory.newAppl(constructor, frame.subterms(), annotations)
+                    else termFactory.newAppl(constructor, frame.subterms())
+                }
+                LIST -> {
+                    if (annotated) termFactory.newList(frame.subterms(), annotations)
+                    else termFactory.newList(frame.subterms())
+                }
+                PLACEHOLDER -> {
+                    val template = frame.subterms().single()
+                    if (annotated) termFactory.newPlaceholder(template, annotations)
+                    else termFactory.newPlaceholder(template)
+                }
+                STRING -> {
+                    val value = frame.value as String
+                    if (annotated) termFactory.newString(value, annotations)
+                    else termFactory.newString(value)
+                }
+                VAR -> {
+                    val name = frame.value as String
+                    if (annotated) termFactory.newVar(name, annotations)
+                    else termFactory.newVar(name)
+                }
+                INT -> {
+                    val value = frame.value as Int
+                    if (annotated) termFactory.newInt(value, annotations)
+                    else termFactory.newInt(value)
+                }
+                else -> {
+                    val value = frame.value as Double
+                    if (annotated) termFactory.newReal(value, annotations)
+                    else termFactory.newReal(value)
+                }
+            }
+            if (term is ApplTerm || term is ListTerm || term is PlaceholderTerm) {
+                terms.add(term)
+            }
+            return term
+        }
+
+        /**
+         * Reads a symbol.
+         *
+         * @param tag the tag of the node, which indicates whether the symbol is new
+         * @return the symbol
+         */
+        private fun readSymbol(tag: Int): String {
+            if (tag and NEW_SYMBOL == 0) {
+                val index = readVarint()
+                if (index >= symbols.size) throw FormatException("Invalid symbol reference: $index")
+                return symbols[index]
+            }
+            val length = readVarint()
+            ensure(length)
+            val symbol = String(buffer, position, length, Charsets.UTF_8)
+            position += length
+            symbols.add(symbol)
+            return symbol
+        }
+
+        /**
+         * Reads an unsigned varint.
+         *
+         * @return the value
+         */
+        fun readVarint(): Int {
+            var value = 0
+            var shift = 0
+            while (true) {
+                val b = readByte().toInt()
+                value = value or ((b and 0x7F) shl shift)
+                if (b >= 0) return value
+                shift += 7
+                if (shift > 28) throw FormatException("Varint too long.")
+            }
+        }
+
+        /**
+         * Reads a long, big-endian.
+         *
+         * @return the value
+         */
+        private fun readLong(): Long {
+            ensure(8)
+            var value = 0L
+            for (i in 0 until 8) {
+                value = (value shl 8) or (buffer[position++].toLong() and 0xFF)
+            }
+            return value
+        }
+
+        /**
+         * Reads a byte.
+         *
+         * @return the byte
+         */
+        fun readByte(): Byte {
+            if (position == limit) ensure(1)
+            return buffer[position++]
+        }
+
+        /**
+         * Ensures that the specified number of bytes are available in the buffer.
+         *
+         * @param count the number of bytes
+         * @throws FormatException if the end of the input is reached before
+         */
+        private fun ensure(count: Int) {
+            if (limit - position >= count) return
+            if (count > buffer.size) {
+                buffer = buffer.copyOf(Integer.highestOneBit(count) * 2)
+            }
+            System.arraycopy(buffer, position, buffer, 0, limit - position)
+            limit -= position
+            position = 0
+            while (limit < count) {
+                val read = stream.read(buffer, limit, buffer.size - limit)
+                if (read < 0) throw FormatException("Unexpected end of stream.")
+                limit += read
+            }
+        }
+    }
+
+    /**
+     * A term node whose subterms or annotations are being read.
+     *
+     * @property tag the tag of the node
+     * @property value the value of the node, the constructor name for constructor applications;
+     * or `null` for lists and placeholders
+     * @property remaining the number of subterms or annotations that remain to be read
+     */
+    private class Frame(
+        val tag: Int,
+        val value: Any?,
+        var remaining: Int,
+    ) {
+        /** Whether the annotations of the node are being read. */
+        var inAnnotations: Boolean = false
+            private set
+        /** The subterms that have been read; or `null` when there are none. */
+        private var subterms: ArrayList<Term>? = if (remaining > 0) ArrayList(remaining) else null
+        /** The annotations that have been read; or `null` when there are none. */
+        private var annotations: ArrayList<Term>? = null
+
+        /**
+         * Starts reading the annotations of the node.
+         *
+         * @param count the number of annotations
+         */
+        fun startAnnotations(count: Int) {
+            inAnnotations = true
+            remaining = count
+            if (count > 0) annotations = ArrayList(count)
+        }
+
+        /**
+         * Adds a subterm or annotation that has been read.
+         *
+         * @param term the term to add
+         */
+        fun add(term: Term) {
+            if (inAnnotations) annotations!!.add(term) else subterms!!.add(term)
+            remaining -= 1
+        }
+
+        /** Gets the subterms that have been read. */
+        fun subterms(): List<Term> = subterms ?: emptyList()
+
+        /** Gets the annotations that have been read. */
+        fun annotations(): List<Term> = annotations ?: emptyList()
+    }
+
+}
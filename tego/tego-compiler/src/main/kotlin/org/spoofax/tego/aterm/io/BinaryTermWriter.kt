@@ -0,0 +1,283 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.*
+import org.spoofax.tego.aterm.io.BinaryTermFormat.ANNOTATED
+import org.spoofax.tego.aterm.io.BinaryTermFormat.APPL
+import org.spoofax.tego.aterm.io.BinaryTermFormat.INT
+import org.spoofax.tego.aterm.io.BinaryTermFormat.LIST
+import org.spoofax.tego.aterm.io.BinaryTermFormat.NEW_SYMBOL
+import org.spoofax.tego.aterm.io.BinaryTermFormat.PLACEHOLDER
+import org.spoofax.tego.aterm.io.BinaryTermFormat.REAL
+import org.spoofax.tego.aterm.io.BinaryTermFormat.REF
+import org.spoofax.tego.aterm.io.BinaryTermFormat.STRING
+import org.spoofax.tego.aterm.io.BinaryTermFormat.VAR
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.file.Files
+import java.nio.file.Path
+import kotlin.jvm.Throws
+
+/**
+ * Writes terms in the binary term format, described in [BinaryTermFormat].
+ *
+ * Constructor names and strings are written once, and referenced by their index afterwards.
+ * Repeated subterms are written once, and referenced by their index afterwards.
+ *
+ * Only the annotations of the terms are written, as other attachments cannot be read back.
+ * Blobs cannot be written.
+ */
+class BinaryTermWriter {
+
+    /**
+     * Writes a term to a byte array.
+     *
+     * @param term the term to write
+     * @return the byte array
+     */
+    fun writeToBytes(term: Term): ByteArray {
+        val stream = ByteArrayOutputStream()
+        write(term, stream)
+        return stream.toByteArray()
+    }
+
+    /**
+     * Writes a term to the specified path.
+     *
+     * @param term the term to write
+     * @param path the path to write to
+     */
+    @Throws(IOException::class)
+    fun write(term: Term, path: Path) {
+        Files.newOutputStream(path).use { write(term, it) }
+    }
+
+    /**
+     * Writes a term to the specified output stream.
+     *
+     * @param term the term to write
+     * @param stream the output stream to write to
+     */
+    @Throws(IOException::class)
+    fun write(term: Term, stream: OutputStream) {
+        val output = Output(stream)
+        output.writeBytes(BinaryTermFormat.MAGIC)
+        output.writeVarint(BinaryTermFormat.VERSION)
+        output.writeTerm(term)
+        output.flush()
+    }
+
+    /**
+     * The output of a single term.
+     *
+     * @property stream the output stream to write to
+     */
+    private class Output(
+        private val stream: OutputStream,
+    ) {
+        /** The buffer. */
+        private val buffer = ByteArray(8 * 1024)
+        /** The number of bytes in the buffer. */
+        private var length = 0
+        /** The indices of the symbols that have been written. */
+        private val symbols = HashMap<String, Int>()
+        /** The indices of the terms with subterms that have been written. */
+        private val terms = HashMap<Term, Int>()
+
+        /**
+         * Writes a term node.
+         *
+         * The term is written iteratively, using an explicit stack,
+         * so that deeply nested terms do not overflow the call stack.
+         *
+         * @param term the term to write
+         */
+        fun writeTerm(term: Term) {
+            val stack = ArrayList<Frame>()
+            enter(term, stack)
+            while (stack.isNotEmpty()) {
+                val frame = stack[stack.size - 1]
+                if (frame.iterator.hasNext()) {
+                    enter(frame.iterator.next(), stack)
+                } else {
+                    stack.removeAt(stack.size - 1)
+                    if (frame.annotations) register(frame.term) else exit(frame.term, stack)
+                }
+            }
+        }
+
+        /**
+         * Starts writing a term node.
+         *
+         * Terms with subterms push a frame onto the stack, to write their subterms.
+         * Otherwise, the whole node is written, and a frame may be pushed to write its annotations.
+         *
+         * @param term the term to write
+         * @param stack the stack of terms being written
+         */
+        private fun enter(term: Term, stack: MutableList<Frame>) {
+            if (term is ApplTerm || term is ListTerm || term is PlaceholderTerm) {
+                val index = terms[term]
+                if (index != null) {
+                    writeVarint(REF)
+                    writeVarint(index)
+                    return
+                }
+            }
+            val annotations = term.attachments.get(Annotations::class.java)
+            val annotatedFlag = if (annotations != null && annotations.isNotEmpty()) ANNOTATED else 0
+
+            when (term) {
+                is ApplTerm -> {
+                    writeSymbol(APPL or annotatedFlag, term.constructor)
+                    writeVarint(term.arity)
+                    stack.add(Frame(term, term.args.iterator(), false))
+                }
+                is ListTerm -> {
+                    writeVarint(LIST or annotatedFlag)
+                    writeVarint(term.elements.size)
+                    stack.add(Frame(term, term.elements.iterator(), false))
+                }
+                is PlaceholderTerm -> {
+                    writeVarint(PLACEHOLDER or annotatedFlag)
+                    stack.add(Frame(term, listOf(term.template).iterator(), false))
+                }
+                is StringTerm -> {
+                    writeSymbol(STRING or annotatedFlag, term.value)
+                    exit(term, stack)
+                }
+                is TermVar -> {
+                    writeSymbol(VAR or annotatedFlag, term.name)
+                    exit(term, stack)
+                }
+                is IntTerm -> {
+                    writeVarint(INT or annotatedFlag)
+                    // Zigzag encoding, so that small negative integers are small as well
+                    writeVarint((term.value shl 1) xor (term.value shr 31))
+                    exit(term, stack)
+                }
+                is RealTerm -> {
+                    writeVarint(REAL or annotatedFlag)
+                    writeLong(java.lang.Double.doubleToRawLongBits(term.value))
+                    exit(term, stack)
+                }
+                is BlobTerm -> throw IllegalArgumentException("Cannot write a blob: $term")
+                else -> throw IllegalArgumentException("Unsupported term: $term")
+            }
+        }
+
+        /**
+         * Finishes writing a term node, by starting to write its annotations (if any).
+         *
+         * @param term the term whose subterms have been written
+         * @param stack the stack of terms being written
+         */
+        private fun exit(term: Term, stack: MutableList<Frame>) {
+            val annotations = term.attachments.get(Annotations::class.java)
+            if (annotations == null || annotations.isEmpty()) {
+                register(term)
+                return
+            }
+            writeVarint(annotations.size)
+            stack.add(Frame(term, annotations.iterator(), true))
+        }
+
+        /**
+         * Numbers a term node that has been written, if it has subterms,
+         * so that it can be referenced afterwards.
+         *
+         * @param term the term that has been written
+         */
+        private fun register(term: Term) {
+            if (term is ApplTerm || term is ListTerm || term is PlaceholderTerm) {
+                terms[term] = terms.size
+            }
+        }
+
+        /**
+         * Writes a tag followed by a symbol.
+         *
+         * @param tag the tag, without the [NEW_SYMBOL] flag
+         * @param symbol the symbol
+         */
+        private fun writeSymbol(tag: Int, symbol: String) {
+            val index = symbols[symbol]
+            if (index != null) {
+                writeVarint(tag)
+                writeVarint(index)
+            } else {
+                symbols[symbol] = symbols.size
+                writeVarint(tag or NEW_SYMBOL)
+                val bytes = symbol.toByteArray(Charsets.UTF_8)
+                writeVarint(bytes.size)
+                writeBytes(bytes)
+            }
+        }
+
+        /**
+         * Writes an unsigned varint.
+         *
+         * @param value the value, which is treated as unsigned
+         */
+        fun writeVarint(value: Int) {
+            if (buffer.size - length < 5) flush()
+            var v = value
+            while (v and 0x7F.inv() != 0) {
+                buffer[length++] = ((v and 0x7F) or 0x80).toByte()
+                v = v ushr 7
+            }
+            buffer[length++] = v.toByte()
+        }
+
+        /**
+         * Writes a long, big-endian.
+         *
+         * @param value the value
+         */
+        private fun writeLong(value: Long) {
+            if (buffer.size - length < 8) flush()
+            for (shift in 56 downTo 0 step 8) {
+                buffer[length++] = (value shr shift).toByte()
+            }
+        }
+
+        /**
+         * Writes bytes.
+         *
+         * @param bytes the bytes to write
+         */
+        fun writeBytes(bytes: ByteArray) {
+            if (bytes.size > buffer.size - length) {
+                flush()
+                if (bytes.size > buffer.size) {
+                    stream.write(bytes)
+                    return
+                }
+            }
+            System.arraycopy(bytes, 0, buffer, length, bytes.size)
+            length += bytes.size
+        }
+
+        /**
+         * Writes the buffered bytes to the stream.
+         */
+        fun flush() {
+            stream.write(buffer, 0, length)
+            length = 0
+        }
+    }
+
+    /**
+     * A term whose subterms or annotations are being written.
+     *
+     * @property term the term
+     * @property iterator the iterator over the subterms or annotations that remain to be written
+     * @property annotations whether the annotations of the term are being written
+     */
+    private class Frame(
+        val term: Term,
+        val iterator: Iterator<Term>,
+        val annotations: Boolean,
+    )
+
+}
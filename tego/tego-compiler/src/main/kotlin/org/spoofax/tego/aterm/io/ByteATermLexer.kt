@@ -0,0 +1,295 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.EOF
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isDigit
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isValidIdentifierChar
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isValidIdentifierFirstChar
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isWhitespace
+import org.spoofax.tego.aterm.Attachments
+import org.spoofax.tego.aterm.StringTerm
+import org.spoofax.tego.aterm.TermFactory
+import java.nio.Buffer
+import java.nio.ByteBuffer
+
+/**
+ * Scans the UTF-8 encoded bytes of an ATerm.
+ *
+ * The bytes are scanned in place with an index cursor, so the input is not decoded to characters.
+ * As the ATerm syntax is ASCII, only identifiers and strings with non-ASCII characters are decoded.
+ * In UTF-8 the bytes of a multibyte character never look like ASCII characters, so strings
+ * can be scanned byte by byte for their closing quote.
+ *
+ * String terms without escape sequences are built from their bytes (see [TermFactory.newString]).
+ * When [shareInput] is `true` and the buffer is backed by an array, the terms may keep a reference
+ * to that array, which is only safe when the input is kept in memory anyway and never modified.
+ * Otherwise, the bytes of each string are copied.
+ *
+ * @param buffer the buffer to read from, from its position up to its limit
+ * @property shareInput whether the built string terms may keep a reference to the input
+ */
+internal class ByteATermLexer(
+    buffer: ByteBuffer,
+    private val shareInput: Boolean = false,
+) : ATermLexer {
+
+    /** The buffer. */
+    private val buffer: ByteBuffer = buffer.duplicate()
+    /** The index in the buffer of the first byte. */
+    private val start: Int = buffer.position()
+    /** The index in the buffer following the last byte. */
+    private val limit: Int = buffer.limit()
+    /** The index in the buffer of the next byte. */
+    private var position: Int = start
+    /** The scratch array to which bytes are copied to be decoded. */
+    private var scratch: ByteArray = ByteArray(256)
+    /** The number of bytes of the last code point decoded by [decodeCodePoint]. */
+    private var decodedLength: Int = 0
+
+    override val offset: Long get() = (position - start).toLong()
+
+    override var intValue: Int = 0
+        private set
+    override var realValue: Double = 0.0
+        private set
+
+    override fun skipWhitespace(): Int {
+        while (position < limit) {
+            val b = buffer.get(position).toInt()
+            if (b >= 0) {
+                if (!isWhitespace(b)) return b
+                position += 1
+            } else {
+                val cp = decodeCodePoint(position)
+                if (!isWhitespace(cp)) return cp
+                position += decodedLength
+            }
+        }
+        return EOF
+    }
+
+    override fun peek(): Int {
+        if (position == limit) return EOF
+        val b = buffer.get(position).toInt()
+        return if (b >= 0) b else decodeCodePoint(position)
+    }
+
+    override fun peek(lookahead: Int): Int {
+        var index = position
+        for (i in 0 until lookahead) {
+            if (index >= limit) return EOF
+            index += if (buffer.get(index) >= 0) 1 else { decodeCodePoint(index); decodedLength }
+        }
+        if (index >= limit) return EOF
+        val b = buffer.get(index).toInt()
+        return if (b >= 0) b else decodeCodePoint(index)
+    }
+
+    override fun read(): Char {
+        if (position == limit) throw FormatException("Unexpected end of file.")
+        val b = buffer.get(position).toInt()
+        if (b >= 0) {
+            position += 1
+            return b.toChar()
+        }
+        val cp = decodeCodePoint(position)
+        position += decodedLength
+        return if (Character.isBmpCodePoint(cp)) cp.toChar() else '\uFFFD'
+    }
+
+    override fun tryRead(expected: Char): Boolean {
+        if (position == limit || buffer.get(position).toInt() != expected.code) return false
+        position += 1
+        return true
+    }
+
+    override fun readIdentifier(): String {
+        val mark = position
+        var first = true
+        while (position < limit) {
+            val b = buffer.get(position).toInt()
+            val cp = if (b >= 0) b else decodeCodePoint(position)
+            if (!(if (first) isValidIdentifierFirstChar(cp) else isValidIdentifierChar(cp))) break
+            position += if (b >= 0) 1 else decodedLength
+            first = false
+        }
+        return decode(mark, position)
+    }
+
+    override fun readString(): String {
+        readExpected('"', "string")
+        var mark = position
+        // Fast path: the string has no escape sequences
+        while (true) {
+            if (position == limit) throw FormatException("Unexpected end of file.")
+            when (buffer.get(position).toInt()) {
+                '"'.code -> {
+                    val value = decode(mark, position)
+                    position += 1
+                    return value
+                }
+                '\\'.code -> break
+                else -> position += 1
+            }
+        }
+
+        // Slow path: the string has escape sequences
+        val sb = StringBuilder(position - mark + 16)
+        while (true) {
+            if (position == limit) throw FormatException("Unexpected end of file.")
+            when (buffer.get(position).toInt()) {
+                '"'.code -> {
+                    sb.append(decode(mark, position))
+                    position += 1
+                    return sb.toString()
+                }
+                '\\'.code -> {
+                    sb.append(decode(mark, position))
+                    position += 1
+                    readEscapeSequence(sb)
+                    mark = position
+                }
+                else -> position += 1
+            }
+        }
+    }
+
+    override fun readString(termFactory: TermFactory, attachments: Attachments): StringTerm {
+        val mark = position
+        readExpected('"', "string")
+        val from = position
+        while (position < limit) {
+            when (buffer.get(position).toInt()) {
+                '"'.code -> {
+                    val length = position - from
+                    position += 1
+                    if (shareInput && buffer.hasArray()) {
+                        return termFactory.newString(buffer.array(), buffer.arrayOffset() + from, length, attachments)
+                    }
+                    return termFactory.newString(copyToScratch(from, from + length).copyOf(length), 0, length, attachments)
+                }
+                '\\'.code -> break
+                else -> position += 1
+            }
+        }
+        // The string has escape sequences, or is not terminated
+        position = mark
+        return termFactory.newString(readString(), attachments)
+    }
+
+    override fun readNumber(): Boolean {
+        val mark = position
+        val negative = tryRead('-')
+        val intsLength = skipDigits()
+        val fracLength = if (tryRead('.')) skipDigits() else -1
+        val expStart = position
+        val expLength = if (tryRead('e') || tryRead('E')) { tryRead('+') || tryRead('-'); skipDigits() } else -1
+
+        if (intsLength == 0 && fracLength <= 0)
+            throw FormatException("Expected a number, got something else at offset ${mark - start}.")
+
+        return if (fracLength > 0 || expLength > 0) {
+            // A trailing exponent without digits is ignored
+            val end = if (expLength == 0) expStart else position
+            realValue = String(copyToScratch(mark, end), 0, end - mark, Charsets.US_ASCII).toDouble()
+            true
+        } else {
+            intValue = parseInt(if (negative) mark + 1 else mark, intsLength, negative)
+            false
+        }
+    }
+
+    /**
+     * Skips a sequence of decimal digits.
+     *
+     * @return the number of skipped digits
+     */
+    private fun skipDigits(): Int {
+        val mark = position
+        while (position < limit && isDigit(buffer.get(position).toInt())) {
+            position += 1
+        }
+        return position - mark
+    }
+
+    /**
+     * Parses a sequence of decimal digits in the buffer as an integer.
+     *
+     * @param start the start of the digits in the buffer
+     * @param length the number of digits
+     * @param negative whether the integer is negative
+     * @return the integer value
+     */
+    private fun parseInt(start: Int, length: Int, negative: Boolean): Int {
+        val max = if (negative) -(Int.MIN_VALUE.toLong()) else Int.MAX_VALUE.toLong()
+        var value = 0L
+        for (i in start until start + length) {
+            value = value * 10 + (buffer.get(i) - '0'.code.toByte())
+            if (value > max) throw FormatException("Integer out of range: ${if (negative) "-" else ""}${decode(start, start + length)}")
+        }
+        return (if (negative) -value else value).toInt()
+    }
+
+    /**
+     * Decodes the UTF-8 bytes in the specified range of the buffer.
+     *
+     * @param from the start of the range in the buffer, inclusive
+     * @param to the end of the range in the buffer, exclusive
+     * @return the decoded string
+     */
+    private fun decode(from: Int, to: Int): String {
+        if (from == to) return ""
+        return String(copyToScratch(from, to), 0, to - from, Charsets.UTF_8)
+    }
+
+    /**
+     * Copies the bytes in the specified range of the buffer to the start of the scratch array.
+     *
+     * @param from the start of the range in the buffer, inclusive
+     * @param to the end of the range in the buffer, exclusive
+     * @return the scratch array
+     */
+    private fun copyToScratch(from: Int, to: Int): ByteArray {
+        val length = to - from
+        if (scratch.size < length) scratch = ByteArray(Integer.highestOneBit(length) * 2)
+        // Cast to Buffer, as ByteBuffer.position(Int) does not exist on Java 8
+        (buffer as Buffer).position(from)
+        buffer.get(scratch, 0, length)
+        return scratch
+    }
+
+    /**
+     * Decodes the UTF-8 encoded code point at the specified index,
+     * and stores its length in [decodedLength].
+     *
+     * Malformed bytes decode to the replacement character U+FFFD.
+     *
+     * @param index the index of the first byte of the code point in the buffer
+     * @return the code point
+     */
+    private fun decodeCodePoint(index: Int): Int {
+        val b = buffer.get(index).toInt() and 0xFF
+        val length = when {
+            b < 0x80 -> 1
+            b and 0xE0 == 0xC0 -> 2
+            b and 0xF0 == 0xE0 -> 3
+            b and 0xF8 == 0xF0 -> 4
+            else -> 0
+        }
+        if (length == 0 || index + length > limit) {
+            decodedLength = 1
+            return 0xFFFD
+        }
+        var cp = if (length == 1) b else b and (0x7F shr length)
+        for (i in index + 1 until index + length) {
+            val c = buffer.get(i).toInt() and 0xFF
+            if (c and 0xC0 != 0x80) {
+                decodedLength = 1
+                return 0xFFFD
+            }
+            cp = (cp shl 6) or (c and 0x3F)
+        }
+        decodedLength = length
+        return cp
+    }
+
+}
@@ -0,0 +1,244 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.EOF
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isDigit
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isValidIdentifierChar
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isValidIdentifierFirstChar
+import org.spoofax.tego.aterm.io.ATermLexer.Companion.isWhitespace
+import java.io.Reader
+
+/**
+ * Scans the characters of an ATerm.
+ *
+ * The characters are read in large blocks into a buffer, which is scanned
+ * with an index cursor. Identifiers, strings, and numbers are sliced directly
+ * from the buffer, without intermediate string builders.
+ *
+ * @param reader the reader to read from; or `null` when the buffer contains the whole input
+ * @param buffer the initial buffer
+ * @param limit the number of characters in the initial buffer
+ */
+internal class CharATermLexer private constructor(
+    private val reader: Reader?,
+    private var buffer: CharArray,
+    private var limit: Int,
+) : ATermLexer {
+
+    companion object {
+        /** The default size of the buffer, in characters. */
+        const val DEFAULT_BUFFER_SIZE = 64 * 1024
+    }
+
+    /**
+     * Initializes a new instance of the [CharATermLexer] class
+     * that reads from the specified reader.
+     *
+     * @param reader the reader to read from
+     * @param bufferSize the initial size of the buffer, in characters
+     */
+    constructor(reader: Reader, bufferSize: Int = DEFAULT_BUFFER_SIZE)
+        : this(reader, CharArray(bufferSize), 0)
+
+    /**
+     * Initializes a new instance of the [CharATermLexer] class
+     * that reads from the specified string.
+     *
+     * @param s the string to read from
+     */
+    constructor(s: String)
+        : this(null, s.toCharArray(), s.length)
+
+    /** The index of the next character in the buffer. */
+    private var position: Int = 0
+    /** The offset in the input of the first character in the buffer. */
+    private var bufferOffset: Long = 0
+    /** Whether the end of the input has been reached. */
+    private var endOfInput: Boolean = reader == null
+    /** The index in the buffer of the first character that must be kept when the buffer is filled; or -1. */
+    private var mark: Int = -1
+
+    override val offset: Long get() = bufferOffset + position
+
+    override var intValue: Int = 0
+        private set
+    override var realValue: Double = 0.0
+        private set
+
+    override fun skipWhitespace(): Int {
+        while (true) {
+            if (position == limit && !fill()) return EOF
+            val ch = buffer[position]
+            if (!isWhitespace(ch.code)) return ch.code
+            position += 1
+        }
+    }
+
+    override fun peek(): Int {
+        if (position == limit && !fill()) return EOF
+        return buffer[position].code
+    }
+
+    override fun peek(lookahead: Int): Int {
+        if (limit - position <= lookahead && !fill(lookahead + 1)) return EOF
+        return buffer[position + lookahead].code
+    }
+
+    override fun read(): Char {
+        if (position == limit && !fill()) throw FormatException("Unexpected end of file.")
+        return buffer[position++]
+    }
+
+    override fun tryRead(expected: Char): Boolean {
+        if (position == limit && !fill()) return false
+        if (buffer[position] != expected) return false
+        position += 1
+        return true
+    }
+
+    override fun readIdentifier(): String {
+        if (position == limit && !fill()) return ""
+        if (!isValidIdentifierFirstChar(buffer[position].code)) return ""
+        mark = position
+        position += 1
+        while ((position < limit || fill()) && isValidIdentifierChar(buffer[position].code)) {
+            position += 1
+        }
+        return sliceFromMark()
+    }
+
+    override fun readString(): String {
+        readExpected('"', "string")
+        mark = position
+        // Fast path: the string has no escape sequences
+        while (true) {
+            if (position == limit && !fill()) throw FormatException("Unexpected end of file.")
+            when (buffer[position]) {
+                '"' -> {
+                    val value = sliceFromMark()
+                    position += 1
+                    return value
+                }
+                '\\' -> break
+                else -> position += 1
+            }
+        }
+
+        // Slow path: the string has escape sequences
+        val sb = StringBuilder(position - mark + 16)
+        sb.append(buffer, mark, position - mark)
+        mark = -1
+        var ch = read()
+        while (ch != '"') {
+            if (ch == '\\') {
+                readEscapeSequence(sb)
+            } else {
+                sb.append(ch)
+            }
+            ch = read()
+        }
+        return sb.toString()
+    }
+
+    override fun readNumber(): Boolean {
+        mark = position
+        val negative = tryRead('-')
+        val intsLength = skipDigits()
+        val fracLength = if (tryRead('.')) skipDigits() else -1
+        // Relative to the mark, as filling the buffer moves the characters
+        val expOffset = position - mark
+        val expLength = if (tryRead('e') || tryRead('E')) { tryRead('+') || tryRead('-'); skipDigits() } else -1
+
+        if (intsLength == 0 && fracLength <= 0)
+            throw FormatException("Expected a number, got something else at offset ${bufferOffset + mark}.")
+
+        return if (fracLength > 0 || expLength > 0) {
+            // A trailing exponent without digits is ignored
+            val length = if (expLength == 0) expOffset else position - mark
+            realValue = String(buffer, mark, length).toDouble()
+            mark = -1
+            true
+        } else {
+            intValue = parseInt(if (negative) mark + 1 else mark, intsLength, negative)
+            mark = -1
+            false
+        }
+    }
+
+    /**
+     * Skips a sequence of decimal digits.
+     *
+     * @return the number of skipped digits
+     */
+    private fun skipDigits(): Int {
+        var skipped = 0
+        while ((position < limit || fill()) && isDigit(buffer[position].code)) {
+            position += 1
+            skipped += 1
+        }
+        return skipped
+    }
+
+    /**
+     * Parses a sequence of decimal digits in the buffer as an integer.
+     *
+     * @param start the start of the digits in the buffer
+     * @param length the number of digits
+     * @param negative whether the integer is negative
+     * @return the integer value
+     */
+    private fun parseInt(start: Int, length: Int, negative: Boolean): Int {
+        val max = if (negative) -(Int.MIN_VALUE.toLong()) else Int.MAX_VALUE.toLong()
+        var value = 0L
+        for (i in start until start + length) {
+            value = value * 10 + (buffer[i] - '0')
+            if (value > max) throw FormatException("Integer out of range: ${if (negative) "-" else ""}${String(buffer, start, length)}")
+        }
+        return (if (negative) -value else value).toInt()
+    }
+
+    /**
+     * Returns the characters from the mark up to the current position as a string,
+     * and clears the mark.
+     *
+     * @return the string
+     */
+    private fun sliceFromMark(): String {
+        val value = String(buffer, mark, position - mark)
+        mark = -1
+        return value
+    }
+
+    /**
+     * Reads more characters into the buffer.
+     *
+     * The characters from the [mark] (if any) or the current position are kept
+     * and moved to the start of the buffer, and the buffer is grown when there is no space left.
+     *
+     * @param required the number of characters that must be available from the current position
+     * @return `true` when the required characters are available;
+     * otherwise, `false` when the end of the input has been reached
+     */
+    private fun fill(required: Int = 1): Boolean {
+        if (endOfInput) return limit - position >= required
+        val reader = this.reader!!
+        val start = if (mark >= 0) mark else position
+        if (start > 0) {
+            System.arraycopy(buffer, start, buffer, 0, limit - start)
+            bufferOffset += start
+            position -= start
+            limit -= start
+            if (mark >= 0) mark = 0
+        }
+        while (limit - position < required) {
+            if (limit == buffer.size) buffer = buffer.copyOf(buffer.size * 2)
+            val read = reader.read(buffer, limit, buffer.size - limit)
+            if (read < 0) {
+                endOfInput = true
+                return false
+            }
+            limit += read
+        }
+        return true
+    }
+
+}
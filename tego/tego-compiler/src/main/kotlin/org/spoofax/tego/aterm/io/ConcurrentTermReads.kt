@@ -0,0 +1,140 @@
+package org.spoofax.tego.aterm.io
+
+import java.nio.charset.Charset
+import java.nio.file.Path
+import java.time.Duration
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.Semaphore
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * The terms being read concurrently from a collection of paths, as an iterator over the results
+ * in the order in which the reads complete.
+ *
+ * All reads are submitted when this object is created. When [ownedExecutor] is specified,
+ * it is shut down once the last result has been taken. When [permits] is specified,
+ * each read holds a permit while it runs, which bounds the number of reads in flight.
+ *
+ * @param reader the term reader
+ * @param paths the paths to read from
+ * @param charset the character set to use
+ * @param executor the executor that runs the reads
+ * @param ownedExecutor the executor to shut down when done; or `null`
+ * @param permits the permits of the reads in flight; or `null` when not bounded
+ */
+internal class ConcurrentTermReads(
+    reader: TermReader,
+    paths: Collection<Path>,
+    charset: Charset,
+    executor: Executor,
+    private val ownedExecutor: ExecutorService?,
+    private val permits: Semaphore? = null,
+) : Iterator<TermReadResult> {
+
+    companion object {
+        /**
+         * Reads terms concurrently on a new executor, which is shut down when done.
+         *
+         * When the JVM supports virtual threads, the executor starts a virtual thread for each read,
+         * and at most one read for each available processor is in flight at a time, as each read holds
+         * an open file and a term being built. Otherwise, the executor is a pool of at most one daemon thread
+         * for each available processor, whose threads stop when idle.
+         *
+         * @param reader the term reader
+         * @param paths the paths to read from
+         * @param charset the character set to use
+         * @return the reads
+         */
+        fun withNewExecutor(reader: TermReader, paths: Collection<Path>, charset: Charset): ConcurrentTermReads {
+            val processors = Runtime.getRuntime().availableProcessors()
+            try {
+                val method = Executors::class.java.getMethod("newVirtualThreadPerTaskExecutor")
+                val executor = method.invoke(null) as ExecutorService
+                return ConcurrentTermReads(reader, paths, charset, executor, executor, Semaphore(processors))
+            } catch (ex: NoSuchMethodException) {
+                // Virtual threads are not supported
+            }
+            val executor = ThreadPoolExecutor(processors, processors, 1, TimeUnit.SECONDS, LinkedBlockingQueue(), DaemonThreadFactory())
+            executor.allowCoreThreadTimeOut(true)
+            return ConcurrentTermReads(reader, paths, charset, executor, executor)
+        }
+    }
+
+    /** The completion service that runs the reads. */
+    private val completion = ExecutorCompletionService<TermReadResult>(executor)
+    /** The number of results that have not been taken. */
+    private var remaining = 0
+
+    init {
+        try {
+            for (path in paths) {
+                completion.submit { read(reader, path, charset) }
+                remaining += 1
+            }
+        } finally {
+            if (remaining == 0) ownedExecutor?.shutdown()
+        }
+    }
+
+    override fun hasNext(): Boolean = remaining > 0
+
+    override fun next(): TermReadResult {
+        if (remaining == 0) throw NoSuchElementException()
+        val future = completion.take()
+        remaining -= 1
+        if (remaining == 0) ownedExecutor?.shutdown()
+        try {
+            return future.get()
+        } catch (ex: ExecutionException) {
+            // Only errors are not caught by the read
+            throw ex.cause ?: ex
+        }
+    }
+
+    /**
+     * Reads a term from the specified path.
+     *
+     * @param reader the term reader
+     * @param path the path to read from
+     * @param charset the character set to use
+     * @return the result of the read
+     */
+    private fun read(reader: TermReader, path: Path, charset: Charset): TermReadResult {
+        permits?.acquireUninterruptibly()
+        try {
+            val start = System.nanoTime()
+            return try {
+                val term = reader.read(path, charset)
+                TermReadResult(path, term, null, Duration.ofNanos(System.nanoTime() - start))
+            } catch (ex: Exception) {
+                TermReadResult(path, null, ex, Duration.ofNanos(System.nanoTime() - start))
+            }
+        } finally {
+            permits?.release()
+        }
+    }
+
+    /**
+     * Creates daemon threads, so that an executor whose results are not all taken
+     * does not keep the JVM alive.
+     */
+    private class DaemonThreadFactory : ThreadFactory {
+        /** The number of created threads. */
+        private val count = AtomicInteger()
+
+        override fun newThread(runnable: Runnable): Thread {
+            val thread = Thread(runnable, "term-reader-${count.incrementAndGet()}")
+            thread.isDaemon = true
+            return thread
+        }
+    }
+
+}
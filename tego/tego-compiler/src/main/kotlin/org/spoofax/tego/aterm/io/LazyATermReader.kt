@@ -0,0 +1,61 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactory
+import java.io.InputStream
+import java.io.Reader
+import java.nio.ByteBuffer
+import java.nio.charset.Charset
+import java.nio.file.Files
+import java.nio.file.Path
+
+/**
+ * An ATerm reader that decodes the terms lazily.
+ *
+ * The reader first scans the UTF-8 encoded input to build an index of the offsets of its subterms,
+ * which is much cheaper than building the terms. The arguments of constructor applications
+ * and the elements of lists are then decoded from the input on their first access,
+ * so subterms that are never accessed are never built. Other terms, including the annotations
+ * of constructor applications and lists, are built with the specified term factory.
+ *
+ * The input is kept in memory as long as any of the read terms is in use.
+ * Note that computing the hash code of a term (for example, to compare it
+ * or to use it as a key) decodes the whole term.
+ *
+ * @property termFactory the term factory to use
+ */
+class LazyATermReader(
+    private val termFactory: TermFactory,
+): TermReader {
+
+    override fun readFromString(s: String): Term? {
+        return read(ByteBuffer.wrap(s.toByteArray(Charsets.UTF_8)))
+    }
+
+    override fun read(reader: Reader): Term? {
+        return readFromString(reader.readText())
+    }
+
+    override fun read(path: Path, charset: Charset): Term? {
+        if (charset != Charsets.UTF_8 && charset != Charsets.US_ASCII) return super.read(path, charset)
+        return read(ByteBuffer.wrap(Files.readAllBytes(path)))
+    }
+
+    override fun read(stream: InputStream, charset: Charset): Term? {
+        if (charset != Charsets.UTF_8 && charset != Charsets.US_ASCII) return super.read(stream, charset)
+        return read(ByteBuffer.wrap(stream.use { it.readBytes() }))
+    }
+
+    /**
+     * Reads a term from the specified buffer of UTF-8 encoded bytes.
+     *
+     * The buffer must not be modified while any of the read terms is in use.
+     *
+     * @param buffer the buffer to read from, from its position up to its limit
+     * @return the read term; or `null` if there was no term to be read
+     */
+    fun read(buffer: ByteBuffer): Term? {
+        return LazyTermIndex.build(buffer.slice(), termFactory)?.term(0)
+    }
+
+}
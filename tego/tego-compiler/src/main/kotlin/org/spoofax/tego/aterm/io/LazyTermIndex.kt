@@ -0,0 +1,182 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.*
+import java.nio.Buffer
+import java.nio.ByteBuffer
+
+/**
+ * An index of the terms in a UTF-8 encoded ATerm, from which the terms are decoded on demand.
+ *
+ * Each term and annotation in the input is a node, numbered in pre-order.
+ * The subterms of a node follow the node, followed by its annotations.
+ * For each node, the index stores the offset of the term in the input,
+ * the number of its subterms, and the number of the node following the node
+ * and all its subterms and annotations.
+ *
+ * @property buffer the input, from index 0
+ * @property termFactory the term factory used to build the decoded terms
+ * @property offsets the offset of each node in the input
+ * @property ends the number of the node following each node, its subterms, and its annotations
+ * @property arities the number of subterms of each node
+ */
+internal class LazyTermIndex private constructor(
+    private val buffer: ByteBuffer,
+    private val termFactory: TermFactory,
+    private val offsets: IntArray,
+    private val ends: IntArray,
+    private val arities: IntArray,
+) {
+
+    companion object {
+        /**
+         * Builds an index of the term in the specified buffer.
+         *
+         * @param buffer the input, from index 0 up to its limit
+         * @param termFactory the term factory used to build the decoded terms
+         * @return the index; or `null` if the input contains no term
+         */
+        fun build(buffer: ByteBuffer, termFactory: TermFactory): LazyTermIndex? {
+            val events = TermEventReader(ByteATermLexer(buffer), termFactory)
+            var offsets = IntArray(1024)
+            var ends = IntArray(1024)
+            var arities = IntArray(1024)
+            var count = 0
+            // The open nodes, innermost last; or -1 minus the annotated node for annotations
+            var open = IntArray(64)
+            var depth = 0
+            var lastCompleted = -1
+
+            while (true) {
+                when (val event = events.next()) {
+                    TermEvent.START_APPL, TermEvent.START_LIST, TermEvent.START_PLACEHOLDER,
+                    TermEvent.STRING, TermEvent.INT, TermEvent.REAL -> {
+                        if (count == offsets.size) {
+                            offsets = offsets.copyOf(count * 2)
+                            ends = ends.copyOf(count * 2)
+                            arities = arities.copyOf(count * 2)
+                        }
+                        val node = count++
+                        offsets[node] = events.termOffset.toInt()
+                        if (depth > 0 && open[depth - 1] >= 0) arities[open[depth - 1]] += 1
+                        if (event.isStart) {
+                            if (depth == open.size) open = open.copyOf(depth * 2)
+                            open[depth++] = node
+                        } else {
+                            ends[node] = count
+                            lastCompleted = node
+                        }
+                    }
+                    TermEvent.START_ANNOTATIONS -> {
+                        if (depth == open.size) open = open.copyOf(depth * 2)
+                        open[depth++] = -1 - lastCompleted
+                    }
+                    TermEvent.END -> {
+                        val entry = open[--depth]
+                        val node = if (entry >= 0) entry else -1 - entry
+                        ends[node] = count
+                        lastCompleted = node
+                    }
+                    TermEvent.END_OF_INPUT -> break
+                }
+            }
+            if (count == 0) return null
+            return LazyTermIndex(buffer, termFactory, offsets, ends, arities)
+        }
+    }
+
+    /**
+     * Gets the term of the specified node.
+     *
+     * Constructor applications and lists are decoded on demand; other terms are decoded immediately.
+     *
+     * @param node the node
+     * @return the term
+     */
+    fun term(node: Int): Term {
+        val b = buffer.get(offsets[node]).toInt()
+        val ch = b.toChar()
+        return when {
+            ch == '[' -> LazyListTerm(this, node)
+            // Non-ASCII bytes start a non-ASCII identifier
+            ch == '(' || b < 0 || ch.isLetter() -> LazyApplTerm(this, node)
+            ch == '<' -> termFactory.newPlaceholder(term(node + 1), annotations(node))
+            ch == '"' -> lexerAt(node).readString(termFactory, annotations(node))
+            else -> {
+                val lexer = lexerAt(node)
+                if (lexer.readNumber())
+                    termFactory.newReal(lexer.realValue, annotations(node))
+                else
+                    termFactory.newInt(lexer.intValue, annotations(node))
+            }
+        }
+    }
+
+    /**
+     * Gets the number of subterms of the specified node.
+     *
+     * @param node the node
+     * @return the number of subterms
+     */
+    fun arity(node: Int): Int = arities[node]
+
+    /**
+     * Decodes the constructor name of the specified constructor application node.
+     *
+     * @param node the node
+     * @return the constructor name
+     */
+    fun constructor(node: Int): String {
+        if (buffer.get(offsets[node]) == '('.code.toByte()) return ""
+        return lexerAt(node).readIdentifier()
+    }
+
+    /**
+     * Gets the subterms of the specified node.
+     *
+     * @param node the node
+     * @return the subterms
+     */
+    fun subterms(node: Int): Array<Term> {
+        var child = node + 1
+        return Array(arities[node]) {
+            val term = term(child)
+            child = ends[child]
+            term
+        }
+    }
+
+    /**
+     * Gets the annotations of the specified node as attachments.
+     *
+     * @param node the node
+     * @return the attachments
+     */
+    fun annotations(node: Int): Attachments {
+        var child = node + 1
+        for (i in 0 until arities[node]) {
+            child = ends[child]
+        }
+        if (child == ends[node]) return Attachments.empty()
+        val annotations = ArrayList<Term>()
+        while (child < ends[node]) {
+            annotations.add(term(child))
+            child = ends[child]
+        }
+        return Attachments.of(Annotations(annotations))
+    }
+
+    /**
+     * Creates a lexer positioned at the start of the specified node.
+     *
+     * @param node the node
+     * @return the lexer
+     */
+    private fun lexerAt(node: Int): ByteATermLexer {
+        val buffer = this.buffer.duplicate()
+        // Cast to Buffer, as ByteBuffer.position(Int) does not exist on Java 8
+        (buffer as Buffer).position(offsets[node])
+        // The input is kept in memory by the lazy terms anyway, so string terms can share it
+        return ByteATermLexer(buffer, shareInput = true)
+    }
+
+}
@@ -0,0 +1,260 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.*
+
+/**
+ * A term that is decoded on demand from a [LazyTermIndex].
+ */
+internal interface LazyTerm : Term {
+    /** Whether the hash code has been computed. */
+    val isHashed: Boolean
+
+    /**
+     * Computes and sets the hash code of the term,
+     * once the hash codes of its lazy subterms and annotations have been computed.
+     */
+    fun setHashCode()
+}
+
+/**
+ * Computes the hash codes and string representations of lazy terms.
+ *
+ * The terms are visited iteratively, using an explicit stack, so that the hash codes and
+ * string representations of deeply nested terms can be computed on threads with a small stack.
+ */
+internal object LazyTerms {
+
+    /**
+     * Computes the hash codes of a lazy term and of its lazy subterms and annotations
+     * whose hash codes have not been computed yet.
+     *
+     * @param term the lazy term
+     */
+    fun computeHashCodes(term: LazyTerm) {
+        // The terms to visit, or the terms whose children have been visited
+        val stack = ArrayList<Any>()
+        stack.add(term)
+        while (stack.isNotEmpty()) {
+            val next = stack.removeAt(stack.size - 1)
+            if (next is Visited) {
+                next.term.setHashCode()
+            } else {
+                val current = next as LazyTerm
+                if (current.isHashed) continue
+                stack.add(Visited(current))
+                for (child in current.subterms) {
+                    if (child is LazyTerm && !child.isHashed) stack.add(child)
+                }
+                for (annotation in current.annotations) {
+                    if (annotation is LazyTerm && !annotation.isHashed) stack.add(annotation)
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the string representation of a lazy term.
+     *
+     * The representation is the same as that of the terms built by the term factory.
+     *
+     * @param term the lazy term
+     * @return the string representation
+     */
+    fun toString(term: LazyTerm): String {
+        val builder = StringBuilder()
+        // The terms to append, or the strings to append between them, last first
+        val stack = ArrayList<Any>()
+        stack.add(term)
+        while (stack.isNotEmpty()) {
+            when (val next = stack.removeAt(stack.size - 1)) {
+                is String -> builder.append(next)
+                is LazyApplTerm -> {
+                    pushAnnotations(next, stack)
+                    pushTerms("${next.constructor}(", next.args, ")", stack)
+                }
+                is LazyListTerm -> {
+                    pushAnnotations(next, stack)
+                    pushTerms("[", next.elements, "]", stack)
+                }
+                else -> builder.append(next.toString())
+            }
+        }
+        return builder.toString()
+    }
+
+    /**
+     * Pushes the annotations of a term onto the stack, to be appended after the term.
+     *
+     * @param term the term
+     * @param stack the stack of terms and strings to append
+     */
+    private fun pushAnnotations(term: Term, stack: MutableList<Any>) {
+        val annotations = term.annotations
+        // The attachments of lazy terms only ever hold annotations
+        if (annotations.isNotEmpty()) pushTerms("{", annotations, "}", stack)
+    }
+
+    /**
+     * Pushes a sequence of terms, separated by commas, onto the stack.
+     *
+     * @param open the string to append before the terms
+     * @param terms the terms
+     * @param close the string to append after the terms
+     * @param stack the stack of terms and strings to append
+     */
+    private fun pushTerms(open: String, terms: List<Term>, close: String, stack: MutableList<Any>) {
+        stack.add(close)
+        for (i in terms.size - 1 downTo 0) {
+            stack.add(terms[i])
+            if (i > 0) stack.add(", ")
+        }
+        stack.add(open)
+    }
+
+    /**
+     * A term whose children have been visited.
+     *
+     * @property term the term
+     */
+    private class Visited(val term: LazyTerm)
+
+}
+
+/**
+ * A constructor application term whose arguments and annotations are decoded on first access.
+ *
+ * The constructor name and arity are known without decoding the arguments.
+ * Computing the hash code decodes the whole term. The hash code and string representation
+ * are computed iteratively (see [LazyTerms]), so that deeply nested input does not overflow the call stack.
+ *
+ * @property index the index of the input
+ * @property node the node of the term in the index
+ */
+internal class LazyApplTerm(
+    private val index: LazyTermIndex,
+    private val node: Int,
+) : ApplTerm, LazyTerm {
+
+    override val symbol: Constructor = Constructor.of(index.constructor(node), index.arity(node))
+
+    override val constructor: String get() = symbol.name
+
+    override val arity: Int get() = symbol.arity
+
+    /** The arguments; or `null` when not yet decoded. */
+    @Volatile private var argList: List<Term>? = null
+
+    /** The attachments; or `null` when not yet decoded. */
+    @Volatile private var attachmentsOrNull: Attachments? = null
+
+    /** The hash code; or 0 when not yet computed. */
+    @Volatile private var hash: Int = 0
+
+    override val args: List<Term>
+        get() = argList ?: index.subterms(node).asList().also { argList = it }
+
+    override val subterms: List<Term> get() = args
+
+    override val attachments: Attachments
+        get() = attachmentsOrNull ?: index.annotations(node).also { attachmentsOrNull = it }
+
+    override fun get(index: Int): Term = args[index]
+
+    override fun equals(other: Any?): Boolean = TermEquality.equals(this, other)
+
+    override val isHashed: Boolean get() = hash != 0
+
+    override fun setHashCode() {
+        hash = TermEquality.applHashCode(this)
+    }
+
+    override fun hashCode(): Int {
+        if (hash == 0) LazyTerms.computeHashCodes(this)
+        return hash
+    }
+
+    override fun toString(): String = LazyTerms.toString(this)
+}
+
+/**
+ * A list term whose elements and annotations are decoded on first access.
+ *
+ * The size of the list is known without decoding the elements.
+ * Computing the hash code decodes the whole term. The hash code and string representation
+ * are computed iteratively (see [LazyTerms]), so that deeply nested input does not overflow the call stack.
+ *
+ * @property index the index of the input
+ * @property node the node of the list in the index
+ * @property offset the number of elements of the indexed list that are not in this list
+ * @property root the list of the whole node, which holds the decoded elements; or `null` when this is that list
+ */
+internal class LazyListTerm private constructor(
+    private val index: LazyTermIndex,
+    private val node: Int,
+    private val offset: Int,
+    private val root: LazyListTerm?,
+) : ListTerm, LazyTerm {
+
+    /**
+     * Initializes a new instance of the [LazyListTerm] class.
+     *
+     * @param index the index of the input
+     * @param node the node of the list in the index
+     */
+    constructor(index: LazyTermIndex, node: Int) : this(index, node, 0, null)
+
+    /** The elements of the whole node; or `null` when not yet decoded. */
+    @Volatile private var elementArray: Array<Term>? = null
+
+    /** The elements; or `null` when not yet decoded. */
+    @Volatile private var elementList: List<Term>? = null
+
+    /** The attachments; or `null` when not yet decoded. */
+    @Volatile private var attachmentsOrNull: Attachments? = null
+
+    /** The hash code; or 0 when not yet computed. */
+    @Volatile private var hash: Int = 0
+
+    override val isEmpty: Boolean get() = index.arity(node) == offset
+
+    override val elements: List<Term>
+        get() = elementList ?: decodeElements().let { it.asList().subList(offset, it.size) }.also { elementList = it }
+
+    override val subterms: List<Term> get() = elements
+
+    override val attachments: Attachments
+        get() = attachmentsOrNull ?: (if (root == null) index.annotations(node) else Attachments.empty()).also { attachmentsOrNull = it }
+
+    override fun get(index: Int): Term = elements[index]
+
+    override fun sublist(offset: Int): ListTerm {
+        if (offset < 0 || offset > index.arity(node) - this.offset) throw IndexOutOfBoundsException("Offset $offset out of bounds.")
+        if (offset == 0) return this
+        return LazyListTerm(index, node, this.offset + offset, root ?: this)
+    }
+
+    /**
+     * Decodes the elements of the whole node, which are shared with the other lists of the node.
+     *
+     * @return the elements
+     */
+    private fun decodeElements(): Array<Term> {
+        if (root != null) return root.decodeElements()
+        return elementArray ?: index.subterms(node).also { elementArray = it }
+    }
+
+    override fun equals(other: Any?): Boolean = TermEquality.equals(this, other)
+
+    override val isHashed: Boolean get() = hash != 0
+
+    override fun setHashCode() {
+        hash = TermEquality.listHashCode(elements, attachments)
+    }
+
+    override fun hashCode(): Int {
+        if (hash == 0) LazyTerms.computeHashCodes(this)
+        return hash
+    }
+
+    override fun toString(): String = LazyTerms.toString(this)
+}
@@ -0,0 +1,84 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactory
+import java.io.Reader
+import java.nio.Buffer
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.Charset
+import java.nio.file.Path
+import java.nio.file.StandardOpenOption
+
+/**
+ * An ATerm reader that reads files by mapping them into memory.
+ *
+ * UTF-8 and ASCII files are parsed directly from their bytes, without decoding
+ * them to characters first, so that memory is only allocated for the resulting terms.
+ * Files smaller than [mappingThreshold] are read into a byte array instead,
+ * as that is cheaper than setting up a memory mapping.
+ *
+ * Files in other character sets, streams, and readers are read as by [ATermReader].
+ *
+ * Note that a mapped file remains mapped until its buffer is garbage collected,
+ * which on some platforms prevents the file from being deleted.
+ *
+ * @param termFactory the term factory to use
+ * @property mappingThreshold the minimum size of a file, in bytes, for it to be mapped into memory
+ */
+class MappedATermReader(
+    termFactory: TermFactory,
+    private val mappingThreshold: Long = DEFAULT_MAPPING_THRESHOLD,
+): TermReader {
+
+    companion object {
+        /** The default minimum size of a file, in bytes, for it to be mapped into memory. */
+        const val DEFAULT_MAPPING_THRESHOLD: Long = 64 * 1024
+    }
+
+    /** The reader that parses the terms. */
+    private val reader = ATermReader(termFactory)
+
+    override fun readFromString(s: String): Term? {
+        return reader.readFromString(s)
+    }
+
+    override fun read(reader: Reader): Term? {
+        return this.reader.read(reader)
+    }
+
+    override fun read(path: Path, charset: Charset): Term? {
+        if (charset != Charsets.UTF_8 && charset != Charsets.US_ASCII) return reader.read(path, charset)
+
+        FileChannel.open(path, StandardOpenOption.READ).use { channel ->
+            val size = channel.size()
+            // A buffer cannot be larger than 2 GiB
+            if (size > Int.MAX_VALUE) return reader.read(path, charset)
+
+            val buffer = if (size >= mappingThreshold) {
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size)
+            } else {
+                readFully(channel, size.toInt())
+            }
+            return reader.read(ByteATermLexer(buffer))
+        }
+    }
+
+    /**
+     * Reads the whole channel into a heap buffer.
+     *
+     * @param channel the channel to read from
+     * @param size the size of the channel, in bytes
+     * @return the buffer, positioned at its start
+     */
+    private fun readFully(channel: FileChannel, size: Int): ByteBuffer {
+        val buffer = ByteBuffer.allocate(size)
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // Keep reading
+        }
+        // Cast to Buffer, as ByteBuffer.flip() does not exist on Java 8
+        (buffer as Buffer).flip()
+        return buffer
+    }
+
+}
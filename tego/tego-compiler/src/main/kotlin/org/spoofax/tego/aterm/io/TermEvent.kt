@@ -0,0 +1,31 @@
+package org.spoofax.tego.aterm.io
+
+/**
+ * An event of a [TermEventReader].
+ */
+enum class TermEvent {
+    /** The start of a constructor application, whose name is [TermEventReader.constructor]. */
+    START_APPL,
+    /** The start of a list. */
+    START_LIST,
+    /** The start of a placeholder. */
+    START_PLACEHOLDER,
+    /** The start of the annotations of the preceding term. */
+    START_ANNOTATIONS,
+    /** The end of a constructor application, list, placeholder, or annotations. */
+    END,
+    /** A string, whose value is [TermEventReader.stringValue]. */
+    STRING,
+    /** An integer, whose value is [TermEventReader.intValue]. */
+    INT,
+    /** A real, whose value is [TermEventReader.realValue]. */
+    REAL,
+    /** The end of the input. */
+    END_OF_INPUT;
+
+    /** Whether this event starts a term with subterms. */
+    val isStart: Boolean get() = this == START_APPL || this == START_LIST || this == START_PLACEHOLDER
+
+    /** Whether this event is a term without subterms. */
+    val isValue: Boolean get() = this == STRING || this == INT || this == REAL
+}
@@ -0,0 +1,336 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.*
+import java.io.Reader
+
+/**
+ * A pull parser of ATerms.
+ *
+ * Each call to [next] reads the next [TermEvent] from the input, without building any terms,
+ * so inputs can be processed that do not fit in memory. The subterms of a constructor application,
+ * list, or placeholder are reported between its start event and its [TermEvent.END] event.
+ * The annotations of a term are reported after the term, between a [TermEvent.START_ANNOTATIONS]
+ * event and its [TermEvent.END] event.
+ *
+ * Selected subterms can be built with [readTerm], and skipped with [skip].
+ * For example, to build only the first argument of the term `Module(Header("a"), [...])`:
+ *
+ * ```
+ * events.next()                    // START_APPL Module
+ * events.next()                    // START_APPL Header
+ * val header = events.readTerm()   // Header("a")
+ * events.next()                    // START_LIST
+ * events.skip()
+ * events.next()                    // END
+ * ```
+ *
+ * @param lexer the lexer to read from
+ * @property termFactory the term factory used to build terms
+ */
+class TermEventReader internal constructor(
+    private val lexer: ATermLexer,
+    private val termFactory: TermFactory,
+) {
+
+    /**
+     * Initializes a new instance of the [TermEventReader] class
+     * that reads from the specified reader.
+     *
+     * @param reader the reader to read from
+     * @param termFactory the term factory used to build terms
+     */
+    constructor(reader: Reader, termFactory: TermFactory = TermFactoryImpl())
+        : this(CharATermLexer(reader), termFactory)
+
+    /**
+     * Initializes a new instance of the [TermEventReader] class
+     * that reads from the specified string.
+     *
+     * @param s the string to read from
+     * @param termFactory the term factory used to build terms
+     */
+    constructor(s: String, termFactory: TermFactory = TermFactoryImpl())
+        : this(CharATermLexer(s), termFactory)
+
+    /** The closing characters of the open terms and annotations, innermost last. */
+    private var closers = CharArray(16)
+    /** The number of open terms and annotations. */
+    private var depth = 0
+    /** Whether the innermost open term or annotations have no subterms yet. */
+    private var isFirst = true
+    /** Whether a term was just completed, which may be followed by annotations. */
+    private var afterTerm = false
+    /** Whether the completed term can have annotations (annotations cannot). */
+    private var annotationsAllowed = false
+    /** Whether the current constructor application has no arguments and is ended by the next event. */
+    private var pendingEnd = false
+    /** Whether the top-level term has been started. */
+    private var started = false
+
+    /** The current event; or `null` when [next] has not been called. */
+    var event: TermEvent? = null
+        private set
+
+    /** The constructor name of the current [TermEvent.START_APPL] event. */
+    var constructor: String = ""
+        private set
+
+    /** The value of the current [TermEvent.STRING] event. */
+    var stringValue: String = ""
+        private set
+
+    /** The value of the current [TermEvent.INT] event. */
+    val intValue: Int get() = lexer.intValue
+
+    /** The value of the current [TermEvent.REAL] event. */
+    val realValue: Double get() = lexer.realValue
+
+    /** The number of terms and annotations that are open at the current event. */
+    val level: Int get() = depth
+
+    /** The offset in the input of the first character of the term of the current start or value event. */
+    internal var termOffset: Long = 0
+        private set
+
+    /**
+     * Reads the next event.
+     *
+     * @return the read event
+     * @throws FormatException if the input is not a valid term
+     */
+    fun next(): TermEvent {
+        val event = advance()
+        this.event = event
+        return event
+    }
+
+    /**
+     * Builds the term that starts at the current event, including its annotations.
+     *
+     * The current event must be a start event or a value event, and the current event
+     * will be the last event of the term or its annotations.
+     *
+     * @return the built term
+     * @throws FormatException if the input is not a valid term
+     */
+    fun readTerm(): Term {
+        val startEvent = event
+        require(startEvent != null && (startEvent.isStart || startEvent.isValue)) { "Expected the start of a term, got $startEvent." }
+
+        // The nodes whose subterms or annotations are being read, innermost last
+        val nodes = ArrayList<Node>()
+        var event: TermEvent = startEvent
+        while (true) {
+            var completed: Node? = null
+            var term: Term? = null
+            when (event) {
+                TermEvent.START_APPL -> nodes.add(Node(event, constructor))
+                TermEvent.START_LIST, TermEvent.START_PLACEHOLDER -> nodes.add(Node(event, null))
+                TermEvent.STRING -> completed = Node(event, stringValue)
+                TermEvent.INT -> completed = Node(event, intValue)
+                TermEvent.REAL -> completed = Node(event, realValue)
+                TermEvent.END -> {
+                    val node = nodes.removeAt(nodes.size - 1)
+                    if (node.event == TermEvent.START_ANNOTATIONS) {
+                        term = build(node.value as Node, node.subterms)
+                    } else {
+                        completed = node
+                    }
+                }
+                else -> throw FormatException("Unexpected event $event.")
+            }
+
+            if (completed != null) {
+                if (startAnnotations()) {
+                    // The term is built when its annotations have been read
+                    this.event = TermEvent.START_ANNOTATIONS
+                    nodes.add(Node(TermEvent.START_ANNOTATIONS, completed))
+                } else {
+                    term = build(completed, emptyList())
+                }
+            }
+            if (term != null) {
+                if (nodes.isEmpty()) return term
+                nodes[nodes.size - 1].subterms.add(term)
+            }
+            event = next()
+        }
+    }
+
+    /**
+     * Skips the term that starts at the current event, including its annotations.
+     *
+     * The current event must be a start event or a value event, and the current event
+     * will be the last event of the term or its annotations.
+     *
+     * @throws FormatException if the input is not a valid term
+     */
+    fun skip() {
+        val startEvent = event
+        require(startEvent != null && (startEvent.isStart || startEvent.isValue)) { "Expected the start of a term, got $startEvent." }
+        // A constructor application without arguments is not open; its end is pending instead
+        val level = if (startEvent.isStart && !pendingEnd) depth - 1 else depth
+        while (true) {
+            while (depth > level || pendingEnd) next()
+            if (!startAnnotations()) return
+            event = TermEvent.START_ANNOTATIONS
+        }
+    }
+
+    /**
+     * Determines the next event.
+     *
+     * @return the next event
+     */
+    private fun advance(): TermEvent {
+        if (pendingEnd) {
+            pendingEnd = false
+            completeTerm(true)
+            return TermEvent.END
+        }
+        if (startAnnotations()) return TermEvent.START_ANNOTATIONS
+
+        if (depth == 0) {
+            if (started) return TermEvent.END_OF_INPUT
+            started = true
+            val ch = lexer.skipWhitespace()
+            if (ch == ATermLexer.EOF) return TermEvent.END_OF_INPUT
+            return startTerm(ch.toChar())
+        }
+
+        val closer = closers[depth - 1]
+        var ch = lexer.skipWhitespace()
+        if (ch == closer.code && !(isFirst && closer == '>')) {
+            lexer.read()
+            depth -= 1
+            isFirst = false
+            completeTerm(closer != '}')
+            return TermEvent.END
+        }
+        if (!isFirst) {
+            if (ch != ','.code || closer == '>') throw FormatException("Term sequence didn't end with $closer at offset ${lexer.offset}.")
+            lexer.read()
+            ch = lexer.skipWhitespace()
+        }
+        if (ch == ATermLexer.EOF) throw FormatException("Unexpected end of stream.")
+        isFirst = false
+        return startTerm(ch.toChar())
+    }
+
+    /**
+     * Starts reading a term.
+     *
+     * @param ch the first character of the term
+     * @return the event of the term
+     */
+    private fun startTerm(ch: Char): TermEvent {
+        termOffset = lexer.offset
+        return when {
+            ch == '[' -> {
+                lexer.read()
+                open(']')
+                TermEvent.START_LIST
+            }
+            ch == '(' -> {
+                lexer.read()
+                open(')')
+                constructor = ""
+                TermEvent.START_APPL
+            }
+            ch == '<' -> {
+                lexer.read()
+                open('>')
+                TermEvent.START_PLACEHOLDER
+            }
+            ch == '"' -> {
+                stringValue = lexer.readString()
+                completeTerm(true)
+                TermEvent.STRING
+            }
+            ch == '.' || ch in '0'..'9' || (ch == '-' && lexer.peek(1).let { ATermLexer.isDigit(it) || it == '.'.code }) -> {
+                val isReal = lexer.readNumber()
+                completeTerm(true)
+                if (isReal) TermEvent.REAL else TermEvent.INT
+            }
+            ch.isLetter() -> {
+                constructor = lexer.readIdentifier()
+                if (lexer.skipWhitespace() == '('.code) {
+                    lexer.read()
+                    open(')')
+                } else {
+                    pendingEnd = true
+                }
+                TermEvent.START_APPL
+            }
+            else -> throw FormatException("Invalid term starting with $ch.")
+        }
+    }
+
+    /**
+     * Opens a term or annotations.
+     *
+     * @param closer the closing character
+     */
+    private fun open(closer: Char) {
+        if (depth == closers.size) closers = closers.copyOf(closers.size * 2)
+        closers[depth++] = closer
+        isFirst = true
+    }
+
+    /**
+     * Marks the current term as completed.
+     *
+     * @param canHaveAnnotations whether the term can be followed by annotations
+     */
+    private fun completeTerm(canHaveAnnotations: Boolean) {
+        afterTerm = true
+        annotationsAllowed = canHaveAnnotations
+    }
+
+    /**
+     * Starts reading the annotations of the term that was just completed, if any.
+     *
+     * @return `true` when annotations were started; otherwise, `false`
+     */
+    private fun startAnnotations(): Boolean {
+        if (!afterTerm) return false
+        afterTerm = false
+        if (!annotationsAllowed || !lexer.tryRead('{')) return false
+        open('}')
+        return true
+    }
+
+    /**
+     * Builds a term.
+     *
+     * @param node the node of the term
+     * @param annotations the annotations of the term
+     * @return the built term
+     */
+    private fun build(node: Node, annotations: List<Term>): Term {
+        return when (node.event) {
+            TermEvent.START_APPL -> termFactory.newAppl(node.value as String, node.subterms, annotations)
+            TermEvent.START_LIST -> termFactory.newList(node.subterms, annotations)
+            TermEvent.START_PLACEHOLDER -> termFactory.newPlaceholder(node.subterms.single(), annotations)
+            TermEvent.STRING -> termFactory.newString(node.value as String, annotations)
+            TermEvent.INT -> termFactory.newInt(node.value as Int, annotations)
+            TermEvent.REAL -> termFactory.newReal(node.value as Double, annotations)
+            else -> throw IllegalStateException("Unexpected node: ${node.event}")
+        }
+    }
+
+    /**
+     * A term whose subterms or annotations are being read by [readTerm].
+     *
+     * @property event the start or value event of the term; or [TermEvent.START_ANNOTATIONS] for annotations
+     * @property value the constructor name or value of the term; or the annotated term's node for annotations
+     */
+    private class Node(
+        val event: TermEvent,
+        val value: Any?,
+    ) {
+        /** The subterms or annotations that have been read. */
+        val subterms = ArrayList<Term>()
+    }
+
+}
@@ -0,0 +1,25 @@
+package org.spoofax.tego.aterm.io
+
+import org.spoofax.tego.aterm.Term
+import java.nio.file.Path
+import java.time.Duration
+
+/**
+ * The result of reading a term from a path, as returned by [TermReader.readAll].
+ *
+ * @property path the path that was read
+ * @property term the read term; or `null` if there was no term to be read, or reading failed
+ * @property error the exception that was thrown while reading; or `null` if reading succeeded
+ * @property elapsed the time it took to read the term
+ */
+data class TermReadResult(
+    val path: Path,
+    val term: Term?,
+    val error: Exception?,
+    val elapsed: Duration,
+) {
+
+    /** Whether reading succeeded. */
+    val isSuccess: Boolean get() = error == null
+
+}
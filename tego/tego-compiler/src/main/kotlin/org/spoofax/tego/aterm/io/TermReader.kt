@@ -5,6 +5,7 @@ import java.io.*
 import java.nio.charset.Charset
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.Executor
 import kotlin.jvm.Throws
 import kotlin.reflect.KClass
 
@@ -72,6 +73,31 @@ interface TermReader {
     fun read(path: Path, charset: Charset = Charsets.UTF_8): Term?
         = Files.newBufferedReader(path, charset).use { read(it) }
 
+    /**
+     * Reads terms from the specified paths concurrently.
+     *
+     * The reads are all submitted to the executor before this method returns,
+     * and the results are returned in the order in which the reads complete.
+     * A read that fails does not stop the other reads; its result has the thrown exception.
+     * As this reader is called from multiple threads, it must be able to read concurrently,
+     * and its term factory must be thread-safe.
+     *
+     * @param paths the paths to read from
+     * @param charset the character set to use
+     * @param executor the executor that runs the reads; or `null` to use virtual threads when supported
+     * by the JVM, with at most one read in flight for each available processor,
+     * or otherwise a new pool with a thread for each available processor
+     * @return the results of the reads, in completion order; this sequence can be iterated only once
+     */
+    fun readAll(paths: Collection<Path>, charset: Charset = Charsets.UTF_8, executor: Executor? = null): Sequence<TermReadResult> {
+        val reads = if (executor != null) {
+            ConcurrentTermReads(this, paths, charset, executor, null)
+        } else {
+            ConcurrentTermReads.withNewExecutor(this, paths, charset)
+        }
+        return reads.asSequence()
+    }
+
     /**
      * Reads a term from the specified input stream.
      *
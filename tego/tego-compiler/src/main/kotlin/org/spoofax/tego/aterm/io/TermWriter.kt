@@ -19,8 +19,11 @@ interface TermWriter {
      * @return the string
      */
     @Throws(IOException::class)
-    fun writeToString(term: Term): String
-        = StringWriter().use { write(term, it) }.toString()
+    fun writeToString(term: Term): String {
+        val writer = StringWriter()
+        write(term, writer)
+        return writer.toString()
+    }
 
     /**
      * Writes a term to the specified path.
@@ -74,6 +74,9 @@ class TegoCompiler(
         val strategyAssembler: StrategyAssembler,
     ) {
 
+        /** Normalizes the definition bodies to ANF. */
+        private val normalizer = ExpNormalizer()
+
         /**
          * Compiles a definition.
          *
@@ -93,9 +96,9 @@ class TegoCompiler(
          */
         fun compileDefinition(def: StrategyDef): JvmClass {
             val decl = symbolTable[def.pointer] as StrategyTypeDecl? ?: throw IllegalStateException("No declaration found for definition: ${def.simpleName}")
-            require(def.body.isAnf) { "The definition body must be in ANF." }
+            val anfDef = if (def.body.isAnf) def else def.copy(body = normalizer.normalize(def.body)).also { it.module = def.module }
 
-            val cls = strategyAssembler.assembleStrategy(decl, def)
+            val cls = strategyAssembler.assembleStrategy(decl, anfDef)
             classWriter.accept(cls)
             return cls
         }
@@ -1,142 +1,151 @@
 package org.spoofax.tego.ir
 
+/**
+ * Performs A-normalization on the expression IR.
+ *
+ * After normalizing the IR to ANF (Administrative Normal Form),
+ * almost all expressions operate only on immediate expressions, that is,
+ * expressions for which no further computation is necessary, such
+ * as a constant value or a variable reference.
+ *
+ * The computations themselves will have been lifted out of the expression
+ * into surrounding `let`-expressions. The lifted bindings are appended to a single context,
+ * which is only turned into nested `let`-expressions at the end, so normalization takes time
+ * linear in the size of the expression. As lifting a binding widens its scope, the variables
+ * bound by `let`-expressions are renamed to fresh names, which contain a `$` that cannot
+ * occur in source names.
+ *
+ * This class is not thread-safe.
+ */
+class ExpNormalizer {
 
-//typealias Context = List<Assignment>
-//typealias Assignment = Pair<String, Exp>
+    /** The pointer of the fresh temporary variables, which are never resolved through the symbol table. */
+    private val freshPointer = TermIndex("", -1)
 
-///**
-// * Performs A-normalization on the expression IR.
-// *
-// * After normalizing the IR to ANF (Administrative Normal Form),
-// * almost all expressions operate only on immediate expressions, that is,
-// * expressions for which no further computation is necessary, such
-// * as a constant value or a variable reference.
-// *
-// * The computations themselves will have been lifted out of the expression
-// * into surrounding `let`-expressions.
-// */
-//class ExpNormalizer {
-//
-//    private data class R(
-//        val exp : Exp,
-//        val ctx : Context,
-//    )
-//
-//    private fun Iterable<R>.unzip(): Pair<List<Exp>, List<Context>> {
-//        val expectedSize = if (this is Collection<*>) this.size else 10
-//        val expList = ArrayList<Exp>(expectedSize)
-//        val ctxList = ArrayList<Context>(expectedSize)
-//        for ((e, c) in this) {
-//            expList.add(e)
-//            ctxList.add(c)
-//        }
-//        return expList to ctxList
-//    }
-//
-//    /**
-//     * Normalizes the AST to ANF (Administrative Normal Form).
-//     *
-//     * @param exp the AST to normalize
-//     * @return the normalized AST
-//     */
-//    fun normalize(exp: Exp): Exp {
-//        val (ans, ansCtx) = toComp(exp)
-//        val newExp = ansCtx.foldRight(ans) { (bind, exp), body -> Let(bind, exp, body, body.type) }
-//        assert(newExp.isAnf)
-//        return newExp
-//    }
-//
-//    /**
-//     * Normalizes an expression into its compound expression form
-//     * and a corresponding context that computes the values for the immediate variables.
-//     *
-//     * @param exp the expression to normalize
-//     * @return a pair of a normalized compound expression and a context
-//     */
-//    private fun toComp(exp: Exp): R {
-//        val (newExp, newCtx) = when (exp) {
-//            // Compounds
-//            is Seq -> TODO()
-//            is Let -> {
-//                val (bnd, bndCtx) = toComp(exp.varExp)
-//                val (bdy, bdyCtx) = toComp(exp.body)
-//                R(bdy, (bndCtx + bdyCtx + (exp.varName to bnd)))
-//            }
-//            is Apply -> {
-//                val (fnc, fncCtx) = toImm(exp.strategy)
-//                val (args, argCtxs) = exp.arguments.map { toImm(it) }.unzip()
-//                R(Apply(fnc, args, exp.type), (fncCtx + argCtxs.flatten()))
-//            }
-//            is Eval -> {
-//                val (str, strCtx) = toImm(exp.strategy)
-//                val (inp, inpCtx) = toImm(exp.input)
-//                R(Eval(str, inp, exp.type), (strCtx + inpCtx))
-//            }
-////            is If -> {
-////                val (cnd, cndCtx) = toImm(exp.conditionExp)
-////                val (thn, thnCtx) = toComp(exp.onSuccessExp)
-////                val (els, elsCtx) = toComp(exp.onFailExp)
-////                If(cnd, thn, els) to (thnCtx + elsCtx + cndCtx)
-////            }
-////            is Lam -> {
-////                val (bdy, bdyCtx) = toComp(exp.bodyExp)
-////                Lam(exp.paramId, exp.paramType, bdy) to (bdyCtx)
-////            }
-//            // Immediates
-//            is Const -> toImm(exp)
-//            is Var -> toImm(exp)
-//            else -> TODO("Unsupported expression: $exp")
-//        }
-//        assert(newExp.isComp)
-//        return R(newExp, newCtx)
-//    }
-//
-//    /**
-//     * Normalizes an expression into its immediate expression form
-//     * and a corresponding context that computes the values for the immediate variables.
-//     *
-//     * @param exp the expression to normalize
-//     * @return a pair of a normalized immediate expression and a context
-//     */
-//    private fun toImm(exp: Exp): R {
-//        val (newExp, newCtx) = when (exp) {
-//            // Constant Immediates
-//            is IntLit -> R(exp, listOf())
-//            is StringLit -> R(exp, listOf())
-//            is AnyInst -> R(exp, listOf())
-//            is Const -> TODO("Unsupported constant: $exp")
-//            // Variable Immediates
-//            is Var -> R(exp, listOf())
-//            // Compounds
-//            else -> wrapToImm(exp)
-//        }
-//        assert(newExp.isImm)
-//        return R(newExp, newCtx)
-//    }
-//
-//    /**
-//     * Wraps a compound expression in a `let`-expression
-//     * (implicitly, in the context) to make it into an immediate expression.
-//     *
-//     * @param exp the compound expression
-//     * @return a pair of a fresh immediate variable and a context
-//     */
-//    private fun wrapToImm(exp: Exp): R {
-//        val (c, ctx) = toComp(exp)
-//        val tmp = fresh()
-//        return R(Var(tmp, exp.type), (ctx + (tmp to c)))
-//    }
-//
-//    private var counter: Int = 0
-//
-//    /**
-//     * Provides a fresh variable.
-//     *
-//     * @return the name of the fresh variable
-//     */
-//    private fun fresh() : String {
-//        val name = "var_$counter"
-//        counter += 1
-//        return name
-//    }
-//}
\ No newline at end of file
+    /** The bindings lifted out of the expression being normalized, outermost first. */
+    private val context = ArrayList<Binding>()
+
+    /** The fresh names of the `let`-bound variables in scope, by their original names. */
+    private val renames = HashMap<String, String>()
+
+    /** The number of fresh names that have been created. */
+    private var counter: Int = 0
+
+    /**
+     * Normalizes the AST to ANF (Administrative Normal Form).
+     *
+     * @param exp the AST to normalize
+     * @return the normalized AST
+     */
+    fun normalize(exp: Exp): Exp {
+        try {
+            var newExp = toComp(exp)
+            for (i in context.size - 1 downTo 0) {
+                val (name, bound) = context[i]
+                newExp = Let(name, bound, newExp, newExp.type)
+            }
+            return newExp
+        } finally {
+            context.clear()
+            renames.clear()
+        }
+    }
+
+    /**
+     * Normalizes an expression into its compound expression form,
+     * and appends the bindings that compute the values of its immediate variables to the context.
+     *
+     * Chains of `let`-expressions are normalized iteratively,
+     * so that their length is not limited by the call stack.
+     *
+     * @param exp the expression to normalize
+     * @return the normalized compound expression
+     */
+    private fun toComp(exp: Exp): Exp {
+        var current = exp
+        // The original names of the variables bound in this chain, and the names they shadowed
+        var shadowed: ArrayList<Pair<String, String?>>? = null
+        while (current is Let) {
+            val bound = toComp(current.varExp)
+            val name = fresh(current.varName)
+            context.add(Binding(name, bound))
+            val previous = renames.put(current.varName, name)
+            (shadowed ?: ArrayList<Pair<String, String?>>().also { shadowed = it }).add(current.varName to previous)
+            current = current.body
+        }
+
+        val newExp = when (current) {
+            is Seq -> Seq(toImm(current.e1), toImm(current.e2), current.type)
+            is Apply -> Apply(toImm(current.strategy), current.arguments.map { toImm(it) }, current.type)
+            is Eval -> Eval(toImm(current.strategy), toImm(current.input), current.type)
+            is Var, is Const -> toImm(current)
+            is Let -> throw IllegalStateException("Unexpected let-expression: $current")
+        }
+
+        // Restore the scope
+        val names = shadowed
+        if (names != null) {
+            for (i in names.size - 1 downTo 0) {
+                val (name, previous) = names[i]
+                if (previous != null) renames[name] = previous else renames.remove(name)
+            }
+        }
+        assert(newExp.isComp)
+        return newExp
+    }
+
+    /**
+     * Normalizes an expression into its immediate expression form,
+     * and appends the bindings that compute the values of its immediate variables to the context.
+     *
+     * @param exp the expression to normalize
+     * @return the normalized immediate expression
+     */
+    private fun toImm(exp: Exp): Exp = when (exp) {
+        // Constant Immediates
+        is Const -> exp
+        // Variable Immediates
+        is Var -> renames[exp.name]?.let { exp.copy(name = it) } ?: exp
+        // Compounds
+        else -> wrapToImm(exp)
+    }
+
+    /**
+     * Binds a compound expression to a fresh variable in the context
+     * to make it into an immediate expression.
+     *
+     * @param exp the compound expression
+     * @return the immediate expression
+     */
+    private fun wrapToImm(exp: Exp): Exp {
+        val comp = toComp(exp)
+        if (comp.isImm) return comp
+        val tmp = fresh("tmp")
+        context.add(Binding(tmp, comp))
+        return Var(tmp, exp.type, freshPointer)
+    }
+
+    /**
+     * Provides a fresh variable name.
+     *
+     * @param name the original name
+     * @return the name of the fresh variable
+     */
+    private fun fresh(name: String): String {
+        val freshName = "$name\$$counter"
+        counter += 1
+        return freshName
+    }
+
+    /**
+     * A binding in the context.
+     *
+     * @property name the name of the bound variable
+     * @property exp the compound expression bound to the variable
+     */
+    private data class Binding(
+        val name: String,
+        val exp: Exp,
+    )
+
+}
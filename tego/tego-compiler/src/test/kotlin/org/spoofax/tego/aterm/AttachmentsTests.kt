@@ -0,0 +1,54 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+/**
+ * Tests the [Attachments] implementations.
+ */
+class AttachmentsTests {
+
+    private val factory = TermFactoryImpl()
+
+    private data class Origin(val name: String) : Attachment
+    private data class Type(val name: String) : Attachment
+
+    @Test
+    fun `should get, set, and remove attachments by class`() {
+        // Arrange
+        val annotations = Annotations.of(factory.newInt(1))
+        val attachments = Attachments.of(annotations, Origin("a"))
+
+        // Act
+        val replaced = attachments.set(Origin("b")).set(Type("T"))
+        val removed = replaced.remove(Origin::class.java)
+
+        // Assert
+        assertEquals(Origin("a"), attachments.get(Origin::class))
+        assertNull(attachments.get(Type::class))
+        assertEquals(Origin("b"), replaced.get(Origin::class))
+        assertEquals(Type("T"), replaced.get(Type::class))
+        assertSame(annotations, replaced.get(Annotations::class))
+        assertNull(removed.get(Origin::class))
+        assertEquals(Attachments.of(Type("T"), annotations), removed)
+        assertEquals(Attachments.of(annotations, Type("T")).hashCode(), removed.hashCode())
+    }
+
+    @Test
+    fun `should remove annotations when setting empty annotations`() {
+        // Arrange
+        val attachments = Attachments.of(Annotations.of(factory.newInt(1)), Origin("a"))
+
+        // Act
+        val actual = attachments.set(Annotations.empty())
+
+        // Assert
+        assertEquals(Attachments.of(Origin("a")), actual)
+        assertSame(Annotations.empty(), Annotations.get(factory.newInt(2)))
+        assertTrue(attachments.set(Annotations.empty()).remove(Origin::class.java).isEmpty())
+    }
+
+}
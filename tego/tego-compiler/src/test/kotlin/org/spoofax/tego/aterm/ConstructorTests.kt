@@ -0,0 +1,61 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+/**
+ * Tests the [Constructor] class.
+ */
+class ConstructorTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `should intern symbols by name and arity`() {
+        // Act
+        val cons = Constructor.of("Cons", 2)
+        val cons1 = Constructor.of("Cons", 1)
+
+        // Assert
+        assertSame(cons, Constructor.of(String(charArrayOf('C', 'o', 'n', 's')), 2))
+        assertNotSame(cons, cons1)
+        assertSame(cons.name, cons1.name)
+        assertSame(cons, Constructor.byId(cons.id))
+        assertSame(cons, factory.newAppl("Cons", factory.newInt(1), factory.newList()).symbol)
+    }
+
+    @Test
+    fun `should intern symbols of large arities`() {
+        // Act
+        val tuple = Constructor.of("", 100_000)
+
+        // Assert
+        assertSame(tuple, Constructor.of("", 100_000))
+        assertNotSame(tuple, Constructor.of("", 100_001))
+        assertSame(tuple, Constructor.byId(tuple.id))
+        assertEquals(100_000, tuple.arity)
+    }
+
+    @Test
+    fun `should reject a symbol whose arity does not match the arguments`() {
+        // Act/Assert
+        assertThrows(IllegalArgumentException::class.java) {
+            factory.newAppl(Constructor.of("Cons", 2), listOf(factory.newInt(1)))
+        }
+    }
+
+    @Test
+    fun `should create the same term from a symbol as from its name`() {
+        // Act
+        val term = factory.newAppl(Constructor.of("Some", 1), listOf(factory.newInt(1)))
+
+        // Assert
+        assertEquals(factory.newAppl("Some", factory.newInt(1)), term)
+        assertEquals("Some", term.constructor)
+        assertEquals(1, term.arity)
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.io.ATermReader
+import org.spoofax.tego.aterm.io.LazyATermReader
+
+/**
+ * Tests the [Fingerprint] class.
+ */
+class FingerprintTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `equal terms should have the same stable fingerprint`() {
+        // Arrange
+        val text = """Module("m", [Def("f"{Type("int")}, [1, 2.5, -0.0], <Hole()>), ("a", 3)]){42}"""
+
+        // Act
+        val fingerprint = ATermReader(factory).readFromString(text)!!.fingerprint
+        val lazyFingerprint = LazyATermReader(factory).readFromString(text)!!.fingerprint
+        val arenaFingerprint = ATermReader(TermArena().factory).readFromString(text)!!.fingerprint
+
+        // Assert
+        assertEquals(Fingerprint(-0xe464684ea795961L, 0x18cbab020ffe315fL), fingerprint)
+        assertEquals("f1b9b97b1586a69f18cbab020ffe315f", fingerprint.toString())
+        assertEquals(fingerprint, lazyFingerprint)
+        assertEquals(fingerprint, arenaFingerprint)
+    }
+
+    @Test
+    fun `different terms should have different fingerprints`() {
+        // Arrange
+        val terms = listOf(
+            factory.newInt(1),
+            factory.newString("1"),
+            factory.newReal(0.0),
+            factory.newReal(-0.0),
+            factory.newAppl("Int", factory.newInt(1)),
+            factory.newAppl("Int", listOf(factory.newInt(1)), listOf(factory.newInt(1))),
+            factory.newList(factory.newInt(1)),
+            factory.newList(factory.newInt(1), factory.newInt(1)),
+            factory.newList(factory.newList(factory.newInt(1))),
+            factory.newAppl("", factory.newInt(1)),
+            factory.newVar("x"),
+        )
+
+        // Act
+        val fingerprints = terms.map { it.fingerprint }
+
+        // Assert
+        assertEquals(terms.size, fingerprints.toSet().size)
+    }
+
+    @Test
+    fun `should compute the fingerprint of deeply nested terms`() {
+        // Arrange
+        var term: Term = factory.newInt(0)
+        var other: Term = factory.newInt(1)
+        repeat(100_000) {
+            term = factory.newAppl("Neg", term)
+            other = factory.newAppl("Neg", other)
+        }
+
+        // Act
+        val fingerprint = term.fingerprint
+
+        // Assert
+        assertNotEquals(other.fingerprint, fingerprint)
+        assertEquals(Fingerprint.of(factory.newAppl("Neg", (term as ApplTerm)[0])), fingerprint)
+    }
+
+}
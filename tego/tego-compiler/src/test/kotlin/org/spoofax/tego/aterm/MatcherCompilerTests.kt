@@ -0,0 +1,87 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+
+/**
+ * Tests the [MatcherCompiler] class.
+ */
+class MatcherCompilerTests {
+
+    private val factory = TermFactoryImpl()
+
+    private val terms = factory.run { listOf(
+        newAppl("Let", newString("x"), newAppl("Int", newInt(1)), newAppl("Var", newString("x"))),
+        newAppl("Let", newString("x"), newAppl("Int", newString("1")), newAppl("Var", newString("x"))),
+        newAppl("Var", newString("y")),
+        newAppl("Var", newInt(1)),
+        newAppl("Var"),
+        newTuple(newInt(1), newList(newInt(2))),
+        newList(newInt(1)),
+        newString("s"),
+        newInt(3),
+    ) }
+
+    @Test
+    fun `should give the same results as the matcher`() {
+        // Arrange
+        val matcher: Matcher<String> =
+            Matcher.appl("Let", Matcher.stringValue(), Matcher.appl("Int", Matcher.intValue()), Matcher.any()) { _, x, i, _ -> "let $x = $i" } or
+            Matcher.appl("Var", Matcher.stringValue()) { _, x -> "var $x" } or
+            Matcher.tuple(Matcher.int(), Matcher.listElems()) { _, _, elems -> "tuple ${elems.size}" } or
+            Matcher.intValue { _, i -> "int $i" } or
+            Matcher { term -> if (term is ApplTerm) "other ${term.constructor}" else null }
+
+        // Act
+        val compiled = MatcherCompiler().compile(matcher)
+
+        // Assert
+        assertEquals(terms.map { matcher.match(it) }, terms.map { compiled.match(it) })
+        assertEquals(listOf(
+            "let x = Int(1)", "other Let", "var y", "other Var", "other Var", "tuple 1", null, null, "int 3"
+        ), terms.map { compiled.match(it) })
+    }
+
+    @Test
+    fun `should compile the alternatives of a matcher set`() {
+        // Arrange
+        val matcher = Matcher.switch(
+            Matcher.appl("Var", Matcher.stringValue()) { _, x -> "var $x" },
+            Matcher.appl("Var", Matcher.any()) { _, _ -> "var" },
+            Matcher.list().map { "list" },
+            Matcher.stringValue { _, s -> "string $s" },
+        )
+
+        // Act
+        val compiled = MatcherCompiler().compile(matcher)
+
+        // Assert
+        assertEquals(terms.map { matcher.match(it) }, terms.map { compiled.match(it) })
+        assertEquals(listOf(null, null, "var y", "var", null, null, "list", "string s", null), terms.map { compiled.match(it) })
+    }
+
+    @Test
+    fun `should pass the results of the argument matchers to the transform for each arity`() {
+        // Arrange
+        val i = Matcher.intValue()
+        val matchers: List<Matcher<String>> = listOf(
+            Matcher.appl("F") { t: ApplTerm -> t.constructor },
+            Matcher.appl("F", i) { t, a -> "${t.constructor}$a" },
+            Matcher.appl("F", i, i) { t, a, b -> "${t.constructor}$a$b" },
+            Matcher.appl("F", i, i, i) { t, a, b, c -> "${t.constructor}$a$b$c" },
+            Matcher.appl("F", i, i, i, i) { t, a, b, c, d -> "${t.constructor}$a$b$c$d" },
+            Matcher.appl("F", i, i, i, i, i) { t, a, b, c, d, e -> "${t.constructor}$a$b$c$d$e" },
+        )
+        val matcher = matchers.reduce { a, b -> a or b }
+        val terms = (0..6).map { arity -> factory.newAppl("F", (1..arity).map { factory.newInt(it) }) } +
+            factory.newAppl("F", factory.newInt(1), factory.newString("2"))
+
+        // Act
+        val compiled = MatcherCompiler().compile(matcher)
+
+        // Assert
+        assertEquals(terms.map { matcher.match(it) }, terms.map { compiled.match(it) })
+        assertEquals(listOf("F", "F1", "F12", "F123", "F1234", "F12345", null, null), terms.map { compiled.match(it) })
+    }
+
+}
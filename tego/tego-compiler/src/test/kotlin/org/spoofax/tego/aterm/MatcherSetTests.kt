@@ -0,0 +1,67 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+
+/**
+ * Tests the [MatcherSet] class.
+ */
+class MatcherSetTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `should return the result of the first matching alternative, like or`() {
+        // Arrange
+        val matchers = listOf<Matcher<String>>(
+            Matcher.appl("Nil", transform = { _ -> "nil" }),
+            Matcher.appl("Cons", Matcher.intValue(), Matcher.any()) { _, i, _ -> "cons $i" },
+            Matcher { term -> if (term is ApplTerm && term.arity == 2) "pair ${term.constructor}" else null },
+            Matcher.appl("Cons", Matcher.any(), Matcher.any()) { _, _, _ -> "cons" },
+            Matcher.tuple(Matcher.any()) { _, _ -> "tuple" },
+            Matcher.stringValue { _, s -> "string $s" },
+            Matcher.list().map { "list" },
+        )
+        val set = Matcher.switch(*matchers.toTypedArray())
+        val chain = matchers.reduce { a, b -> a or b }
+        val terms = factory.run { listOf(
+            newAppl("Nil"),
+            newAppl("Cons", newInt(1), newAppl("Nil")),
+            newAppl("Cons", newString("a"), newAppl("Nil")),
+            newAppl("Cons", newString("a")),
+            newTuple(newInt(1)),
+            newString("a"),
+            newList(),
+            newInt(1),
+        ) }
+
+        // Act
+        val actual = terms.map { set.match(it) }
+
+        // Assert
+        assertEquals(terms.map { chain.match(it) }, actual)
+        assertEquals(listOf("nil", "cons 1", "pair Cons", null, "tuple", "string a", "list", null), actual)
+    }
+
+    @Test
+    fun `should evaluate shared argument matchers at most once`() {
+        // Arrange
+        var evaluations = 0
+        val body = Matcher { term -> evaluations += 1; term as? ApplTerm }
+        val set = Matcher.switch(
+            Matcher.appl("Let", Matcher.stringValue(), body, Matcher.intValue()) { _, _, _, _ -> 1 },
+            Matcher.appl("Let", Matcher.stringValue(), body, Matcher.stringValue()) { _, _, _, _ -> 2 },
+            Matcher.appl("Let", Matcher.any(), body, Matcher.any()) { _, _, _, _ -> 3 },
+        )
+
+        // Act
+        val actual = set.match(factory.newAppl("Let", factory.newString("x"), factory.newAppl("Var"), factory.newReal(1.0)))
+
+        // Assert
+        assertEquals(3, actual)
+        assertEquals(1, evaluations)
+        assertNull(set.match(factory.newAppl("Let")))
+    }
+
+}
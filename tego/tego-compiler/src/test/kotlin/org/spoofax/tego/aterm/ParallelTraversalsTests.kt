@@ -0,0 +1,60 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Tests the [ParallelTraversals] class.
+ */
+class ParallelTraversalsTests {
+
+    private val factory = TermFactoryImpl()
+    private val sequential = Traversals(factory)
+    private val parallel = ParallelTraversals(factory, ForkJoinPool(4), splitDepth = 3)
+
+    /** Matches `Int(i)`, giving `i`. */
+    private val intLit = Matcher.appl("Int", Matcher.intValue()) { _, i -> i }
+
+    /** Rewrites `Add(Int(a), Int(b))` to `Int(a + b)`. */
+    private val add = Matcher.appl("Add", intLit, intLit) { _, a, b -> int(a + b) }
+
+    /** Rewrites `Int(i)` to `Int(i * 2)`, and leaves other terms unchanged. */
+    private val double = Matcher { term: Term -> intLit.match(term)?.let { int(it * 2) } ?: term }
+
+    private fun int(i: Int) = factory.newAppl("Int", factory.newInt(i))
+
+    /** Builds a module with a sum of the specified numbers. */
+    private fun module(i: Int): Term {
+        var sum: Term = int(i)
+        for (j in 1..100) sum = factory.newAppl("Add", sum, int(j))
+        return factory.newAppl("Module", factory.newString("m$i"), factory.newList(sum, factory.newString("unchanged")))
+    }
+
+    @Test
+    fun `should give the same results as the sequential traversals`() {
+        // Arrange
+        val project = factory.newAppl("Project", factory.newList((0 until 500).map { module(it) }))
+
+        // Act/Assert
+        assertEquals(sequential.innermost(project, add), parallel.innermost(project, add))
+        assertEquals(sequential.topdown(project, double), parallel.topdown(project, double))
+        assertEquals(sequential.bottomup(project, double), parallel.bottomup(project, double))
+        assertSame(project, parallel.bottomup(project, Matcher { it }))
+    }
+
+    @Test
+    fun `should fail when the rewrite fails on any subterm`() {
+        // Arrange
+        val project = factory.newList((0 until 100).map { module(it) })
+
+        // Act
+        val actual = parallel.bottomup(project, Matcher { term -> if (term is StringTerm && term.value == "m42") null else term })
+
+        // Assert
+        assertNull(actual)
+    }
+
+}
@@ -0,0 +1,61 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.io.ATermReader
+
+/**
+ * Tests the [SharingTermFactory] class.
+ */
+class SharingTermFactoryTests {
+
+    @Test
+    fun `should return the same instance for structurally equal terms`() {
+        // Arrange
+        val factory = SharingTermFactory()
+
+        // Act
+        val term1 = factory.newAppl("Var", factory.newString("x"), factory.newList(factory.newInt(42)))
+        val term2 = factory.newAppl("Var", factory.newString("x"), factory.newList(factory.newInt(42)))
+
+        // Assert
+        assertSame(term1, term2)
+    }
+
+    @Test
+    fun `should return different instances for terms with different annotations`() {
+        // Arrange
+        val factory = SharingTermFactory()
+
+        // Act
+        val term1 = factory.newAppl("Id", emptyList(), listOf(factory.newInt(1)))
+        val term2 = factory.newAppl("Id", emptyList(), listOf(factory.newInt(2)))
+
+        // Assert
+        assertNotEquals(term1, term2)
+        assertNotSame(term1, term2)
+    }
+
+    @Test
+    fun `should read terms equal to those built by the default term factory`() {
+        // Arrange
+        val path = "/org/spoofax/tego/aterm/io/example1.tego.aterm"
+        val sharingReader = ATermReader(SharingTermFactory())
+        val reader = ATermReader(TermFactoryImpl())
+
+        // Act
+        val sharedTerm = sharingReader.readFromResource(SharingTermFactoryTests::class, path) as ApplTerm
+        val term = reader.readFromResource(SharingTermFactoryTests::class, path)
+
+        // Assert
+        assertEquals(term, sharedTerm)
+        assertEquals(term.hashCode(), sharedTerm.hashCode())
+        val strategyDecl1 = (sharedTerm[1] as ListTerm)[0] as ApplTerm
+        val strategyDecl2 = (sharedTerm[1] as ListTerm)[2] as ApplTerm
+        assertSame(strategyDecl1[2], strategyDecl2[2])
+    }
+
+}
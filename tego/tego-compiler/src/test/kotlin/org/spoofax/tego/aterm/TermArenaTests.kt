@@ -0,0 +1,52 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.io.ATermReader
+
+/**
+ * Tests the [TermArena] class.
+ */
+class TermArenaTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `should read a term into the arena`() {
+        // Arrange
+        val arena = TermArena(initialCapacity = 16)
+        val text = """Module("m", [Def("f"{Type("int")}, [1, 2.5, -0.0], <Hole()>), ("a", 3)]){42}"""
+        val expected = ATermReader(factory).readFromString(text)!!
+
+        // Act
+        val actual = ATermReader(arena.factory).readFromString(text)!!
+
+        // Assert
+        assertEquals(expected, actual)
+        assertEquals(actual, expected)
+        assertEquals(expected.hashCode(), actual.hashCode())
+        assertEquals(expected.toString(), actual.toString())
+        assertEquals(expected.annotations, actual.annotations)
+    }
+
+    @Test
+    fun `should add deeply nested terms and lists`() {
+        // Arrange
+        val arena = TermArena()
+        var term: Term = factory.newList(factory.newInt(1), factory.newString("a"), factory.newReal(2.0))
+        repeat(100_000) { term = factory.newAppl("Neg", term) }
+
+        // Act
+        val actual = arena.term(arena.add(term))
+
+        // Assert
+        assertEquals(term.hashCode(), actual.hashCode())
+        var list = actual
+        repeat(100_000) { list = (list as ApplTerm)[0] }
+        assertEquals(factory.newList(factory.newInt(1), factory.newString("a"), factory.newReal(2.0)), list)
+        val tail = (list as ListTerm).tail
+        assertEquals(factory.newList(factory.newString("a"), factory.newReal(2.0)), tail)
+        assertEquals(factory.newList(factory.newString("a"), factory.newReal(2.0)).hashCode(), tail.hashCode())
+    }
+
+}
@@ -0,0 +1,81 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.io.ATermReader
+
+/**
+ * Tests the [TermDiff] object.
+ */
+class TermDiffTests {
+
+    private val reader = ATermReader(TermFactoryImpl())
+
+    private fun read(s: String): Term = reader.readFromString(s)!!
+
+    @Test
+    fun `equal terms should have no changes`() {
+        // Arrange
+        val text = """Project([Module("a", [Def("f"{TermIndex("a", 1)}, Int(1))]), Module("b", [])])"""
+
+        // Act
+        val changes = TermDiff.compute(read(text), read(text))
+
+        // Assert
+        assertEquals(emptyList<TermChange>(), changes)
+    }
+
+    @Test
+    fun `should report the changed subterms and list elements`() {
+        // Arrange
+        val old = read("""Project([Module("a", [Def("f", Int(1)){TermIndex("a", 1)}, Def("g", Int(2)){TermIndex("a", 2)}]), Module("b", [])])""")
+        val new = read("""Project([Module("a", [Def("f", Int(1)){TermIndex("a", 1)}, Def("g", Var("x")){TermIndex("a", 2)}]), Module("c", [Def("h", Int(3)){TermIndex("c", 7)}]){TermIndex("c", 5)}, Module("b", [])])""")
+
+        // Act
+        val changes = TermDiff.compute(old, new)
+
+        // Assert
+        assertEquals(listOf(
+            TermChange(TermChange.Kind.CHANGED, listOf(0, 0, 1, 1, 1), listOf(0, 0, 1, 1, 1), read("Int(2)"), read("Var(\"x\")")),
+            TermChange(TermChange.Kind.ADDED, null, listOf(0, 1), null, (new as ApplTerm)[0].subterms[1]),
+        ), changes)
+        assertEquals(5..7, changes[1].newTermIndices())
+        assertEquals(null, changes[1].oldTermIndices())
+    }
+
+    @Test
+    fun `should report attachment changes separately from the changes of the subterms`() {
+        // Arrange
+        val old = read("""Module("a", [Def("f", Int(1)){TermIndex("a", 1)}, Def("g", Int(2))]{TermIndex("a", 2)})""")
+        val new = read("""Module("a", [Def("f", Int(1)){TermIndex("b", 1)}, Def("g", Int(3){Type("int")})]{TermIndex("b", 2)})""")
+
+        // Act
+        val changes = TermDiff.compute(old, new)
+
+        // Assert
+        val oldList = (old as ApplTerm)[1] as ListTerm
+        val newList = (new as ApplTerm)[1] as ListTerm
+        assertEquals(listOf(
+            TermChange(TermChange.Kind.ATTACHMENTS, listOf(1), listOf(1), oldList, newList),
+            TermChange(TermChange.Kind.ATTACHMENTS, listOf(1, 0), listOf(1, 0), oldList.elements[0], newList.elements[0]),
+            TermChange(TermChange.Kind.ATTACHMENTS, listOf(1, 1, 1), listOf(1, 1, 1), read("Int(2)"), read("Int(3){Type(\"int\")}")),
+            TermChange(TermChange.Kind.CHANGED, listOf(1, 1, 1, 0), listOf(1, 1, 1, 0), read("2"), read("3")),
+        ), changes)
+    }
+
+    @Test
+    fun `should report terms that differ only in their attachments as attachment changes`() {
+        // Arrange
+        val old = read("""F("x", 1, 2.5, <y>){A()}""")
+        val new = read("""F("x"{B()}, 1{B()}, 2.5{B()}, <y>{B()}){A()}""")
+
+        // Act
+        val changes = TermDiff.compute(old, new)
+
+        // Assert
+        assertEquals((0..3).map { i ->
+            TermChange(TermChange.Kind.ATTACHMENTS, listOf(i), listOf(i), (old as ApplTerm)[i], (new as ApplTerm)[i])
+        }, changes)
+    }
+
+}
@@ -0,0 +1,184 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.DynamicTest
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.TestFactory
+import org.spoofax.tego.aterm.io.LazyATermReader
+
+/**
+ * Tests the [TermFactoryImpl] class.
+ */
+class TermFactoryImplTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `tail of list should equal list built without the head`() {
+        // Arrange
+        val list = factory.newList(listOf(factory.newInt(1), factory.newInt(2), factory.newInt(3)), listOf(factory.newString("a")))
+
+        // Act
+        val tail = list.tail
+
+        // Assert
+        assertEquals(factory.newList(factory.newInt(2), factory.newInt(3)), tail)
+        assertEquals(factory.newList(factory.newInt(2), factory.newInt(3)).hashCode(), tail.hashCode())
+        assertEquals(factory.newList(), tail.tail.tail)
+    }
+
+    @Test
+    fun `prepended list should equal list built with all elements`() {
+        // Arrange
+        val list = factory.newList(factory.newInt(2), factory.newInt(3))
+
+        // Act
+        val consList = factory.newListCons(factory.newInt(1), list)
+
+        // Assert
+        val expected = factory.newList(factory.newInt(1), factory.newInt(2), factory.newInt(3))
+        assertEquals(expected, consList)
+        assertEquals(expected.hashCode(), consList.hashCode())
+        assertEquals(factory.newInt(1), consList.head)
+        assertSame(list, consList.tail)
+        assertEquals(factory.newInt(3), consList[2])
+    }
+
+    @Test
+    fun `prepending many elements should build a long list`() {
+        // Arrange
+        var list = factory.newList()
+
+        // Act
+        for (i in 0 until 100_000) {
+            list = factory.newListCons(factory.newInt(i), list)
+        }
+
+        // Assert
+        assertEquals(100_000, list.elements.size)
+        assertEquals(factory.newInt(99_999), list.head)
+        assertEquals(factory.newInt(0), list.sublist(99_999).head)
+    }
+
+    @Test
+    fun `iterating a prepended list should return the elements of the cons cells and of the array tail`() {
+        // Arrange
+        val elements = (0 until 10).map { factory.newInt(it) }
+        val tail = factory.newList(elements.subList(3, 10)).sublist(1)
+        val list = factory.newListCons(elements[0], factory.newListCons(elements[1], factory.newListCons(elements[2], tail)))
+
+        // Act
+        val actual = list.elements.iterator().asSequence().toList()
+        val emptyTail = factory.newListCons(elements[0], factory.newList()).elements.iterator()
+
+        // Assert
+        assertEquals(elements.subList(0, 3) + elements.subList(4, 10), actual)
+        assertEquals(elements[0], emptyTail.next())
+        assertFalse(emptyTail.hasNext())
+        assertThrows(NoSuchElementException::class.java) { emptyTail.next() }
+    }
+
+    @Test
+    fun `small values without attachments should be shared`() {
+        // Arrange
+        val annotations = Attachments.of(Annotations.of(factory.newString("a")))
+
+        // Act/Assert
+        assertSame(factory.newInt(42), factory.newInt(42))
+        assertSame(factory.newReal(1.0), factory.newReal(1.0))
+        assertSame(factory.newString("Var"), factory.newString(String(charArrayOf('V', 'a', 'r'))))
+        assertNotSame(factory.newInt(100_000), factory.newInt(100_000))
+        assertNotSame(factory.newReal(0.0), factory.newReal(-0.0))
+        assertNotSame(factory.newInt(42), factory.newInt(42, annotations))
+        assertEquals(factory.newInt(42, annotations), factory.withAttachments(factory.newInt(42), annotations))
+    }
+
+    @Test
+    fun `strings built from bytes should equal strings built from values`() {
+        // Arrange
+        val long = "a \"long\" identifier that is not shared: " + "x".repeat(40)
+        val input = ("[\"" + long + "\", \"Var\", \"caf\u00e9\"]").toByteArray(Charsets.UTF_8)
+        val annotations = Attachments.of(Annotations.of(factory.newString("a")))
+
+        // Act
+        val fromBytes = factory.newString(input, 2, long.length)
+        val annotated = factory.withAttachments(fromBytes, annotations)
+        val short = factory.newString(input, long.length + 6, 3)
+        val nonAscii = factory.newString(input, long.length + 13, 5)
+
+        // Assert
+        assertEquals(factory.newString(long), fromBytes)
+        assertEquals(fromBytes, factory.newString(long))
+        assertEquals(factory.newString(long).hashCode(), fromBytes.hashCode())
+        assertEquals(long, fromBytes.value)
+        assertEquals(factory.newString(long).toString(), fromBytes.toString())
+        assertEquals(fromBytes, factory.newString(input.copyOf(), 2, long.length))
+        assertEquals(factory.newString(long, annotations), annotated)
+        assertSame(factory.newString("Var"), short)
+        assertEquals(factory.newString("caf\u00e9"), nonAscii)
+    }
+
+    @Test
+    fun `strings built from bytes should be equal before and after their value is decoded`() {
+        // Arrange
+        val long = "a long identifier that is not shared: " + "x".repeat(40)
+        val input = long.toByteArray(Charsets.US_ASCII)
+        val annotations = Attachments.of(Annotations.of(factory.newString("a")))
+        val decoded = factory.newString(input, 0, long.length)
+        val undecoded = factory.newString(input.copyOf(), 0, long.length)
+
+        // Act
+        val value = decoded.value
+
+        // Assert
+        assertSame(value, decoded.value)
+        assertEquals(decoded, undecoded)
+        assertEquals(undecoded, decoded)
+        assertEquals(decoded.hashCode(), undecoded.hashCode())
+        assertEquals(factory.newString(long, annotations), factory.withAttachments(decoded, annotations))
+        assertEquals(factory.withAttachments(undecoded, annotations), factory.withAttachments(decoded, annotations))
+        assertNotEquals(decoded, factory.newString(input, 0, long.length - 1))
+    }
+
+    @TestFactory
+    fun applArityTests(): List<DynamicTest> = (0..7).map { arity ->
+        DynamicTest.dynamicTest("constructor application of arity $arity should be specialized") {
+            // Arrange
+            val args = (0 until arity).map { factory.newInt(it) }
+            val annotations = Attachments.of(Annotations.of(factory.newString("a")))
+            val text = "C(${args.joinToString(", ")})"
+
+            // Act
+            val term = factory.newAppl("C", args)
+            val annotated = factory.withAttachments(term, annotations)
+            val arenaTerm = TermArena().factory.newAppl("C", args)
+            val lazyTerm = LazyATermReader(factory).readFromString(text)!!
+
+            // Assert
+            assertEquals(if (arity <= 5) "ApplTerm$arity" else "ApplTermN", term.javaClass.simpleName)
+            assertEquals(term.javaClass, annotated.javaClass)
+            assertEquals(arity, term.arity)
+            assertEquals(args, term.subterms)
+            assertEquals(args, (0 until arity).map { term[it] })
+            assertThrows(IndexOutOfBoundsException::class.java) { term[arity] }
+            assertEquals(args, annotated.subterms)
+            assertEquals(annotations, annotated.attachments)
+            assertNotEquals(term, annotated)
+            assertEquals(factory.newAppl("C", args, listOf(factory.newString("a"))), annotated)
+            assertEquals(annotated.hashCode(), factory.newAppl("C", args, listOf(factory.newString("a"))).hashCode())
+            for (other in listOf(arenaTerm, lazyTerm)) {
+                assertEquals(term, other)
+                assertEquals(other, term)
+                assertEquals(term.hashCode(), other.hashCode())
+            }
+            assertNotEquals(term, factory.newAppl("C", args + factory.newInt(arity)))
+            assertEquals(text, term.toString())
+        }
+    }
+
+}
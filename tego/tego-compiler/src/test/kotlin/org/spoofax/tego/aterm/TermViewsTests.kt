@@ -0,0 +1,79 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.io.ATermReader
+
+/**
+ * Tests the [TermViews] object.
+ */
+class TermViewsTests {
+
+    private val factory = TermFactoryImpl()
+
+    private fun read(s: String): Term = ATermReader(factory).readFromString(s)!!
+
+    @Test
+    fun `view without annotations should equal the term built without annotations`() {
+        // Arrange
+        val term = read("""Module("m"{TermIndex("m", 1)}, [Def("f", <Int(1){Type("int")}>){TermIndex("m", 2)}, 2.5{A()}]){TermIndex("m", 3)}""")
+        val expected = read("""Module("m", [Def("f", <Int(1)>), 2.5])""")
+
+        // Act
+        val view = TermViews.withoutAnnotations(term)
+
+        // Assert
+        assertEquals(expected, view)
+        assertEquals(view, expected)
+        assertEquals(expected.hashCode(), view.hashCode())
+        assertEquals(expected.toString(), view.toString())
+        assertEquals(expected.fingerprint, view.fingerprint)
+        assertEquals(read("""[2.5]"""), (view as ApplTerm)[1].let { (it as ListTerm).tail })
+        val materialized = TermViews.materialize(view, factory)
+        assertEquals(expected, materialized)
+        assertEquals(expected.toString(), materialized.toString())
+    }
+
+    @Test
+    fun `view with replaced annotations should share the subterms`() {
+        // Arrange
+        val term = read("""Def("f"{TermIndex("m", 1)}, [1, 2]){TermIndex("m", 2)}""") as ApplTerm
+
+        // Act
+        val view = TermViews.withAnnotations(term, Annotations.of(factory.newString("x")))
+        val materialized = TermViews.materialize(view, factory) as ApplTerm
+
+        // Assert
+        assertEquals(read("""Def("f"{TermIndex("m", 1)}, [1, 2]){"x"}"""), view)
+        assertSame(term[0], (view as ApplTerm)[0])
+        assertEquals(view, materialized)
+        assertSame(term[1], materialized[1])
+        assertSame(term[1], TermViews.materialize(TermViews.withoutAnnotations(term[1]), factory))
+    }
+
+    @Test
+    fun `should hash views of deeply nested terms on a thread with a small stack`() {
+        // Arrange
+        val annotations = Annotations.of(factory.newInt(1))
+        var term: Term = factory.newInt(0)
+        var expected: Term = factory.newInt(0)
+        repeat(100_000) {
+            term = factory.newAppl("Neg", listOf(term), annotations)
+            expected = factory.newAppl("Neg", expected)
+        }
+        val view = TermViews.withoutAnnotations(term)
+        var hash = 0
+
+        // Act
+        val thread = Thread(null, { hash = view.hashCode() }, "hasher", 128 * 1024)
+        thread.start()
+        thread.join()
+
+        // Assert
+        assertEquals(expected.hashCode(), hash)
+        assertEquals((expected as ApplTerm)[0].hashCode(), (view as ApplTerm)[0].hashCode())
+        assertSame(view[0], view[0])
+    }
+
+}
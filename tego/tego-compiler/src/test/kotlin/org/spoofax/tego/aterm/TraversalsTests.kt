@@ -0,0 +1,85 @@
+package org.spoofax.tego.aterm
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Test
+
+/**
+ * Tests the [Traversals] class.
+ */
+class TraversalsTests {
+
+    private val factory = TermFactoryImpl()
+    private val traversals = Traversals(factory)
+
+    /** Matches `Int(i)`, giving `i`. */
+    private val intLit = Matcher.appl("Int", Matcher.intValue()) { _, i -> i }
+
+    /** Rewrites `Int(i)` to `Int(i + 1)`. */
+    private val increment = intLit.map { i -> int(i + 1) }
+
+    /** Rewrites `Add(Int(a), Int(b))` to `Int(a + b)`. */
+    private val add = Matcher.appl("Add", intLit, intLit) { _, a, b -> int(a + b) }
+
+    private fun int(i: Int) = factory.newAppl("Int", factory.newInt(i))
+
+    private fun add(a: Term, b: Term) = factory.newAppl("Add", a, b)
+
+    @Test
+    fun `should return the original instances when nothing changed`() {
+        // Arrange
+        val unchanged = factory.newAppl("Var", factory.newString("x"))
+        val term = factory.newAppl("Let", unchanged, factory.newList(int(1), unchanged))
+
+        // Act
+        val actual = traversals.bottomup(term, Matcher { t -> if (t is IntTerm) factory.newInt(t.value * 10) else t })
+
+        // Assert
+        assertEquals(factory.newAppl("Let", unchanged, factory.newList(int(10), unchanged)), actual)
+        assertSame(unchanged, (actual as ApplTerm)[0])
+        assertSame(term, traversals.topdown(term, Matcher { it }))
+        assertSame(term, factory.withSubterms(term, term.subterms))
+    }
+
+    @Test
+    fun `should apply the rewrite to the direct subterms`() {
+        // Arrange
+        val term = factory.newList(int(1), factory.newString("a"), int(2))
+
+        // Act/Assert
+        assertNull(traversals.all(term, increment))
+        assertEquals(factory.newList(int(2), factory.newString("a"), int(2)), traversals.one(term, increment))
+        assertEquals(factory.newList(int(2), factory.newString("a"), int(3)), traversals.some(term, increment))
+        assertNull(traversals.some(factory.newList(factory.newString("a")), increment))
+    }
+
+    @Test
+    fun `should rewrite to a normal form`() {
+        // Arrange
+        val term = add(add(int(1), int(2)), add(int(3), add(int(4), int(5))))
+
+        // Act
+        val actual = traversals.innermost(term, add)
+
+        // Assert
+        assertEquals(int(15), actual)
+        assertNull(traversals.bottomup(term, add))
+    }
+
+    @Test
+    fun `should traverse deeply nested terms`() {
+        // Arrange
+        var term: Term = int(0)
+        repeat(100_000) { term = factory.newAppl("Neg", term) }
+
+        // Act
+        val actual = traversals.topdown(term, Matcher { t -> increment.match(t) ?: t })
+
+        // Assert
+        var inner = actual!!
+        repeat(100_000) { inner = (inner as ApplTerm)[0] }
+        assertEquals(int(1), inner)
+    }
+
+}
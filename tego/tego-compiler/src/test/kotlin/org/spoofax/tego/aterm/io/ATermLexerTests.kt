@@ -0,0 +1,136 @@
+package org.spoofax.tego.aterm.io
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.DynamicTest
+import org.junit.jupiter.api.TestFactory
+import org.spoofax.tego.aterm.ApplTerm
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactoryImpl
+import java.io.StringReader
+import java.nio.ByteBuffer
+
+/**
+ * Tests the [CharATermLexer] and [ByteATermLexer] classes.
+ */
+class ATermLexerTests {
+
+    private val factory = TermFactoryImpl()
+
+    /** The lexers to test, by name. */
+    private val lexers: List<Pair<String, (String) -> ATermLexer>> = listOf(
+        "CharATermLexer" to { s -> CharATermLexer(s) },
+        "CharATermLexer with a small buffer" to { s -> CharATermLexer(StringReader(s), 4) },
+        "ByteATermLexer" to { s -> ByteATermLexer(ByteBuffer.wrap(s.toByteArray(Charsets.UTF_8))) },
+    )
+
+    /**
+     * Creates a test for each lexer.
+     */
+    private fun forEachLexer(name: String, test: ((String) -> ATermLexer) -> Unit): List<DynamicTest>
+        = lexers.map { (lexerName, lexer) -> DynamicTest.dynamicTest("$lexerName $name") { test(lexer) } }
+
+    private val escapeTests: List<Pair<String, String>> = listOf(
+        """"a\nb"""" to "a\nb",
+        """"\r\f\t"""" to "\r\u000C\t",
+        """"\\\'\""""" to "\\'\"",
+        """"\u0041"""" to "A",
+        """"\u00411"""" to "A1",
+        """"\U0001F600"""" to "\uD83D\uDE00",
+        """"\U0010FFFF"""" to String(Character.toChars(0x10FFFF)),
+        """"\x4"""" to "\u0004",
+        """"\x41"""" to "A",
+        """"\x0041"""" to "A",
+        """"\x00411"""" to "A1",
+        """"naïve\t日本"""" to "naïve\t日本",
+    )
+
+    @TestFactory
+    fun escapeTests(): List<DynamicTest> = escapeTests.flatMap { (input, expected) ->
+        forEachLexer("should read '$expected' from '$input'") { lexer ->
+            // Act
+            val actual = lexer(input).readString()
+            val term = ATermReader(factory).read(lexer(input))
+
+            // Assert
+            assertEquals(expected, actual)
+            assertEquals(factory.newString(expected), term)
+        }
+    }
+
+    private val invalidStringTests: List<String> = listOf(
+        // Too few digits
+        """"\u41"""",
+        """"\U1F600"""",
+        """"\x"""",
+        // Invalid code points
+        """"\U00110000"""",
+        """"\UFFFFFFFF"""",
+        // Unknown escape sequence
+        """"\q"""",
+        // Unterminated strings
+        """"abc""",
+        """"ab\"""",
+        """"ab\""",
+        """"ab\u00""",
+    )
+
+    @TestFactory
+    fun invalidStringTests(): List<DynamicTest> = invalidStringTests.flatMap { input ->
+        forEachLexer("should reject '$input'") { lexer ->
+            // Act/Assert
+            assertThrows(FormatException::class.java) { lexer(input).readString() }
+            assertThrows(FormatException::class.java) { ATermReader(factory).read(lexer(input)) }
+        }
+    }
+
+    @TestFactory
+    fun `should distinguish negative numbers from identifiers starting with a minus`(): List<DynamicTest>
+        = forEachLexer("should distinguish negative numbers from identifiers starting with a minus") { lexer ->
+            // Arrange
+            val intLexer = lexer("-42,")
+            val realLexer = lexer("-.5e1,")
+            val identifierLexer = lexer("-foo,")
+
+            // Act
+            val isIntReal = intLexer.readNumber()
+            val isRealReal = realLexer.readNumber()
+            val identifier = identifierLexer.readIdentifier()
+            val term = ATermReader(factory).read(lexer("F(-1, -2.5, -2147483648)"))
+
+            // Assert
+            assertFalse(isIntReal)
+            assertEquals(-42, intLexer.intValue)
+            assertTrue(isRealReal)
+            assertEquals(-5.0, realLexer.realValue)
+            assertEquals("-foo", identifier)
+            assertEquals(',', identifierLexer.read())
+            assertEquals(factory.newAppl("F", factory.newInt(-1), factory.newReal(-2.5), factory.newInt(Int.MIN_VALUE)), term)
+            assertThrows(FormatException::class.java) { lexer("-2147483649").readNumber() }
+        }
+
+    @TestFactory
+    fun `should read deeply nested terms on a thread with a small stack`(): List<DynamicTest>
+        = forEachLexer("should read deeply nested terms on a thread with a small stack") { lexer ->
+            // Arrange
+            val depth = 20_000
+            val input = "F(\"\\x41\", ".repeat(depth) + "[-1]" + ")".repeat(depth)
+            var term: Term? = null
+
+            // Act
+            val thread = Thread(null, { term = ATermReader(factory).read(lexer(input)) }, "reader", 128 * 1024)
+            thread.start()
+            thread.join()
+
+            // Assert
+            var current = term as ApplTerm
+            repeat(depth - 1) {
+                assertEquals(factory.newString("A"), current[0])
+                current = current[1] as ApplTerm
+            }
+            assertEquals(factory.newList(factory.newInt(-1)), current[1])
+        }
+
+}
@@ -2,11 +2,15 @@ package org.spoofax.tego.aterm.io
 
 import org.spoofax.tego.aterm.TermFactoryImpl
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
 import org.junit.jupiter.api.DynamicTest
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.TestFactory
 import org.spoofax.tego.aterm.Annotations
+import org.spoofax.tego.aterm.ApplTerm
 import org.spoofax.tego.aterm.Term
+import java.nio.file.Files
+import java.util.concurrent.Executors
 
 /**
  * Tests the [ATermReader] class.
@@ -29,6 +33,9 @@ class ATermReaderTests {
             "[10]" to newList(newInt(10)),
             "[\"a\", 10]" to newList(newString("a"), newInt(10)),
 
+            "<x>" to newPlaceholder(newAppl("x")),
+            "<MyCons(10)>" to newPlaceholder(newAppl("MyCons", newInt(10))),
+
             "\"\"" to newString(""),
             "\"abc\"" to newString("abc"),
 
@@ -41,6 +48,12 @@ class ATermReaderTests {
             "42e2" to newReal(42e2),
             ".1e2" to newReal(.1e2),
             "42.1e2" to newReal(42.1e2),
+            "42.1E-2" to newReal(42.1e-2),
+            "42e+2" to newReal(42e2),
+            "-42" to newInt(-42),
+            "-2147483648" to newInt(Int.MIN_VALUE),
+            "-.5" to newReal(-.5),
+            "-4.2e-1" to newReal(-4.2e-1),
         )
     }
 
@@ -173,4 +186,74 @@ class ATermReaderTests {
         }, term)
     }
 
-}
\ No newline at end of file
+    @Test
+    fun `should parse annotated placeholders nested in terms`() {
+        // Arrange
+        val reader = ATermReader(factory)
+
+        // Act
+        val term = reader.readFromString("f(<x>{a, b}, [<y>{}])")
+
+        // Assert
+        assertEquals(factory.run {
+            newAppl(
+                "f",
+                withAnnotations(newPlaceholder(newAppl("x")), Annotations.of(newAppl("a"), newAppl("b"))),
+                newList(newPlaceholder(newAppl("y"))),
+            )
+        }, term)
+    }
+
+    @Test
+    fun `should parse deeply nested terms on a thread with a small stack`() {
+        // Arrange
+        val depth = 100_000
+        val input = "Seq([1], ".repeat(depth) + "Nil{2}" + ")".repeat(depth)
+        val reader = ATermReader(TermFactoryImpl())
+        var term: Term? = null
+
+        // Act
+        val thread = Thread(null, { term = reader.readFromString(input) }, "reader", 128 * 1024)
+        thread.start()
+        thread.join()
+
+        // Assert
+        var current = term as ApplTerm
+        repeat(depth) {
+            assertEquals("Seq", current.constructor)
+            current = current[1] as ApplTerm
+        }
+        assertEquals(factory.withAnnotations(factory.newAppl("Nil"), Annotations.of(factory.newInt(2))), current)
+    }
+
+    @Test
+    fun `should read all paths concurrently`() {
+        // Arrange
+        val paths = (0 until 20).map { i ->
+            val path = Files.createTempFile("tego", ".aterm")
+            path.toFile().deleteOnExit()
+            Files.write(path, (if (i == 7) "Module(" else "Module(\"m$i\", [])").toByteArray(Charsets.UTF_8))
+            path
+        }
+        val executor = Executors.newFixedThreadPool(4)
+
+        // Act
+        val results = try {
+            ATermReader(factory).readAll(paths, executor = executor).toList()
+        } finally {
+            executor.shutdown()
+        }
+
+        // Assert
+        assertEquals(paths.toSet(), results.map { it.path }.toSet())
+        for (result in results) {
+            val i = paths.indexOf(result.path)
+            if (i == 7) {
+                assertTrue(result.error is FormatException)
+            } else {
+                assertEquals(factory.newAppl("Module", factory.newString("m$i"), factory.newList()), result.term)
+            }
+        }
+    }
+
+}
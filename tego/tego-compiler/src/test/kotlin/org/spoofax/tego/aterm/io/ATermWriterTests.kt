@@ -0,0 +1,105 @@
+package org.spoofax.tego.aterm.io
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.DynamicTest
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.TestFactory
+import org.spoofax.tego.aterm.Annotations
+import org.spoofax.tego.aterm.ListTerm
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactoryImpl
+
+/**
+ * Tests the [ATermWriter] class.
+ */
+class ATermWriterTests {
+
+    private val factory = TermFactoryImpl()
+
+    private val termTests: List<Pair<Term, String>> = factory.run {
+        listOf(
+            newAppl("") to "()",
+            newAppl("", newString("a"), newInt(10)) to "(\"a\", 10)",
+            newAppl("MyCons", newString("a"), newInt(10)) to "MyCons(\"a\", 10)",
+            newList() to "[]",
+            newList(newString("a"), newInt(10)) to "[\"a\", 10]",
+            newString("a\"b\\c\nd\te") to "\"a\\\"b\\\\c\\nd\\te\"",
+            newInt(-42) to "-42",
+            newReal(42.1) to "42.1",
+            newReal(-4.2e-10) to "-4.2E-10",
+            newPlaceholder(newAppl("Id")) to "<Id()>",
+            withAnnotations(newInt(1), Annotations.of(newAppl("MyAnno", newInt(42)), newString("xyz"))) to "1{MyAnno(42), \"xyz\"}",
+            withAnnotations(newList(newInt(1)), Annotations.of(withAnnotations(newInt(2), Annotations.of(newInt(3))))) to "[1]{2{3}}",
+        )
+    }
+
+    @TestFactory
+    fun writeTests(): List<DynamicTest> {
+        // Arrange
+        val writer = ATermWriter()
+        return termTests.map { (term, expected) -> DynamicTest.dynamicTest("should return '$expected' when writing '$term'") {
+            // Act
+            val actual = writer.writeToString(term)
+
+            // Assert
+            assertEquals(expected, actual)
+        } }
+    }
+
+    @TestFactory
+    fun roundTripTests(): List<DynamicTest> {
+        // Arrange
+        val writer = ATermWriter()
+        val reader = ATermReader(factory)
+        return termTests.map { (term, _) -> DynamicTest.dynamicTest("should read '$term' after writing it") {
+            // Act
+            val actual = reader.readFromString(writer.writeToString(term))
+
+            // Assert
+            assertEquals(term, actual)
+        } }
+    }
+
+    @Test
+    fun `should write example1 such that it reads back the same`() {
+        // Arrange
+        val reader = ATermReader(factory)
+        val term = reader.readFromResource(ATermWriterTests::class, "/org/spoofax/tego/aterm/io/example1.tego.aterm")!!
+
+        // Act
+        val written = ATermWriter().writeToString(term)
+
+        // Assert
+        assertEquals(term.toString(), written)
+        assertEquals(term, reader.readFromString(written))
+    }
+
+    @Test
+    fun `should write deeply nested terms`() {
+        // Arrange
+        val depth = 100_000
+        var term: ListTerm = factory.newList()
+        for (i in 0 until depth) {
+            term = factory.newList(term)
+        }
+
+        // Act
+        val written = ATermWriter().writeToString(term)
+
+        // Assert
+        assertEquals("[".repeat(depth + 1) + "]".repeat(depth + 1), written)
+    }
+
+    @Test
+    fun `should not write blobs`() {
+        // Arrange
+        val term = factory.newList(factory.newBlob(Any()))
+
+        // Act/Assert
+        assertThrows(IllegalArgumentException::class.java) {
+            ATermWriter().writeToString(term)
+        }
+    }
+
+}
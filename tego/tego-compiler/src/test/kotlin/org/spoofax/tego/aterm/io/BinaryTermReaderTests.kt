@@ -0,0 +1,122 @@
+package org.spoofax.tego.aterm.io
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.DynamicTest
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.TestFactory
+import org.spoofax.tego.aterm.Annotations
+import org.spoofax.tego.aterm.ApplTerm
+import org.spoofax.tego.aterm.ListTerm
+import org.spoofax.tego.aterm.Term
+import org.spoofax.tego.aterm.TermFactoryImpl
+
+/**
+ * Tests the [BinaryTermReader] and [BinaryTermWriter] classes.
+ */
+class BinaryTermReaderTests {
+
+    private val factory = TermFactoryImpl()
+
+    private val terms: List<Term> = factory.run {
+        listOf(
+            newAppl(""),
+            newAppl("MyCons", newString("a"), newInt(10)),
+            newList(),
+            newList(newString("a"), newString("a"), newInt(10)),
+            newString("naïve \"café\" 日本"),
+            newInt(0),
+            newInt(-42),
+            newInt(Int.MIN_VALUE),
+            newInt(Int.MAX_VALUE),
+            newReal(-4.2e-10),
+            newReal(Double.NaN),
+            newPlaceholder(newAppl("Id")),
+            newVar("x"),
+            withAnnotations(newInt(1), Annotations.of(newAppl("MyAnno", newInt(42)), newString("xyz"))),
+            withAnnotations(newList(newInt(1)), Annotations.of(withAnnotations(newInt(2), Annotations.of(newInt(3))))),
+        )
+    }
+
+    @TestFactory
+    fun roundTripTests(): List<DynamicTest> {
+        // Arrange
+        val writer = BinaryTermWriter()
+        val reader = BinaryTermReader(factory)
+        return terms.map { term -> DynamicTest.dynamicTest("should read '$term' after writing it") {
+            // Act
+            val actual = reader.readFromBytes(writer.writeToBytes(term))
+
+            // Assert
+            assertEquals(term, actual)
+        } }
+    }
+
+    @Test
+    fun `should read example1 after writing it`() {
+        // Arrange
+        val term = ATermReader(factory).readFromResource(BinaryTermReaderTests::class, "/org/spoofax/tego/aterm/io/example1.tego.aterm")!!
+
+        // Act
+        val bytes = BinaryTermWriter().writeToBytes(term)
+        val actual = BinaryTermReader(factory).readFromBytes(bytes)
+
+        // Assert
+        assertEquals(term, actual)
+        assertTrue(bytes.size < term.toString().length)
+    }
+
+    @Test
+    fun `should share repeated subterms`() {
+        // Arrange
+        val type = factory.newAppl("TypeName", factory.newString("a"))
+        val term = factory.newList(type, factory.newAppl("TypeName", factory.newString("a")))
+
+        // Act
+        val actual = BinaryTermReader(factory).readFromBytes(BinaryTermWriter().writeToBytes(term)) as ListTerm
+
+        // Assert
+        assertEquals(term, actual)
+        assertSame(actual[0], actual[1])
+        assertSame((actual[0] as ApplTerm)[0], (actual[1] as ApplTerm)[0])
+    }
+
+    @Test
+    fun `should read deeply nested terms after writing them on a thread with a small stack`() {
+        // Arrange
+        val depth = 20_000
+        var term: Term = factory.withAnnotations(factory.newAppl("Nil"), Annotations.of(factory.newInt(2)))
+        repeat(depth) { term = factory.newAppl("Seq", term) }
+        var actual: Term? = null
+
+        // Act
+        val thread = Thread(null, {
+            actual = BinaryTermReader(factory).readFromBytes(BinaryTermWriter().writeToBytes(term))
+        }, "binary", 128 * 1024)
+        thread.start()
+        thread.join()
+
+        // Assert
+        assertEquals(term.fingerprint, actual!!.fingerprint)
+        var current = actual as ApplTerm
+        repeat(depth) {
+            assertEquals("Seq", current.constructor)
+            current = current[0] as ApplTerm
+        }
+        assertEquals(factory.withAnnotations(factory.newAppl("Nil"), Annotations.of(factory.newInt(2))), current)
+    }
+
+    @Test
+    fun `should reject input that is not a binary term`() {
+        // Arrange
+        val bytes = "Module()".toByteArray()
+
+        // Act/Assert
+        assertThrows(FormatException::class.java) {
+            BinaryTermReader(factory).readFromBytes(bytes)
+        }
+    }
+
+}
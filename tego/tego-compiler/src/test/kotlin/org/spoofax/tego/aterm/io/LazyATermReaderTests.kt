@@ -0,0 +1,89 @@
+package org.spoofax.tego.aterm.io
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.Annotations
+import org.spoofax.tego.aterm.ApplTerm
+import org.spoofax.tego.aterm.ListTerm
+import org.spoofax.tego.aterm.TermFactoryImpl
+
+/**
+ * Tests the [LazyATermReader] class.
+ */
+class LazyATermReaderTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `should read the same term as ATermReader`() {
+        // Arrange
+        val expected = ATermReader(factory).readFromResource(LazyATermReaderTests::class, "/org/spoofax/tego/aterm/io/example1.tego.aterm")
+        val reader = LazyATermReader(factory)
+
+        // Act
+        val actual = reader.readFromString(expected.toString())
+
+        // Assert
+        assertEquals(expected, actual)
+        assertEquals(expected.hashCode(), actual.hashCode())
+        assertEquals(expected.toString(), actual.toString())
+    }
+
+    @Test
+    fun `should decode subterms and annotations on access`() {
+        // Arrange
+        val reader = LazyATermReader(factory)
+
+        // Act
+        val term = reader.readFromString("Module(Header(\"a\"{1}){2}, [Decl(<Id>, -3), Decl]{3}, -4.5e-1{5})") as ApplTerm
+        val list = term[1] as ListTerm
+
+        // Assert
+        assertEquals("Module", term.constructor)
+        assertEquals(3, term.arity)
+        assertEquals(factory.withAnnotations(factory.newAppl("Header",
+            factory.withAnnotations(factory.newString("a"), Annotations.of(factory.newInt(1)))
+        ), Annotations.of(factory.newInt(2))), term[0])
+        assertEquals(factory.newAppl("Decl", factory.newPlaceholder(factory.newAppl("Id")), factory.newInt(-3)), list[0])
+        assertEquals(factory.newList(factory.newAppl("Decl")), list.sublist(1))
+        assertEquals(Annotations.of(factory.newInt(3)), list.annotations)
+        assertEquals(factory.withAnnotations(factory.newReal(-0.45), Annotations.of(factory.newInt(5))), term[2])
+    }
+
+    @Test
+    fun `should replace the annotations of a lazily read term`() {
+        // Arrange
+        val reader = LazyATermReader(factory)
+        val term = reader.readFromString("F(1){2}")!!
+
+        // Act
+        val actual = factory.withAnnotations(term, Annotations.of(factory.newInt(3)))
+
+        // Assert
+        assertEquals(factory.withAnnotations(factory.newAppl("F", factory.newInt(1)), Annotations.of(factory.newInt(3))), actual)
+    }
+
+    @Test
+    fun `should hash and print deeply nested terms on a thread with a small stack`() {
+        // Arrange
+        val depth = 20_000
+        val input = "Seq([1], ".repeat(depth) + "Nil{2}" + ")".repeat(depth)
+        val expected = ATermReader(factory).readFromString(input)!!
+        val term = LazyATermReader(factory).readFromString(input)!!
+        var hash = 0
+        var string: String? = null
+
+        // Act
+        val thread = Thread(null, {
+            hash = term.hashCode()
+            string = term.toString()
+        }, "lazy", 128 * 1024)
+        thread.start()
+        thread.join()
+
+        // Assert
+        assertEquals(expected.hashCode(), hash)
+        assertEquals("Seq([1], ".repeat(depth) + "Nil(){2}" + ")".repeat(depth), string)
+    }
+
+}
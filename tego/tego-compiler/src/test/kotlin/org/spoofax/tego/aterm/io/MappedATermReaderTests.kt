@@ -0,0 +1,72 @@
+package org.spoofax.tego.aterm.io
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.Annotations
+import org.spoofax.tego.aterm.TermFactoryImpl
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.Paths
+
+/**
+ * Tests the [MappedATermReader] class.
+ */
+class MappedATermReaderTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `should parse example1 the same as ATermReader`() {
+        // Arrange
+        val path = Paths.get(MappedATermReaderTests::class.java.getResource("/org/spoofax/tego/aterm/io/example1.tego.aterm")!!.toURI())
+        val reader = MappedATermReader(factory)
+
+        // Act
+        val term = reader.read(path)
+
+        // Assert
+        assertEquals(ATermReader(factory).read(path), term)
+    }
+
+    @Test
+    fun `should decode non-ASCII characters and escape sequences`() {
+        // Arrange
+        val input = "Straße(\"naïve \\\"café\\\" \\u00e9\\t日本\", [1, .5, 42e2]){Ünïcode, \"\"}"
+        val path = writeTempFile(input)
+        // Map even the smallest files
+        val reader = MappedATermReader(factory, mappingThreshold = 0)
+
+        // Act
+        val term = reader.read(path)
+
+        // Assert
+        assertEquals(factory.run {
+            withAnnotations(newAppl("Straße",
+                newString("naïve \"café\" é\t日本"),
+                newList(newInt(1), newReal(.5), newReal(42e2))
+            ), Annotations.of(newAppl("Ünïcode"), newString("")))
+        }, term)
+    }
+
+    @Test
+    fun `should read nothing from an empty file`() {
+        // Arrange
+        val path = writeTempFile("  \n")
+        val reader = MappedATermReader(factory)
+
+        // Act
+        val term = reader.read(path)
+
+        // Assert
+        assertEquals(null, term)
+    }
+
+    private fun writeTempFile(content: String): Path {
+        val path = Files.createTempFile("tego", ".aterm")
+        // A mapped file cannot be deleted on some platforms until it is unmapped
+        path.toFile().deleteOnExit()
+        Files.write(path, content.toByteArray(Charsets.UTF_8))
+        return path
+    }
+
+}
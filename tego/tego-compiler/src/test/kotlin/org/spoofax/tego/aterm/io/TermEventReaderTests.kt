@@ -0,0 +1,96 @@
+package org.spoofax.tego.aterm.io
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import org.spoofax.tego.aterm.Annotations
+import org.spoofax.tego.aterm.TermFactoryImpl
+import org.spoofax.tego.aterm.io.TermEvent.*
+
+/**
+ * Tests the [TermEventReader] class.
+ */
+class TermEventReaderTests {
+
+    private val factory = TermFactoryImpl()
+
+    @Test
+    fun `should report events of the term and its annotations`() {
+        // Arrange
+        val events = TermEventReader("Cons(\"a\", [1, .5]{Id}, Nil){2}", factory)
+
+        // Act
+        val actual = generateSequence { events.next().takeIf { it != END_OF_INPUT } }.map { event ->
+            when (event) {
+                START_APPL -> "$event ${events.constructor}"
+                STRING -> "$event ${events.stringValue}"
+                INT -> "$event ${events.intValue}"
+                REAL -> "$event ${events.realValue}"
+                else -> event.toString()
+            }
+        }.toList()
+
+        // Assert
+        assertEquals(listOf(
+            "START_APPL Cons",
+            "STRING a",
+            "START_LIST", "INT 1", "REAL 0.5", "END",
+            "START_ANNOTATIONS", "START_APPL Id", "END", "END",
+            "START_APPL Nil", "END",
+            "END",
+            "START_ANNOTATIONS", "INT 2", "END",
+        ), actual)
+    }
+
+    @Test
+    fun `should build the whole term like ATermReader`() {
+        // Arrange
+        val expected = ATermReader(factory).readFromResource(TermEventReaderTests::class, "/org/spoofax/tego/aterm/io/example1.tego.aterm")
+        val events = TermEventReader(expected.toString(), factory)
+
+        // Act
+        events.next()
+        val actual = events.readTerm()
+
+        // Assert
+        assertEquals(expected, actual)
+        assertEquals(END_OF_INPUT, events.next())
+    }
+
+    @Test
+    fun `should build selected subterms and skip the others`() {
+        // Arrange
+        val events = TermEventReader("Module(Header(\"a\"{1}){2}, [Decl(<Id>, -3), Decl]{3}, 4{5})", factory)
+
+        // Act
+        events.next()                       // START_APPL Module
+        events.next()                       // START_APPL Header
+        val header = events.readTerm()
+        events.next()                       // START_LIST
+        events.skip()
+        events.next()                       // INT 4
+        val last = events.readTerm()
+        val end = events.next()
+
+        // Assert
+        assertEquals(factory.withAnnotations(factory.newAppl("Header",
+            factory.withAnnotations(factory.newString("a"), Annotations.of(factory.newInt(1)))
+        ), Annotations.of(factory.newInt(2))), header)
+        assertEquals(factory.withAnnotations(factory.newInt(4), Annotations.of(factory.newInt(5))), last)
+        assertEquals(END, end)
+        assertEquals(0, events.level)
+        assertEquals(END_OF_INPUT, events.next())
+    }
+
+    @Test
+    fun `should throw when a term sequence is not closed`() {
+        // Arrange
+        val events = TermEventReader("[1, 2", factory)
+
+        // Act/Assert
+        assertThrows(FormatException::class.java) {
+            while (events.next() != END_OF_INPUT) { /* Read all events */ }
+        }
+    }
+
+}
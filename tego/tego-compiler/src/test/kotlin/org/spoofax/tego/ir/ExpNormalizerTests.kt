@@ -0,0 +1,82 @@
+package org.spoofax.tego.ir
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+/**
+ * Tests the [ExpNormalizer] class.
+ */
+class ExpNormalizerTests {
+
+    private val pointer = TermIndex("test", 1)
+
+    private fun v(name: String) = Var(name, AnyType, pointer)
+
+    @Test
+    fun `should lift nested computations into let-expressions`() {
+        // Arrange
+        // <s(<t> x)> (let y = <u> x in y)
+        val exp = Eval(
+            Apply(v("s"), listOf(Eval(v("t"), v("x"), AnyType)), AnyType),
+            Let("y", Eval(v("u"), v("x"), AnyType), v("y"), AnyType),
+            AnyType,
+        )
+
+        // Act
+        val actual = ExpNormalizer().normalize(exp)
+
+        // Assert
+        val tmp0 = Var("tmp\$0", AnyType, TermIndex("", -1))
+        val tmp1 = Var("tmp\$1", AnyType, TermIndex("", -1))
+        val y2 = Var("y\$2", AnyType, pointer)
+        assertEquals(
+            Let(tmp0.name, Eval(v("t"), v("x"), AnyType),
+            Let(tmp1.name, Apply(v("s"), listOf(tmp0), AnyType),
+            Let(y2.name, Eval(v("u"), v("x"), AnyType),
+                Eval(tmp1, y2, AnyType), AnyType), AnyType), AnyType),
+            actual,
+        )
+        assertTrue(actual.isAnf)
+    }
+
+    @Test
+    fun `lifted bindings should not capture variables`() {
+        // Arrange
+        // <s> (let x = (let y = <t> z in y) in y)
+        val exp = Eval(v("s"), Let("x", Let("y", Eval(v("t"), v("z"), AnyType), v("y"), AnyType), v("y"), AnyType), AnyType)
+
+        // Act
+        val actual = ExpNormalizer().normalize(exp)
+
+        // Assert
+        assertEquals(
+            Let("y\$0", Eval(v("t"), v("z"), AnyType),
+            Let("x\$1", v("y\$0"),
+                Eval(v("s"), v("y"), AnyType), AnyType), AnyType),
+            actual,
+        )
+    }
+
+    @Test
+    fun `should normalize long let chains`() {
+        // Arrange
+        var exp: Exp = Eval(v("s"), v("x99999"), AnyType)
+        for (i in 99_999 downTo 0) {
+            exp = Let("x$i", Eval(v("s"), if (i == 0) v("in") else v("x${i - 1}"), AnyType), exp, AnyType)
+        }
+
+        // Act
+        var actual = ExpNormalizer().normalize(exp)
+
+        // Assert
+        var count = 0
+        while (actual is Let) {
+            count += 1
+            actual = actual.body
+        }
+        assertEquals(100_000, count)
+        assertEquals(Eval(v("s"), v("x99999\$99999"), AnyType), actual)
+    }
+
+}